@@ -0,0 +1,46 @@
+package com.PortfolioHeatmap.config;
+
+/**
+ * A Caffeine-backed Spring cache whose evictions and clears also go to every other application
+ * instance through the CacheInvalidationBus. Reads and puts stay local.
+ */
+import com.PortfolioHeatmap.services.CacheInvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+public class BroadcastingCaffeineCache extends CaffeineCache {
+    private final CacheInvalidationBus bus;
+
+    public BroadcastingCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues,
+            CacheInvalidationBus bus) {
+        super(name, cache, allowNullValues);
+        this.bus = bus;
+        bus.register(name, cache);
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        bus.publishEvict(getName(), key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = super.evictIfPresent(key);
+        bus.publishEvict(getName(), key);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        bus.publishClear(getName());
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = super.invalidate();
+        bus.publishClear(getName());
+        return invalidated;
+    }
+}
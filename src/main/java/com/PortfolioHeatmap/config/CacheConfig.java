@@ -1,17 +1,124 @@
 package com.PortfolioHeatmap.config;
 
+/**
+ * Configures the application's caches as bounded Caffeine caches, each with its own size and
+ * expiry policy. A cache's policy is a Caffeine spec read from cache.specs.<name>, falling back to
+ * the defaults below; caches not listed use spring.cache.caffeine.spec. A spec using
+ * maximumWeight is weighed in estimated bytes (see CacheSizeEstimator), which suits caches of
+ * large values such as daily series and history pages. Every cache records hit, miss and
+ * eviction statistics for the admin endpoint.
+ *
+ * The stockPrice cache has no fixed expiry unless its spec sets one: quotes expire after a few
+ * seconds during trading hours and stay cached until the next open otherwise (see
+ * MarketHoursExpiry).
+ *
+ * Every cache publishes its evictions and clears to the other application instances through
+ * the CacheInvalidationBus. The transport is chosen with cache.invalidation.transport: loopback
+ * keeps invalidations in this JVM, jdbc shares them through the cache_invalidations table.
+ */
+import com.PortfolioHeatmap.services.CacheInvalidationBus;
+import com.PortfolioHeatmap.services.CacheInvalidationTransport;
+import com.PortfolioHeatmap.services.JdbcCacheInvalidationTransport;
+import com.PortfolioHeatmap.services.LoopbackCacheInvalidationTransport;
+import com.PortfolioHeatmap.services.MarketHoursExpiry;
+import com.PortfolioHeatmap.services.TradingSessionCalendar;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
+    private static final Logger log = LoggerFactory.getLogger(CacheConfig.class);
+
+    // Default policy for each named cache
+    private static final Map<String, String> DEFAULT_SPECS = new LinkedHashMap<>();
+    static {
+        // Live quotes, expired by the trading session
+        DEFAULT_SPECS.put("stockPrice", "maximumSize=5000");
+        // Caches of stored price_history are evicted per ticker on every write (see
+        // PriceHistoryCacheInvalidator), so their TTLs are only a backstop.
+        // Pages of stored history, up to 32 MB
+        DEFAULT_SPECS.put("priceHistory", "maximumWeight=33554432,expireAfterWrite=12h");
+        DEFAULT_SPECS.put("priceHistoryByDate", "maximumSize=20000,expireAfterWrite=1d");
+        DEFAULT_SPECS.put("sp500Constituents", "maximumSize=1,expireAfterWrite=1d");
+        // Month segments of daily OHLCV series, up to 128 MB. Ended months never
+        // change, so they stay until unused for a month or pushed out by weight
+        DEFAULT_SPECS.put("ohlcvSeries", "maximumWeight=134217728,expireAfterAccess=30d");
+        // Weekly and monthly rollups of ended months, up to 32 MB
+        DEFAULT_SPECS.put("seriesRollups", "maximumWeight=33554432,expireAfterAccess=30d");
+    }
+
+    // Policy for caches that have no spec of their own
+    @Value("${spring.cache.caffeine.spec:maximumSize=500,expireAfterWrite=5m}")
+    private String defaultSpec;
+
+    // Quote TTL during trading hours, and how long after the close quotes are
+    // still treated as intraday while the closing price settles
+    @Value("${stock.data.quotes.intraday-ttl-seconds:5}")
+    private long intradayTtlSeconds;
+    @Value("${stock.data.quotes.close-settle-minutes:5}")
+    private long closeSettleMinutes;
 
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager();
+    public CacheManager cacheManager(Environment environment, TradingSessionCalendar calendar,
+            CacheInvalidationBus invalidationBus) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name,
+                    com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new BroadcastingCaffeineCache(name, cache, isAllowNullValues(), invalidationBus);
+            }
+        };
+        cacheManager.setCaffeine(Caffeine.from(defaultSpec).recordStats());
+        DEFAULT_SPECS.forEach((name, fallbackSpec) -> {
+            String spec = environment.getProperty("cache.specs." + name, fallbackSpec);
+            Caffeine<Object, Object> builder = buildCache(spec);
+            if ("stockPrice".equals(name) && !spec.contains("expireAfter")) {
+                builder.expireAfter(new MarketHoursExpiry(calendar, Duration.ofSeconds(intradayTtlSeconds),
+                        Duration.ofMinutes(closeSettleMinutes), Clock.systemUTC()));
+            }
+            cacheManager.registerCustomCache(name, builder.build());
+            log.info("Cache {} configured with {}", name, spec);
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public CacheInvalidationTransport cacheInvalidationTransport(
+            @Value("${cache.invalidation.transport:loopback}") String transport,
+            @Value("${cache.invalidation.poll-interval-ms:1000}") long pollIntervalMs,
+            @Value("${cache.invalidation.retention-minutes:10}") long retentionMinutes,
+            ObjectProvider<JdbcTemplate> jdbcTemplate) {
+        log.info("Using {} cache invalidation transport", transport);
+        return switch (transport.toLowerCase()) {
+            case "loopback" -> new LoopbackCacheInvalidationTransport();
+            case "jdbc" -> new JdbcCacheInvalidationTransport(jdbcTemplate.getObject(), pollIntervalMs,
+                    Duration.ofMinutes(retentionMinutes), Clock.systemUTC());
+            default -> throw new IllegalArgumentException("Unknown cache invalidation transport: " + transport);
+        };
+    }
+
+    static Caffeine<Object, Object> buildCache(String spec) {
+        Caffeine<Object, Object> builder = Caffeine.from(spec).recordStats();
+        if (spec.contains("maximumWeight")) {
+            builder.weigher(CacheSizeEstimator::weigh);
+        }
+        return builder;
     }
-}
\ No newline at end of file
+}
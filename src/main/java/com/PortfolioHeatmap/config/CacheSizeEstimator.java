@@ -0,0 +1,77 @@
+package com.PortfolioHeatmap.config;
+
+/**
+ * Estimates the heap footprint of cached values. Used as the weigher for caches bounded by
+ * maximumWeight, where the weight is in bytes, and to report estimated bytes for every cache.
+ * The figures are rough per-object sizes for a 64-bit JVM with compressed pointers, which is
+ * close enough to size caches against a memory budget. Values that know their own size, such as
+ * series and the cache entries holding them, implement SizeEstimated, so weighing them on every
+ * cache write is a single call.
+ */
+import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.models.SizeEstimated;
+import com.PortfolioHeatmap.models.StockPrice;
+
+import java.util.Map;
+import java.util.Optional;
+
+public final class CacheSizeEstimator {
+    // Fallback for values of a type not listed below
+    private static final long UNKNOWN_BYTES = 64;
+
+    private CacheSizeEstimator() {
+    }
+
+    // Weight of one cache entry in bytes, clamped to the int range Caffeine expects
+    public static int weigh(Object key, Object value) {
+        return (int) Math.min(Integer.MAX_VALUE, estimateBytes(key) + estimateBytes(value));
+    }
+
+    public static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String string) {
+            return 40 + string.length();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        if (value instanceof SizeEstimated sized) {
+            return sized.estimatedBytes();
+        }
+        if (value instanceof StockPrice) {
+            return 120;
+        }
+        if (value instanceof PriceHistory) {
+            return 120;
+        }
+        if (value instanceof HistoricalPrice) {
+            return 96;
+        }
+        if (value instanceof CandlestickData) {
+            return 170;
+        }
+        if (value instanceof Optional<?> optional) {
+            return 16 + estimateBytes(optional.orElse(null));
+        }
+        if (value instanceof Iterable<?> iterable) {
+            // Covers lists as well as Spring Data pages
+            long bytes = 40;
+            for (Object element : iterable) {
+                bytes += 8 + estimateBytes(element);
+            }
+            return bytes;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long bytes = 64;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                bytes += 40 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        }
+        return UNKNOWN_BYTES;
+    }
+}
@@ -0,0 +1,94 @@
+package com.PortfolioHeatmap.config;
+
+/**
+ * Configures the shared HTTP client used by the market data providers (FMP and Alpha Vantage).
+ * A single pooled, HTTP/2-capable java.net.http.HttpClient is shared by every provider so that
+ * connections are kept alive and reused across requests, and every request is bounded by
+ * connect and read timeouts instead of blocking a request thread indefinitely.
+ *
+ * Idle pooled connections are closed after the JDK's keep-alive timeout (1200 seconds by
+ * default). The JDK reads it once for the whole JVM, so it is set on the command line rather than
+ * here, e.g. -Djdk.httpclient.keepalive.timeout=30.
+ */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class HttpClientConfig {
+    private static final Logger log = LoggerFactory.getLogger(HttpClientConfig.class);
+
+    // How long to wait for a TCP/TLS connection to the provider.
+    @Value("${stock.data.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    // How long to wait for a provider response once the request has been sent.
+    @Value("${stock.data.http.read-timeout-ms:10000}")
+    private long readTimeoutMs;
+
+    // Number of threads completing provider responses and running async callbacks.
+    @Value("${stock.data.http.max-concurrency:32}")
+    private int maxConcurrency;
+
+    // Executor shared by the HTTP client and the async StockDataService methods.
+    // Bounded so a burst of provider calls cannot exhaust the JVM's threads, and
+    // kept free of blocking requests so FMP responses always complete promptly.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService marketDataExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "market-data-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(maxConcurrency, threadFactory);
+    }
+
+    // Virtual-thread executor for Alpha Vantage's blocking requests. Each symbol's
+    // request runs on its own virtual thread, so a batch costs roughly one
+    // round-trip instead of one per symbol; the provider bounds how many batch
+    // requests run at once and the rate limiter bounds how often they are sent.
+    @Bean
+    public SimpleAsyncTaskExecutor alphaVantageBatchExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("alpha-batch-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    // Pooled HTTP/2 client used for all provider requests. The JDK client keeps
+    // connections alive per host and multiplexes requests over HTTP/2 when the
+    // server supports it, falling back to HTTP/1.1 otherwise.
+    @Bean
+    public HttpClient marketDataHttpClient(ExecutorService marketDataExecutor) {
+        log.info("Initializing market data HTTP client: connectTimeout={}ms, readTimeout={}ms, maxConcurrency={}",
+                connectTimeoutMs, readTimeoutMs, maxConcurrency);
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(marketDataExecutor)
+                .build();
+    }
+
+    // RestTemplate backed by the pooled client, for the remaining synchronous
+    // provider calls (stock lists, S&P 500 constituents).
+    @Bean
+    public RestTemplate marketDataRestTemplate(RestTemplateBuilder builder, HttpClient marketDataHttpClient) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(marketDataHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return builder.requestFactory(() -> requestFactory).build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.PortfolioHeatmap.config;
+
+/**
+ * Answers every request with 503 Service Unavailable until the startup cache warm-up has finished,
+ * so a load balancer or client retries against a warm node instead of triggering a burst of cold
+ * provider and database calls. Once CacheWarmupService reports ready the filter passes everything
+ * through.
+ */
+import com.PortfolioHeatmap.services.CacheWarmupService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class WarmupReadinessFilter extends OncePerRequestFilter {
+    // Seconds a client is told to wait before retrying
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final CacheWarmupService cacheWarmupService;
+
+    public WarmupReadinessFilter(CacheWarmupService cacheWarmupService) {
+        this.cacheWarmupService = cacheWarmupService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!cacheWarmupService.isReady()) {
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Warming caches, retry shortly");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
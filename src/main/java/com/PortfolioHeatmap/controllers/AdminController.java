@@ -0,0 +1,69 @@
+package com.PortfolioHeatmap.controllers;
+
+/**
+ * Exposes operational diagnostics for the market data layer and its caches:
+ *   /market-data/coalescing       provider calls issued versus joined to one in flight
+ *   /market-data/providers        health of each provider when failover is enabled
+ *   /market-data/circuit-breaker  state of the quote circuit breaker
+ *   /caches                       hit ratio, evictions and estimated memory of each cache
+ *   /caches/invalidation          invalidations exchanged with the other instances
+ */
+import com.PortfolioHeatmap.services.CacheInvalidationBus;
+import com.PortfolioHeatmap.services.CacheStatsService;
+import com.PortfolioHeatmap.services.RequestCoalescerRegistry;
+import com.PortfolioHeatmap.services.StockDataServiceFactory;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+    private final RequestCoalescerRegistry coalescerRegistry;
+    private final StockDataServiceFactory stockDataServiceFactory;
+    private final CacheStatsService cacheStatsService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public AdminController(RequestCoalescerRegistry coalescerRegistry, StockDataServiceFactory factory,
+            CacheStatsService cacheStatsService, CacheInvalidationBus cacheInvalidationBus) {
+        this.coalescerRegistry = coalescerRegistry;
+        this.stockDataServiceFactory = factory;
+        this.cacheStatsService = cacheStatsService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    // Returns issued vs coalesced provider call counts for each single-flight layer
+    @GetMapping("/market-data/coalescing")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCoalescingStats() {
+        return ResponseEntity.ok(coalescerRegistry.getStats());
+    }
+
+    // Returns per-provider health, latency percentiles and hedge/failover counts,
+    // or an empty map when failover is disabled
+    @GetMapping("/market-data/providers")
+    public ResponseEntity<Map<String, Map<String, Object>>> getProviderHealth() {
+        return ResponseEntity.ok(stockDataServiceFactory.getProviderHealth());
+    }
+
+    // Returns the state of the circuit breaker in front of quote calls
+    @GetMapping("/market-data/circuit-breaker")
+    public ResponseEntity<Map<String, Object>> getCircuitBreakerState() {
+        return ResponseEntity.ok(stockDataServiceFactory.getQuoteCircuitState());
+    }
+
+    // Returns size, hit ratio, eviction count and estimated bytes for each cache
+    @GetMapping("/caches")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheStats() {
+        return ResponseEntity.ok(cacheStatsService.getStats());
+    }
+
+    // Returns this instance's id, transport and published/received invalidation counts
+    @GetMapping("/caches/invalidation")
+    public ResponseEntity<Map<String, Object>> getCacheInvalidationStats() {
+        return ResponseEntity.ok(cacheInvalidationBus.getStats());
+    }
+}
@@ -1,5 +1,6 @@
 package com.PortfolioHeatmap.controllers;
 
+import com.PortfolioHeatmap.models.ClosingPrice;
 import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
 import com.PortfolioHeatmap.models.Portfolio;
 import com.PortfolioHeatmap.models.PortfolioHolding;
@@ -31,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import org.springframework.data.domain.Pageable;
@@ -181,11 +183,15 @@ public class PortfolioController {
                         .body("You do not have permission to access this portfolio");
             }
             List<PortfolioHolding> openPositions = portfolioHoldingService.getOpenPositions(id);
-            List<PortfolioHolding> closedPositions = portfolioHoldingService.getClosedPositions(id);
             List<String> tickers = openPositions.stream()
                     .map(h -> h.getStock().getTicker())
                     .collect(Collectors.toList());
-            List<StockPrice> currentPrices = stockDataService.getBatchStockPrices(tickers);
+            // Start the quote request first and load closed positions while it is in
+            // flight
+            CompletableFuture<List<StockPrice>> currentPricesFuture = stockDataService
+                    .getBatchStockPricesAsync(tickers);
+            List<PortfolioHolding> closedPositions = portfolioHoldingService.getClosedPositions(id);
+            List<StockPrice> currentPrices = StockDataService.await(currentPricesFuture);
             Map<String, Double> currentPriceMap = currentPrices.stream()
                     .collect(Collectors.toMap(StockPrice::getSymbol, StockPrice::getPrice));
             Map<Long, Double> timeframePercentageChanges = new HashMap<>();
@@ -224,22 +230,22 @@ public class PortfolioController {
                     // For timeframes other than "total", get the historical price
                     LocalDate initialStartDate = getStartDateForTimeframe(timeframe);
                     effectiveStartDate = initialStartDate;
-                    Optional<PriceHistory> startPriceOpt = priceHistoryService
-                            .findFirstByStockTickerAndDateLessThanOrderByDateDesc(ticker, effectiveStartDate);
+                    Optional<ClosingPrice> startPriceOpt = priceHistoryService.findCloseBefore(ticker,
+                            effectiveStartDate);
 
                     // Special handling for 1-day timeframe
                     if (timeframe.equals("1d") && startPriceOpt.isPresent()) {
-                        double previousClose = startPriceOpt.get().getClosingPrice();
-                        LocalDate previousDate = startPriceOpt.get().getDate();
+                        double previousClose = startPriceOpt.get().price();
+                        LocalDate previousDate = startPriceOpt.get().date();
 
                         // Keep looking back until we find a different price
                         while (currentPrice == previousClose) {
-                            Optional<PriceHistory> dayBefore = priceHistoryService
-                                    .findFirstByStockTickerAndDateLessThanOrderByDateDesc(ticker, previousDate);
+                            Optional<ClosingPrice> dayBefore = priceHistoryService.findCloseBefore(ticker,
+                                    previousDate);
                             if (dayBefore.isPresent()) {
                                 startPriceOpt = dayBefore;
-                                previousDate = dayBefore.get().getDate();
-                                previousClose = dayBefore.get().getClosingPrice();
+                                previousDate = dayBefore.get().date();
+                                previousClose = dayBefore.get().price();
                                 log.info("Current price matches previous price for {}, looking back to {}: ${}",
                                         ticker, previousDate, previousClose);
                             } else {
@@ -250,7 +256,7 @@ public class PortfolioController {
                     }
 
                     if (startPriceOpt.isPresent()) {
-                        startPrice = startPriceOpt.get().getClosingPrice();
+                        startPrice = startPriceOpt.get().price();
                         log.info("Ticker: {}, timeframe: {}, date: {}, oldPrice: ${}, currentPrice: ${}",
                                 ticker, timeframe, effectiveStartDate, startPrice, currentPrice);
                     } else {
@@ -299,8 +305,8 @@ public class PortfolioController {
             for (PortfolioHolding holding : openPositions) {
                 if (holding.getPurchasePrice() != null) {
                     double currentPrice = priceHistoryService
-                            .findTopByStockTickerOrderByDateDesc(holding.getStock().getTicker())
-                            .map(PriceHistory::getClosingPrice)
+                            .findLatestClose(holding.getStock().getTicker())
+                            .map(ClosingPrice::price)
                             .orElse(holding.getPurchasePrice());
                     totalPortfolioValueWithPrices += holding.getShares() * currentPrice;
                     totalInitialValueWithPrices += holding.getShares() * holding.getPurchasePrice();
@@ -703,27 +709,7 @@ public class PortfolioController {
     }
 
     private LocalDate getStartDateForTimeframe(String timeframe) {
-        LocalDate today = LocalDate.now();
-        switch (timeframe) {
-            case "1d":
-                return today.minusDays(1);
-            case "1w":
-                return today.minusWeeks(1);
-            case "1m":
-                return today.minusMonths(1);
-            case "3m":
-                return today.minusMonths(3);
-            case "6m":
-                return today.minusMonths(6);
-            case "ytd":
-                return LocalDate.of(today.getYear(), 1, 1);
-            case "1y":
-                return today.minusYears(1);
-            case "total":
-                return LocalDate.of(1900, 1, 1);
-            default:
-                return today.minusDays(1);
-        }
+        return PriceHistoryService.timeframeStartDate(timeframe, LocalDate.now());
     }
 
     private String getTokenFromHeader() {
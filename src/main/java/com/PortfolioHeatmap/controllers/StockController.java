@@ -7,13 +7,20 @@ package com.PortfolioHeatmap.controllers;
  * 
  * @author Marvel Bana
  */
+import com.PortfolioHeatmap.models.BarInterval;
+import com.PortfolioHeatmap.models.BatchQuoteResult;
 import com.PortfolioHeatmap.models.PriceHistory;
 import com.PortfolioHeatmap.models.Stock;
 import com.PortfolioHeatmap.models.StockPrice;
 import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
 import com.PortfolioHeatmap.models.HistoricalPrice;
 import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.OhlcvSeries;
 import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
+import com.PortfolioHeatmap.services.PriceHistoryBackfillPlan;
+import com.PortfolioHeatmap.services.PriceHistoryService;
+import com.PortfolioHeatmap.services.RequestPriority;
+import com.PortfolioHeatmap.services.SeriesRollupService;
 import com.PortfolioHeatmap.services.StockDataService;
 import com.PortfolioHeatmap.services.StockDataServiceFactory;
 import com.PortfolioHeatmap.services.StockService;
@@ -24,6 +31,7 @@ import io.jsonwebtoken.io.IOException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -36,6 +44,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.Iterator;
 
@@ -49,15 +59,27 @@ public class StockController {
     private final StockService stockService;
     private final StockDataService stockDataService;
     private final PriceHistoryRepository priceHistoryRepository;
+    // Price history writes go through the service so derived caches are evicted
+    private final PriceHistoryService priceHistoryService;
+    // Daily, weekly or monthly series for the chart endpoints
+    private final SeriesRollupService seriesRollupService;
+    // How far back price history backfill reaches
+    private final int backfillYears;
 
     // Constructor for dependency injection of StockService,
-    // StockDataServiceFactory, and PriceHistoryRepository
+    // StockDataServiceFactory, PriceHistoryRepository, PriceHistoryService and
+    // SeriesRollupService, and the backfill window
     // Uses the factory to get the appropriate StockDataService implementation
     public StockController(StockService stockService, StockDataServiceFactory factory,
-            PriceHistoryRepository priceHistoryRepository) {
+            PriceHistoryRepository priceHistoryRepository, PriceHistoryService priceHistoryService,
+            SeriesRollupService seriesRollupService,
+            @Value("${price-history.backfill.years:1}") int backfillYears) {
         this.stockService = stockService;
         this.stockDataService = factory.getService();
         this.priceHistoryRepository = priceHistoryRepository;
+        this.priceHistoryService = priceHistoryService;
+        this.seriesRollupService = seriesRollupService;
+        this.backfillYears = backfillYears;
     }
 
     // Handles GET /stocks to retrieve a paginated list of all stocks
@@ -126,8 +148,11 @@ public class StockController {
     }
 
     // Handles GET /stocks/batch-prices to fetch current prices for multiple stocks
-    // Takes a list of symbols as query parameters, logs the request and response
-    // Returns a list of StockPrice objects or a 500 error if an exception occurs
+    // Takes a list of symbols of any length as query parameters, logs the request
+    // and response. Returns a list of StockPrice objects or a 500 error if an
+    // exception occurs; symbols that could not be priced are listed in the
+    // X-Failed-Symbols response header, and the symbols served from cache or
+    // fetched upstream in X-Cache-Hits and X-Cache-Misses
     @GetMapping("/batch-prices")
     public ResponseEntity<List<StockPrice>> getBatchStockPrices(@RequestParam List<String> symbols) {
         log.info("Fetching batch prices for symbols: {}", symbols);
@@ -137,7 +162,8 @@ public class StockController {
                     .filter(symbol -> !symbol.equals("Cash"))
                     .collect(Collectors.toList());
 
-            List<StockPrice> stockPrices = stockDataService.getBatchStockPrices(nonCashSymbols);
+            BatchQuoteResult batchResult = StockDataService.await(stockDataService.getBatchQuotesAsync(nonCashSymbols));
+            List<StockPrice> stockPrices = new ArrayList<>(batchResult.getPrices());
 
             // Add Cash price if it was in the original symbols
             if (symbols.contains("Cash")) {
@@ -148,7 +174,14 @@ public class StockController {
             }
 
             log.info("Returning batch prices: {}", stockPrices);
-            return ResponseEntity.ok(stockPrices);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .header("X-Cache-Hits", String.join(",", batchResult.getCacheHits()))
+                    .header("X-Cache-Misses", String.join(",", batchResult.getCacheMisses()));
+            if (batchResult.hasFailures()) {
+                log.warn("Could not fetch prices for symbols: {}", batchResult.getFailedSymbols());
+                response.header("X-Failed-Symbols", String.join(",", batchResult.getFailedSymbols().keySet()));
+            }
+            return response.body(stockPrices);
         } catch (RuntimeException e) {
             log.error("Error fetching batch prices: {}", symbols, e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
@@ -205,7 +238,7 @@ public class StockController {
             // Update the price history
             priceHistory.setClosingPrice(stockPrice.getPrice());
             priceHistory.setDate(LocalDate.now());
-            priceHistoryRepository.save(priceHistory);
+            priceHistoryService.save(priceHistory);
 
             log.info("Updated price for {}: closing_price={}", ticker, stockPrice.getPrice());
             return ResponseEntity.ok("Price updated for " + ticker);
@@ -217,50 +250,86 @@ public class StockController {
 
     // Handles POST /stocks/price-history/populate/{symbol} to populate the
     // price_history table with historical prices
-    // Fetches historical prices for the past year and saves them to the database
-    private List<PriceHistory> populatePriceHistoryForStock(Stock stock, LocalDate from, LocalDate to) {
-        String symbol = stock.getTicker();
-        log.info("Populating price history for symbol: {}", symbol);
+    // Fetches only the prices missing from the configured window and saves them
+    private List<PriceHistory> populatePriceHistoryForStock(Stock stock, LocalDate earliestStored, LocalDate from,
+            LocalDate to) {
+        List<PriceHistoryBackfillPlan.Range> ranges = PriceHistoryBackfillPlan.ranges(earliestStored,
+                stock.getLatestDate(), stock.getBackfilledFrom(), from, to);
+        List<PriceHistory> saved = savePriceHistory(stock, StockDataService.await(fetchPriceHistoryForStock(stock,
+                ranges, () -> stockDataService.getStockPriceAsync(stock.getTicker()))));
+        markBackfilled(stock, ranges, from);
+        return saved;
+    }
+
+    // Remembers that the provider was asked for every day back to the window
+    // start, so days it had no prices for are not requested again
+    private void markBackfilled(Stock stock, List<PriceHistoryBackfillPlan.Range> ranges, LocalDate from) {
+        if (PriceHistoryBackfillPlan.reachesWindowStart(ranges, from)) {
+            priceHistoryRepository.markBackfilledFrom(stock.getTicker(), from);
+        }
+    }
 
-        // Fetch historical prices
-        List<HistoricalPrice> historicalPrices = stockDataService.getHistoricalPrices(symbol, from, to);
-        if (historicalPrices.isEmpty()) {
-            log.warn("No historical prices found for symbol: {}", symbol);
-            return List.of();
+    // Fetches the daily series for the ranges the stock's stored history is
+    // missing (see PriceHistoryBackfillPlan) while the current quote (market cap
+    // and PE ratio, null when no quote was found) is in flight, and maps them to
+    // unsaved PriceHistory entities. The quote is only requested when there is
+    // something to download. The series is the same one that serves charts and
+    // candlesticks, so a recently viewed ticker is backfilled without another
+    // history download.
+    private CompletableFuture<List<PriceHistory>> fetchPriceHistoryForStock(Stock stock,
+            List<PriceHistoryBackfillPlan.Range> ranges, Supplier<CompletableFuture<StockPrice>> quote) {
+        String symbol = stock.getTicker();
+        log.info("Populating price history for symbol: {} over {}", symbol, ranges);
+        if (ranges.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
         }
+        CompletableFuture<StockPrice> quoteFuture = quote.get();
 
-        // Fetch current market cap and PE ratio using /quote endpoint
-        StockPrice stockPrice = stockDataService.getStockPrice(symbol);
-        Long marketCap = stockPrice.getMarketCap();
-        Double peRatio = stockPrice.getPeRatio();
-        log.info("Fetched current data for {}: marketCap={}, peRatio={}", symbol, marketCap, peRatio);
-
-        // Map historical prices to PriceHistory entities
-        List<PriceHistory> priceHistories = historicalPrices.stream()
-                .filter(hp -> {
-                    boolean exists = priceHistoryRepository.existsByStockAndDate(stock, LocalDate.parse(hp.getDate()));
-                    if (exists) {
-                        log.info("Skipping existing price history entry for {} on {}", symbol, hp.getDate());
-                        return false;
+        List<CompletableFuture<OhlcvSeries>> seriesFutures = ranges.stream()
+                .map(range -> stockDataService.getDailySeriesAsync(symbol, range.from(), range.to()))
+                .collect(Collectors.toList());
+        CompletableFuture<OhlcvSeries> seriesFuture = CompletableFuture
+                .allOf(seriesFutures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> OhlcvSeries.concat(symbol,
+                        seriesFutures.stream().map(CompletableFuture::join).collect(Collectors.toList())));
+        return seriesFuture.thenCompose(series -> {
+            if (series.isEmpty()) {
+                log.warn("No historical prices found for symbol: {}", symbol);
+                return CompletableFuture.completedFuture(List.<PriceHistory>of());
+            }
+            return quoteFuture.thenApply(stockPrice -> {
+                Long marketCap = stockPrice != null ? stockPrice.getMarketCap() : null;
+                Double peRatio = stockPrice != null ? stockPrice.getPeRatio() : null;
+                log.info("Fetched current data for {}: marketCap={}, peRatio={}", symbol, marketCap, peRatio);
+
+                // Map each day with a closing price to a PriceHistory entity
+                List<PriceHistory> priceHistories = new ArrayList<>(series.size());
+                for (int i = 0; i < series.size(); i++) {
+                    double close = series.getClose(i);
+                    if (Double.isNaN(close) || close == 0.0) {
+                        continue;
                     }
-                    return true;
-                })
-                .map(hp -> {
                     PriceHistory priceHistory = new PriceHistory();
                     priceHistory.setStock(stock);
-                    priceHistory.setDate(LocalDate.parse(hp.getDate()));
-                    priceHistory.setClosingPrice(hp.getClose()); // Use getClose() as per typical FMP response
+                    priceHistory.setDate(series.getDate(i));
+                    priceHistory.setClosingPrice(close);
                     priceHistory.setPeRatio(peRatio); // Set the current PE ratio
                     priceHistory.setMarketCap(marketCap); // Set the current market cap
-                    return priceHistory;
-                })
-                .collect(Collectors.toList());
+                    priceHistories.add(priceHistory);
+                }
+                return priceHistories;
+            });
+        });
+    }
 
-        if (!priceHistories.isEmpty()) {
-            priceHistoryRepository.saveAll(priceHistories);
-            log.info("Saved {} historical price entries for symbol: {}", priceHistories.size(), symbol);
+    // Upserts the fetched entries in bulk; entries already in the price_history
+    // table are updated in the database rather than checked one by one
+    private List<PriceHistory> savePriceHistory(Stock stock, List<PriceHistory> fetched) {
+        if (!fetched.isEmpty()) {
+            int written = priceHistoryService.upsertAll(fetched);
+            log.info("Saved {} historical price entries for symbol: {}", written, stock.getTicker());
         }
-        return priceHistories;
+        return fetched;
     }
 
     // Endpoint to trigger price history population for a specific stock
@@ -275,11 +344,13 @@ public class StockController {
             }
 
             LocalDate to = LocalDate.now();
-            LocalDate from = to.minusYears(1); // 1 year of data
-            List<PriceHistory> priceHistories = populatePriceHistoryForStock(stock, from, to);
+            LocalDate from = to.minusYears(backfillYears);
+            LocalDate earliestStored = priceHistoryRepository.findFirstByStockTickerOrderByDateAsc(symbol)
+                    .map(PriceHistory::getDate).orElse(null);
+            List<PriceHistory> priceHistories = populatePriceHistoryForStock(stock, earliestStored, from, to);
 
             if (priceHistories.isEmpty()) {
-                return ResponseEntity.ok("No new historical prices found for " + symbol);
+                return ResponseEntity.ok("No historical prices found for " + symbol);
             }
             return ResponseEntity
                     .ok("Successfully populated " + priceHistories.size() + " historical price entries for " + symbol);
@@ -289,7 +360,12 @@ public class StockController {
         }
     }
 
-    // Endpoint to populate price history for all stocks in batches
+    // Endpoint to populate price history for all stocks
+    // Only the days each stock is missing are requested, so a rerun costs at
+    // most one small download per stock. Every stock's download is requested
+    // up front at BACKFILL priority; the shared rate limiter paces them at the
+    // provider's full quota while interactive requests keep priority. Results
+    // are saved on this thread as each download completes, in stock order.
     @PostMapping("/price-history/populate-all")
     public ResponseEntity<String> populateAllPriceHistories() {
         log.info("Populating price history for all stocks");
@@ -301,29 +377,53 @@ public class StockController {
             }
 
             LocalDate to = LocalDate.now();
-            LocalDate from = to.minusYears(1); // 1 year of data
-            int totalEntries = 0;
-            int batchSize = 10;
-            int delayMs = 1000; // 1-second delay between batches (20 requests per batch, 300 requests per
-                                // minute)
-
-            for (int i = 0; i < allStocks.size(); i += batchSize) {
-                List<Stock> batch = allStocks.subList(i, Math.min(i + batchSize, allStocks.size()));
-                log.info("Processing batch of {} stocks (starting at index {})", batch.size(), i);
-
-                for (Stock stock : batch) {
-                    try {
-                        List<PriceHistory> priceHistories = populatePriceHistoryForStock(stock, from, to);
-                        totalEntries += priceHistories.size();
-                    } catch (Exception e) {
-                        log.error("Failed to populate price history for symbol {}: {}", stock.getTicker(),
-                                e.getMessage(), e);
-                    }
+            LocalDate from = to.minusYears(backfillYears);
+            // Each stock's watermark is on the stock itself; earliest dates take one query
+            Map<String, LocalDate> earliestStored = new HashMap<>();
+            for (Object[] row : priceHistoryRepository.findEarliestDates()) {
+                earliestStored.put((String) row[0], (LocalDate) row[1]);
+            }
+            List<List<PriceHistoryBackfillPlan.Range>> plans = allStocks.stream()
+                    .map(stock -> PriceHistoryBackfillPlan.ranges(earliestStored.get(stock.getTicker()),
+                            stock.getLatestDate(), stock.getBackfilledFrom(), from, to))
+                    .collect(Collectors.toList());
+            // Market caps and PE ratios come from one batched quote call for the
+            // stocks that have something to download, rather than a quote request
+            // per stock; a rerun with nothing missing makes no quote call at all
+            List<String> symbolsToQuote = new ArrayList<>();
+            for (int i = 0; i < allStocks.size(); i++) {
+                if (!plans.get(i).isEmpty()) {
+                    symbolsToQuote.add(allStocks.get(i).getTicker());
                 }
+            }
+            List<CompletableFuture<List<PriceHistory>>> downloads = RequestPriority.callAs(RequestPriority.BACKFILL,
+                    () -> {
+                        CompletableFuture<Map<String, StockPrice>> quotes = symbolsToQuote.isEmpty()
+                                ? CompletableFuture.completedFuture(Map.of())
+                                : stockDataService.getBatchQuotesAsync(symbolsToQuote)
+                                        .thenApply(result -> result.getPrices().stream().collect(Collectors.toMap(
+                                                price -> price.getSymbol().toUpperCase(), price -> price,
+                                                (first, second) -> first)));
+                        List<CompletableFuture<List<PriceHistory>>> futures = new ArrayList<>();
+                        for (int i = 0; i < allStocks.size(); i++) {
+                            Stock stock = allStocks.get(i);
+                            futures.add(fetchPriceHistoryForStock(stock, plans.get(i), () -> quotes
+                                    .thenApply(prices -> prices.get(stock.getTicker().toUpperCase()))));
+                        }
+                        return futures;
+                    });
 
-                if (i + batchSize < allStocks.size()) {
-                    log.info("Waiting {}ms before processing the next batch to respect API rate limits", delayMs);
-                    Thread.sleep(delayMs);
+            int totalEntries = 0;
+            for (int i = 0; i < allStocks.size(); i++) {
+                Stock stock = allStocks.get(i);
+                try {
+                    List<PriceHistory> priceHistories = savePriceHistory(stock,
+                            StockDataService.await(downloads.get(i)));
+                    markBackfilled(stock, plans.get(i), from);
+                    totalEntries += priceHistories.size();
+                } catch (Exception e) {
+                    log.error("Failed to populate price history for symbol {}: {}", stock.getTicker(),
+                            e.getMessage(), e);
                 }
             }
 
@@ -415,12 +515,14 @@ public class StockController {
     public ResponseEntity<Map<String, Object>> getStockInfo(@PathVariable String ticker) {
         log.info("Fetching stock info for ticker: {}", ticker);
         try {
+            // Request the quote while the stock is looked up in the database
+            CompletableFuture<StockPrice> quoteFuture = stockDataService.getStockPriceAsync(ticker);
             Stock stock = stockService.getStockById(ticker);
             if (stock == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            StockPrice stockPrice = stockDataService.getStockPrice(ticker);
+            StockPrice stockPrice = StockDataService.await(quoteFuture);
 
             Map<String, Object> stockInfo = new HashMap<>();
             stockInfo.put("ticker", ticker);
@@ -458,13 +560,16 @@ public class StockController {
      * @param ticker    The ticker symbol of the stock (e.g., "AAPL")
      * @param timeframe The time period to retrieve data for (e.g., "1d", "1w",
      *                  "1m", "3m", "6m", "1y", "5y")
+     * @param interval  "daily", "weekly" or "monthly" points; by default the
+     *                  interval is picked from the timeframe's length
      * @return ResponseEntity containing a list of historical price data or error
      *         status
      */
     @GetMapping("/history/{ticker}")
     public ResponseEntity<List<Map<String, Object>>> getStockHistory(
             @PathVariable String ticker,
-            @RequestParam(defaultValue = "1m") String timeframe) {
+            @RequestParam(defaultValue = "1m") String timeframe,
+            @RequestParam(required = false) String interval) {
 
         log.info("Fetching stock history for ticker: {} with timeframe: {}", ticker, timeframe);
         try {
@@ -501,8 +606,10 @@ public class StockController {
                     startDate = endDate.minusMonths(1); // Default to 1 month
             }
 
-            // Get historical prices from the service
-            List<HistoricalPrice> historicalPrices = stockDataService.getHistoricalPrices(ticker, startDate, endDate);
+            // Get historical prices at the chosen interval; long ranges are served
+            // from weekly or monthly rollups
+            List<HistoricalPrice> historicalPrices = seriesRollupService.getSeries(ticker, startDate, endDate,
+                    BarInterval.parse(interval, startDate, endDate)).toHistoricalPrices();
 
             // Convert to format expected by frontend
             List<Map<String, Object>> formattedHistory = historicalPrices.stream()
@@ -524,6 +631,9 @@ public class StockController {
                     .collect(Collectors.toList());
 
             return ResponseEntity.ok(formattedHistory);
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad stock history request for {}: {}", ticker, e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching stock history for {}: {}", ticker, e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
@@ -537,13 +647,16 @@ public class StockController {
      * @param ticker    The ticker symbol of the stock (e.g., "AAPL")
      * @param timeframe The time period to retrieve data for (e.g., "1d", "1w",
      *                  "1m", "3m", "6m", "1y", "5y")
+     * @param interval  "daily", "weekly" or "monthly" candles; by default the
+     *                  interval is picked from the timeframe's length
      * @return ResponseEntity containing a list of candlestick data points or error
      *         status
      */
     @GetMapping("/candlestick/{ticker}")
     public ResponseEntity<List<CandlestickData>> getCandlestickData(
             @PathVariable String ticker,
-            @RequestParam(defaultValue = "1y") String timeframe) {
+            @RequestParam(defaultValue = "1y") String timeframe,
+            @RequestParam(required = false) String interval) {
 
         log.info("Fetching candlestick data for ticker: {} with timeframe: {}", ticker, timeframe);
         try {
@@ -580,8 +693,10 @@ public class StockController {
                     startDate = endDate.minusYears(1); // Default to 1 year
             }
 
-            // Get candlestick data from the service
-            List<CandlestickData> candlestickData = stockDataService.getCandlestickData(ticker, startDate, endDate);
+            // Get candlesticks at the chosen interval; long ranges are served from
+            // weekly or monthly rollups
+            List<CandlestickData> candlestickData = seriesRollupService.getSeries(ticker, startDate, endDate,
+                    BarInterval.parse(interval, startDate, endDate)).toCandlesticks();
 
             if (candlestickData.isEmpty()) {
                 log.warn("No candlestick data found for ticker: {}", ticker);
@@ -589,6 +704,9 @@ public class StockController {
             }
 
             return ResponseEntity.ok(candlestickData);
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad candlestick data request for {}: {}", ticker, e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching candlestick data for {}: {}", ticker, e.getMessage(), e);
             return ResponseEntity.status(500).body(null);
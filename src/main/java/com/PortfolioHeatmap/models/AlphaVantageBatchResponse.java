@@ -12,11 +12,22 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class AlphaVantageBatchResponse {
     // List of stock quotes returned by the Alpha Vantage API, mapped to the "Stock
     // Quotes" JSON field.
     @JsonProperty("Stock Quotes")
     private List<StockQuote> stockQuotes;
+    // Set instead of the quotes when the request is rejected, for example for an
+    // unknown function
+    @JsonProperty("Error Message")
+    private String errorMessage;
+    // Set instead of the quotes when the request was throttled ("Note" on older
+    // responses, "Information" on newer ones)
+    @JsonProperty("Note")
+    private String note;
+    @JsonProperty("Information")
+    private String information;
 
     // Getter for the list of stock quotes.
     public List<StockQuote> getStockQuotes() {
@@ -28,6 +39,30 @@ public class AlphaVantageBatchResponse {
         this.stockQuotes = stockQuotes;
     }
 
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    public String getInformation() {
+        return information;
+    }
+
+    public void setInformation(String information) {
+        this.information = information;
+    }
+
     // Provides a string representation of the AlphaVantageBatchResponse object for
     // logging or debugging.
     @Override
@@ -14,10 +14,27 @@ import java.util.Map;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class AlphaVantageHistoricalPriceResponse {
+    // Request details echoed back, including "4. Output Size" ("Compact" or "Full size")
+    @JsonProperty("Meta Data")
+    private Map<String, String> metaData;
+
     // The time series data, mapped to the "Time Series (Daily)" JSON field.
     @JsonProperty("Time Series (Daily)")
     private Map<LocalDate, DailyPrice> timeSeries;
 
+    public Map<String, String> getMetaData() {
+        return metaData;
+    }
+
+    public void setMetaData(Map<String, String> metaData) {
+        this.metaData = metaData;
+    }
+
+    // True if Alpha Vantage returned only its compact, latest-100-days output
+    public boolean isCompact() {
+        return metaData != null && "compact".equalsIgnoreCase(metaData.get("4. Output Size"));
+    }
+
     // Getter for the time series data.
     public Map<LocalDate, DailyPrice> getTimeSeries() {
         return timeSeries;
@@ -38,10 +55,50 @@ public class AlphaVantageHistoricalPriceResponse {
     // Nested class representing a single daily price entry in the response.
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class DailyPrice {
+        // The opening price on that date, mapped to the "1. open" JSON field.
+        @JsonProperty("1. open")
+        private String open;
+
+        // The high price on that date, mapped to the "2. high" JSON field.
+        @JsonProperty("2. high")
+        private String high;
+
+        // The low price on that date, mapped to the "3. low" JSON field.
+        @JsonProperty("3. low")
+        private String low;
+
         // The closing price on that date, mapped to the "4. close" JSON field.
         @JsonProperty("4. close")
         private String close;
 
+        // The traded volume on that date, mapped to the "5. volume" JSON field.
+        @JsonProperty("5. volume")
+        private String volume;
+
+        public String getOpen() {
+            return open;
+        }
+
+        public void setOpen(String open) {
+            this.open = open;
+        }
+
+        public String getHigh() {
+            return high;
+        }
+
+        public void setHigh(String high) {
+            this.high = high;
+        }
+
+        public String getLow() {
+            return low;
+        }
+
+        public void setLow(String low) {
+            this.low = low;
+        }
+
         // Getter for the closing price.
         public String getClose() {
             return close;
@@ -52,11 +109,20 @@ public class AlphaVantageHistoricalPriceResponse {
             this.close = close;
         }
 
+        public String getVolume() {
+            return volume;
+        }
+
+        public void setVolume(String volume) {
+            this.volume = volume;
+        }
+
         // Provides a string representation of the DailyPrice object for logging or
         // debugging.
         @Override
         public String toString() {
-            return "DailyPrice[close=" + close + "]";
+            return "DailyPrice[open=" + open + ", high=" + high + ", low=" + low + ", close=" + close
+                    + ", volume=" + volume + "]";
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.PortfolioHeatmap.models;
+
+/**
+ * The bar width of a price series: one bar per trading day, per week (Monday to Sunday) or per
+ * calendar month. Long ranges are charted with wider bars so a chart never carries many more bars
+ * than it has pixels to draw them with.
+ */
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+public enum BarInterval {
+    DAILY, WEEKLY, MONTHLY;
+
+    // Most bars a range is charted with when its interval is chosen automatically
+    public static final int MAX_BARS = 300;
+
+    // The finest interval that charts the range in at most MAX_BARS bars: daily up
+    // to about a year, weekly up to about five years and monthly beyond
+    public static BarInterval forRange(LocalDate from, LocalDate to) {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days * 252 / 365 <= MAX_BARS) {
+            return DAILY;
+        }
+        if (days / 7 <= MAX_BARS) {
+            return WEEKLY;
+        }
+        return MONTHLY;
+    }
+
+    // Parses "daily", "weekly" or "monthly" (any case); null or "auto" picks the
+    // interval from the range
+    public static BarInterval parse(String value, LocalDate from, LocalDate to) {
+        if (value == null || value.isBlank() || "auto".equalsIgnoreCase(value)) {
+            return forRange(from, to);
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown interval: " + value);
+        }
+    }
+
+    // First day of the period containing the date
+    public LocalDate periodStart(LocalDate date) {
+        return switch (this) {
+            case DAILY -> date;
+            case WEEKLY -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> date.withDayOfMonth(1);
+        };
+    }
+}
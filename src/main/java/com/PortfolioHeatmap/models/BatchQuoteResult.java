@@ -0,0 +1,75 @@
+package com.PortfolioHeatmap.models;
+
+/**
+ * Represents the outcome of a batch quote request across one or more provider calls.
+ * Holds the quotes that were fetched successfully, in the order the symbols were requested,
+ * together with the symbols that could not be quoted and the reason each one failed.
+ * Providers with a quote cache also report which symbols were served from it (cache hits) and
+ * which had to be requested upstream (cache misses).
+ */
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BatchQuoteResult {
+    // Quotes fetched successfully, one per requested symbol.
+    private List<StockPrice> prices = new ArrayList<>();
+    // Symbols that could not be quoted, mapped to the reason they failed.
+    private Map<String, String> failedSymbols = new LinkedHashMap<>();
+    // Symbols served from a quote cache without an upstream request.
+    private List<String> cacheHits = new ArrayList<>();
+    // Symbols that were requested upstream because no cached quote was available.
+    private List<String> cacheMisses = new ArrayList<>();
+
+    public BatchQuoteResult() {
+    }
+
+    public BatchQuoteResult(List<StockPrice> prices, Map<String, String> failedSymbols) {
+        this.prices = prices;
+        this.failedSymbols = failedSymbols;
+    }
+
+    public List<StockPrice> getPrices() {
+        return prices;
+    }
+
+    public void setPrices(List<StockPrice> prices) {
+        this.prices = prices;
+    }
+
+    public Map<String, String> getFailedSymbols() {
+        return failedSymbols;
+    }
+
+    public void setFailedSymbols(Map<String, String> failedSymbols) {
+        this.failedSymbols = failedSymbols;
+    }
+
+    public List<String> getCacheHits() {
+        return cacheHits;
+    }
+
+    public void setCacheHits(List<String> cacheHits) {
+        this.cacheHits = cacheHits;
+    }
+
+    public List<String> getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public void setCacheMisses(List<String> cacheMisses) {
+        this.cacheMisses = cacheMisses;
+    }
+
+    // Returns true if at least one requested symbol could not be quoted.
+    public boolean hasFailures() {
+        return !failedSymbols.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchQuoteResult[prices=" + prices.size() + ", failedSymbols=" + failedSymbols.keySet()
+                + ", cacheHits=" + cacheHits.size() + ", cacheMisses=" + cacheMisses.size() + "]";
+    }
+}
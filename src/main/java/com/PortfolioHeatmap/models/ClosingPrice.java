@@ -0,0 +1,10 @@
+package com.PortfolioHeatmap.models;
+
+/**
+ * A stored closing price and the trading day it closed on, as read from the in-memory price
+ * series rather than as a PriceHistory entity.
+ */
+import java.time.LocalDate;
+
+public record ClosingPrice(LocalDate date, double price) {
+}
@@ -0,0 +1,241 @@
+package com.PortfolioHeatmap.models;
+
+/**
+ * A compact daily OHLCV series for one symbol, stored column-wise in primitive arrays rather than
+ * as one object per day. Dates are held as epoch days in ascending order, so range lookups are a
+ * binary search. Missing prices are stored as NaN and a missing volume as MISSING_VOLUME.
+ */
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class OhlcvSeries implements SizeEstimated {
+    // Stored in place of a volume the provider did not report
+    public static final long MISSING_VOLUME = -1L;
+
+    private final String symbol;
+    private final int[] epochDays;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final long[] volume;
+
+    // The arrays are used as-is and must all have the same length, with epochDays
+    // in ascending order
+    public OhlcvSeries(String symbol, int[] epochDays, double[] open, double[] high, double[] low,
+            double[] close, long[] volume) {
+        if (open.length != epochDays.length || high.length != epochDays.length || low.length != epochDays.length
+                || close.length != epochDays.length || volume.length != epochDays.length) {
+            throw new IllegalArgumentException("All OHLCV columns must have the same length");
+        }
+        this.symbol = symbol;
+        this.epochDays = epochDays;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    // Creates a series with no rows
+    public static OhlcvSeries empty(String symbol) {
+        return new OhlcvSeries(symbol, new int[0], new double[0], new double[0], new double[0], new double[0],
+                new long[0]);
+    }
+
+    // Joins series whose date ranges follow one another, in the given order
+    public static OhlcvSeries concat(String symbol, Collection<OhlcvSeries> parts) {
+        if (parts.size() == 1) {
+            return parts.iterator().next();
+        }
+        int size = parts.stream().mapToInt(OhlcvSeries::size).sum();
+        int[] epochDays = new int[size];
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        long[] volume = new long[size];
+        int offset = 0;
+        for (OhlcvSeries part : parts) {
+            int length = part.size();
+            System.arraycopy(part.epochDays, 0, epochDays, offset, length);
+            System.arraycopy(part.open, 0, open, offset, length);
+            System.arraycopy(part.high, 0, high, offset, length);
+            System.arraycopy(part.low, 0, low, offset, length);
+            System.arraycopy(part.close, 0, close, offset, length);
+            System.arraycopy(part.volume, 0, volume, offset, length);
+            offset += length;
+        }
+        return new OhlcvSeries(symbol, epochDays, open, high, low, close, volume);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    public boolean isEmpty() {
+        return epochDays.length == 0;
+    }
+
+    // Approximate heap footprint: 44 bytes per row across the six columns plus
+    // the object and array headers
+    @Override
+    public long estimatedBytes() {
+        return 160L + 44L * epochDays.length;
+    }
+
+    public int getEpochDay(int index) {
+        return epochDays[index];
+    }
+
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(epochDays[index]);
+    }
+
+    public double getOpen(int index) {
+        return open[index];
+    }
+
+    public double getHigh(int index) {
+        return high[index];
+    }
+
+    public double getLow(int index) {
+        return low[index];
+    }
+
+    public double getClose(int index) {
+        return close[index];
+    }
+
+    public long getVolume(int index) {
+        return volume[index];
+    }
+
+    // Returns the index of the first row on or after the given date, or size() if
+    // every row is earlier
+    public int indexOnOrAfter(LocalDate date) {
+        long target = date.toEpochDay();
+        int lo = 0;
+        int hi = epochDays.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochDays[mid] < target) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Returns the rows between from and to (inclusive) as a new series
+    public OhlcvSeries slice(LocalDate from, LocalDate to) {
+        int start = indexOnOrAfter(from);
+        int end = indexOnOrAfter(to.plusDays(1));
+        if (start == 0 && end == epochDays.length) {
+            return this;
+        }
+        if (start >= end) {
+            return empty(symbol);
+        }
+        return new OhlcvSeries(symbol,
+                Arrays.copyOfRange(epochDays, start, end),
+                Arrays.copyOfRange(open, start, end),
+                Arrays.copyOfRange(high, start, end),
+                Arrays.copyOfRange(low, start, end),
+                Arrays.copyOfRange(close, start, end),
+                Arrays.copyOfRange(volume, start, end));
+    }
+
+    // Aggregates the rows into one bar per period of the interval: the first open,
+    // the highest high, the lowest low, the last close and the total volume of
+    // the period, dated by its last row. Missing values are skipped. Bars keep the
+    // date of a row in their period, so rolling up series that were rolled up
+    // separately and then concatenated merges the bars of a shared period.
+    public OhlcvSeries rollUp(BarInterval interval) {
+        if (interval == BarInterval.DAILY || epochDays.length == 0) {
+            return this;
+        }
+        int size = epochDays.length;
+        int[] barDays = new int[size];
+        double[] barOpen = new double[size];
+        double[] barHigh = new double[size];
+        double[] barLow = new double[size];
+        double[] barClose = new double[size];
+        long[] barVolume = new long[size];
+        int bars = 0;
+        LocalDate period = null;
+        for (int i = 0; i < size; i++) {
+            LocalDate start = interval.periodStart(getDate(i));
+            if (!start.equals(period)) {
+                period = start;
+                barOpen[bars] = Double.NaN;
+                barHigh[bars] = Double.NaN;
+                barLow[bars] = Double.NaN;
+                barClose[bars] = Double.NaN;
+                barVolume[bars] = MISSING_VOLUME;
+                bars++;
+            }
+            int bar = bars - 1;
+            barDays[bar] = epochDays[i];
+            if (Double.isNaN(barOpen[bar])) {
+                barOpen[bar] = open[i];
+            }
+            if (!Double.isNaN(high[i]) && !(high[i] <= barHigh[bar])) {
+                barHigh[bar] = high[i];
+            }
+            if (!Double.isNaN(low[i]) && !(low[i] >= barLow[bar])) {
+                barLow[bar] = low[i];
+            }
+            if (!Double.isNaN(close[i])) {
+                barClose[bar] = close[i];
+            }
+            if (volume[i] != MISSING_VOLUME) {
+                barVolume[bar] = barVolume[bar] == MISSING_VOLUME ? volume[i] : barVolume[bar] + volume[i];
+            }
+        }
+        return new OhlcvSeries(symbol, Arrays.copyOf(barDays, bars), Arrays.copyOf(barOpen, bars),
+                Arrays.copyOf(barHigh, bars), Arrays.copyOf(barLow, bars), Arrays.copyOf(barClose, bars),
+                Arrays.copyOf(barVolume, bars));
+    }
+
+    // Projects the series to closing prices, newest first, skipping days without
+    // a close
+    public List<HistoricalPrice> toHistoricalPrices() {
+        List<HistoricalPrice> prices = new ArrayList<>(epochDays.length);
+        for (int i = epochDays.length - 1; i >= 0; i--) {
+            if (!Double.isNaN(close[i]) && close[i] != 0.0) {
+                prices.add(new HistoricalPrice(getDate(i).toString(), close[i]));
+            }
+        }
+        return prices;
+    }
+
+    // Projects the series to candlesticks, newest first, skipping days missing
+    // any of open, high, low or close
+    public List<CandlestickData> toCandlesticks() {
+        List<CandlestickData> candlesticks = new ArrayList<>(epochDays.length);
+        for (int i = epochDays.length - 1; i >= 0; i--) {
+            if (Double.isNaN(open[i]) || Double.isNaN(high[i]) || Double.isNaN(low[i]) || Double.isNaN(close[i])) {
+                continue;
+            }
+            candlesticks.add(new CandlestickData(getDate(i).toString(), open[i], high[i], low[i], close[i],
+                    volume[i] == MISSING_VOLUME ? null : volume[i]));
+        }
+        return candlesticks;
+    }
+
+    @Override
+    public String toString() {
+        return "OhlcvSeries[symbol=" + symbol + ", size=" + epochDays.length
+                + (isEmpty() ? "" : ", from=" + getDate(0) + ", to=" + getDate(epochDays.length - 1)) + "]";
+    }
+}
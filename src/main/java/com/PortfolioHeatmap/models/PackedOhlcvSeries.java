@@ -0,0 +1,308 @@
+package com.PortfolioHeatmap.models;
+
+/**
+ * An OhlcvSeries packed into a single byte array for caching. A five-year daily series takes
+ * roughly a quarter of the heap of the unpacked series, and a small fraction of the equivalent
+ * list of candlestick objects; it is unpacked only when a request reads it.
+ *
+ * Each column is stored as variable-length deltas from the previous row: dates as day gaps,
+ * volumes as signed differences, and prices as signed differences of the price scaled to an
+ * integer number of cents (or of the fewest decimal places that represent every price exactly).
+ * A series whose prices do not fit a decimal scale stores raw doubles instead, so packing is
+ * always lossless. Missing prices and volumes keep their own marker. The packed bytes can
+ * optionally be deflated as well.
+ */
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public final class PackedOhlcvSeries implements SizeEstimated {
+    // Price scale used when no decimal scale represents every price exactly
+    private static final int RAW_DOUBLES = -1;
+    private static final int MAX_DECIMALS = 4;
+    private static final double[] POWERS_OF_TEN = { 1, 10, 100, 1_000, 10_000 };
+    // Largest scaled price that a double holds exactly
+    private static final double MAX_SCALED = 1L << 52;
+    // Varint written in place of a missing price or volume; present values are
+    // written shifted left by one, so they never collide with it
+    private static final long MISSING = 1;
+
+    private final String symbol;
+    private final int size;
+    private final int decimals;
+    private final boolean deflated;
+    private final byte[] data;
+
+    private PackedOhlcvSeries(String symbol, int size, int decimals, boolean deflated, byte[] data) {
+        this.symbol = symbol;
+        this.size = size;
+        this.decimals = decimals;
+        this.deflated = deflated;
+        this.data = data;
+    }
+
+    public static PackedOhlcvSeries pack(OhlcvSeries series, boolean deflate) {
+        int size = series.size();
+        int decimals = chooseDecimals(series);
+        Encoder out = new Encoder(16 + size * 12);
+        int previousDay = 0;
+        for (int i = 0; i < size; i++) {
+            out.writeVarLong(zigzag(series.getEpochDay(i) - (long) previousDay));
+            previousDay = series.getEpochDay(i);
+        }
+        for (int column = 0; column < 4; column++) {
+            if (decimals == RAW_DOUBLES) {
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(Double.doubleToRawLongBits(price(series, column, i)));
+                }
+            } else {
+                double scale = POWERS_OF_TEN[decimals];
+                long previous = 0;
+                for (int i = 0; i < size; i++) {
+                    double price = price(series, column, i);
+                    if (Double.isNaN(price)) {
+                        out.writeVarLong(MISSING);
+                        continue;
+                    }
+                    long scaled = Math.round(price * scale);
+                    out.writeVarLong(zigzag(scaled - previous) << 1);
+                    previous = scaled;
+                }
+            }
+        }
+        long previousVolume = 0;
+        for (int i = 0; i < size; i++) {
+            long volume = series.getVolume(i);
+            if (volume == OhlcvSeries.MISSING_VOLUME) {
+                out.writeVarLong(MISSING);
+                continue;
+            }
+            out.writeVarLong(zigzag(volume - previousVolume) << 1);
+            previousVolume = volume;
+        }
+
+        byte[] data = out.toByteArray();
+        if (deflate && data.length > 0) {
+            byte[] compressed = deflate(data);
+            if (compressed.length < data.length) {
+                return new PackedOhlcvSeries(series.getSymbol(), size, decimals, true, compressed);
+            }
+        }
+        return new PackedOhlcvSeries(series.getSymbol(), size, decimals, false, data);
+    }
+
+    public OhlcvSeries unpack() {
+        Decoder in = new Decoder(deflated ? inflate(data) : data);
+        int[] epochDays = new int[size];
+        int day = 0;
+        for (int i = 0; i < size; i++) {
+            day += (int) unzigzag(in.readVarLong());
+            epochDays[i] = day;
+        }
+        double[][] prices = new double[4][size];
+        for (double[] column : prices) {
+            if (decimals == RAW_DOUBLES) {
+                for (int i = 0; i < size; i++) {
+                    column[i] = Double.longBitsToDouble(in.readLong());
+                }
+            } else {
+                double scale = POWERS_OF_TEN[decimals];
+                long scaled = 0;
+                for (int i = 0; i < size; i++) {
+                    long value = in.readVarLong();
+                    if (value == MISSING) {
+                        column[i] = Double.NaN;
+                        continue;
+                    }
+                    scaled += unzigzag(value >>> 1);
+                    column[i] = scaled / scale;
+                }
+            }
+        }
+        long[] volume = new long[size];
+        long previousVolume = 0;
+        for (int i = 0; i < size; i++) {
+            long value = in.readVarLong();
+            if (value == MISSING) {
+                volume[i] = OhlcvSeries.MISSING_VOLUME;
+                continue;
+            }
+            previousVolume += unzigzag(value >>> 1);
+            volume[i] = previousVolume;
+        }
+        return new OhlcvSeries(symbol, epochDays, prices[0], prices[1], prices[2], prices[3], volume);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isDeflated() {
+        return deflated;
+    }
+
+    // Approximate heap footprint: the packed bytes plus the object and array headers
+    @Override
+    public long estimatedBytes() {
+        return 64L + data.length;
+    }
+
+    // The fewest decimal places that represent every price exactly, or RAW_DOUBLES
+    private static int chooseDecimals(OhlcvSeries series) {
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            if (fitsScale(series, decimals)) {
+                return decimals;
+            }
+        }
+        return RAW_DOUBLES;
+    }
+
+    private static boolean fitsScale(OhlcvSeries series, int decimals) {
+        for (int column = 0; column < 4; column++) {
+            for (int i = 0; i < series.size(); i++) {
+                double price = price(series, column, i);
+                if (!Double.isNaN(price) && !fitsScale(price, decimals)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // True if unpacking the price at this scale gives back the same double
+    private static boolean fitsScale(double price, int decimals) {
+        double scale = POWERS_OF_TEN[decimals];
+        double scaled = price * scale;
+        return Math.abs(scaled) < MAX_SCALED && Math.round(scaled) / scale == price;
+    }
+
+    private static double price(OhlcvSeries series, int column, int index) {
+        return switch (column) {
+            case 0 -> series.getOpen(index);
+            case 1 -> series.getHigh(index);
+            case 2 -> series.getLow(index);
+            default -> series.getClose(index);
+        };
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated packed series");
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt packed series", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PackedOhlcvSeries[symbol=" + symbol + ", size=" + size + ", bytes=" + data.length
+                + (deflated ? ", deflated" : "") + "]";
+    }
+
+    // Growable byte buffer with varint and fixed-width long writes
+    private static final class Encoder {
+        private byte[] bytes;
+        private int length;
+
+        Encoder(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -18,6 +18,8 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 @Entity
 @Getter
 @Setter
+// The unique key on (stock_ticker, date) and the covering index are owned by
+// db/migration/V4 and V5, which run on startup
 @Table(name = "price_history")
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class PriceHistory {
@@ -0,0 +1,10 @@
+package com.PortfolioHeatmap.models;
+
+/**
+ * A cached value that reports its own approximate heap footprint, so CacheSizeEstimator can weigh
+ * it with one call on every cache write instead of inspecting it.
+ */
+public interface SizeEstimated {
+    // Approximate heap footprint in bytes on a 64-bit JVM with compressed pointers
+    long estimatedBytes();
+}
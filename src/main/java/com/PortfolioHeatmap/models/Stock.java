@@ -11,6 +11,7 @@ import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,6 +26,25 @@ public class Stock {
     @Column(name = "company_name", nullable = false)
     private String companyName;
 
+    // Latest stored close, denormalised from price_history and maintained by
+    // PriceHistoryRepository.refreshLatest; null for a stock with no history.
+    // The columns are created by V5__price_history_covering_indexes_and_latest_close.sql
+    // and are read-only here
+    @Column(name = "latest_date", insertable = false, updatable = false)
+    private LocalDate latestDate;
+
+    @Column(name = "latest_close", insertable = false, updatable = false)
+    private Double latestClose;
+
+    @Column(name = "latest_market_cap", insertable = false, updatable = false)
+    private Long latestMarketCap;
+
+    // Earliest date the provider has been asked for, maintained by
+    // PriceHistoryRepository.markBackfilledFrom; created by
+    // V6__stocks_backfilled_from.sql and read-only here
+    @Column(name = "backfilled_from", insertable = false, updatable = false)
+    private LocalDate backfilledFrom;
+
     @OneToMany(mappedBy = "stock", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
     private List<PriceHistory> priceHistories = new ArrayList<>();
@@ -46,6 +66,38 @@ public class Stock {
         this.companyName = companyName;
     }
 
+    public LocalDate getLatestDate() {
+        return latestDate;
+    }
+
+    public void setLatestDate(LocalDate latestDate) {
+        this.latestDate = latestDate;
+    }
+
+    public Double getLatestClose() {
+        return latestClose;
+    }
+
+    public void setLatestClose(Double latestClose) {
+        this.latestClose = latestClose;
+    }
+
+    public Long getLatestMarketCap() {
+        return latestMarketCap;
+    }
+
+    public void setLatestMarketCap(Long latestMarketCap) {
+        this.latestMarketCap = latestMarketCap;
+    }
+
+    public LocalDate getBackfilledFrom() {
+        return backfilledFrom;
+    }
+
+    public void setBackfilledFrom(LocalDate backfilledFrom) {
+        this.backfilledFrom = backfilledFrom;
+    }
+
     public List<PriceHistory> getPriceHistories() {
         return priceHistories;
     }
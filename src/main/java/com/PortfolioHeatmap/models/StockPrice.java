@@ -8,6 +8,8 @@ package com.PortfolioHeatmap.models;
  * 
  * @author [Marvel Bana]
  */
+import java.time.Instant;
+
 public class StockPrice {
     // The stock symbol (e.g., "AAPL").
     private String symbol;
@@ -24,6 +26,12 @@ public class StockPrice {
 
     private Double peRatio;
     private Long marketCap;
+    // When the price was observed: the time it was fetched from the provider, or
+    // the market close of the stored price_history row it was read from.
+    private Instant asOf;
+    // True when the price was served from a last known value instead of a fresh
+    // provider response.
+    private boolean stale;
 
     // Constructors
 
@@ -115,9 +123,47 @@ public class StockPrice {
         this.marketCap = marketCap;
     }
     
+    public Instant getAsOf() {
+        return asOf;
+    }
+
+    public void setAsOf(Instant asOf) {
+        this.asOf = asOf;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    // Whether a price has been set; getPrice() cannot be called otherwise.
+    public boolean hasPrice() {
+        return price != null;
+    }
+
+    // Returns a copy of this quote, so a shared cached instance can be marked
+    // stale without changing it for other readers.
+    public StockPrice copy() {
+        StockPrice copy = new StockPrice();
+        copy.symbol = symbol;
+        copy.price = price;
+        copy.open = open;
+        copy.high = high;
+        copy.low = low;
+        copy.previousClose = previousClose;
+        copy.peRatio = peRatio;
+        copy.marketCap = marketCap;
+        copy.asOf = asOf;
+        copy.stale = stale;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "StockPrice[symbol=" + symbol + ", price=" + price + ", peRatio=" + peRatio + ", marketCap=" + marketCap
-                + "]";
+                + ", asOf=" + asOf + ", stale=" + stale + "]";
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.PortfolioHeatmap.repositories;
+
+/**
+ * Interface for bulk price history writes in the PortfolioHeatmap application.
+ * Provides a set-based upsert keyed on (stock_ticker, date) for backfills and the daily job, and
+ * maintains the latest close and backfill watermark denormalised onto stocks.
+ */
+import com.PortfolioHeatmap.models.PriceHistory;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface CustomPriceHistoryRepository {
+    // Inserts the entries, or updates the stored entry for the same stock and date,
+    // and returns the number of entries written
+    int upsertAll(List<PriceHistory> priceHistories);
+
+    // Copies each ticker's latest stored close and market cap onto its stocks row
+    void refreshLatest(Collection<String> tickers);
+
+    // Records that the provider has been asked for the ticker's history back to
+    // the date; an earlier recorded date is kept
+    void markBackfilledFrom(String ticker, LocalDate from);
+}
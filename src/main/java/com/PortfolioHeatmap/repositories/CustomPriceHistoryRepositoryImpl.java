@@ -0,0 +1,140 @@
+package com.PortfolioHeatmap.repositories;
+
+/**
+ * Implementation of the CustomPriceHistoryRepository interface in the PortfolioHeatmap
+ * application. Writes price history with multi-row INSERT ... ON DUPLICATE KEY UPDATE statements
+ * through JdbcTemplate, relying on the unique key on (stock_ticker, date) added by
+ * V4__unique_price_history_ticker_date.sql, so a backfill costs one round-trip per batch of rows
+ * instead of an existence query and an insert per row. JPA cannot batch these inserts itself,
+ * because PriceHistory ids are generated by the database.
+ *
+ * On conflict the stored closing price is replaced; PE ratio and market cap are only filled in
+ * where the stored entry has none, since backfills carry today's values for every past day.
+ * Every upsert also refreshes the written tickers' latest_date, latest_close and latest_market_cap
+ * on stocks (see V5__price_history_covering_indexes_and_latest_close.sql). Backfills record how
+ * far back they have asked the provider in stocks.backfilled_from (see V6__stocks_backfilled_from.sql).
+ *
+ * The unique key is looked up once the application is ready; without it an upsert would insert
+ * duplicate rows, so upsertAll is refused until the key exists.
+ */
+import com.PortfolioHeatmap.models.PriceHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Repository
+public class CustomPriceHistoryRepositoryImpl implements CustomPriceHistoryRepository {
+    private static final Logger log = LoggerFactory.getLogger(CustomPriceHistoryRepositoryImpl.class);
+    static final String UNIQUE_KEY = "uk_price_history_ticker_date";
+    private static final String UNIQUE_KEY_EXISTS = "SELECT COUNT(*) FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = 'price_history' AND index_name = ?";
+    private static final String INSERT = "INSERT INTO price_history (stock_ticker, date, closing_price, pe_ratio, "
+            + "market_cap) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?)";
+    private static final String ON_CONFLICT = " AS new ON DUPLICATE KEY UPDATE closing_price = new.closing_price, "
+            + "pe_ratio = COALESCE(price_history.pe_ratio, new.pe_ratio), "
+            + "market_cap = COALESCE(price_history.market_cap, new.market_cap)";
+    private static final int COLUMNS = 5;
+    // Each ticker's latest row is one descent of the (stock_ticker, date) index
+    private static final String REFRESH_LATEST = "UPDATE stocks s JOIN price_history ph ON ph.stock_ticker = s.ticker "
+            + "AND ph.date = (SELECT MAX(p2.date) FROM price_history p2 WHERE p2.stock_ticker = s.ticker) "
+            + "SET s.latest_date = ph.date, s.latest_close = ph.closing_price, s.latest_market_cap = ph.market_cap "
+            + "WHERE s.ticker IN (";
+    private static final String MARK_BACKFILLED_FROM = "UPDATE stocks SET backfilled_from = ? "
+            + "WHERE ticker = ? AND (backfilled_from IS NULL OR backfilled_from > ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private volatile boolean uniqueKeyPresent;
+
+    public CustomPriceHistoryRepositoryImpl(JdbcTemplate jdbcTemplate,
+            @Value("${price-history.bulk.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Checked at startup, and again on a refused upsert in case the key was added since
+    @EventListener(ApplicationReadyEvent.class)
+    public boolean checkUniqueKey() {
+        Integer count = jdbcTemplate.queryForObject(UNIQUE_KEY_EXISTS, Integer.class, UNIQUE_KEY);
+        uniqueKeyPresent = count != null && count > 0;
+        if (!uniqueKeyPresent) {
+            log.error("price_history has no {} key, bulk upserts are disabled until "
+                    + "V4__unique_price_history_ticker_date.sql is applied", UNIQUE_KEY);
+        }
+        return uniqueKeyPresent;
+    }
+
+    // All batches commit together, so a failed backfill leaves no partial set
+    @Override
+    @Transactional
+    public int upsertAll(List<PriceHistory> priceHistories) {
+        if (!uniqueKeyPresent && !checkUniqueKey()) {
+            throw new IllegalStateException("Bulk upsert needs the " + UNIQUE_KEY + " key on price_history");
+        }
+        int written = 0;
+        for (int i = 0; i < priceHistories.size(); i += batchSize) {
+            List<PriceHistory> batch = priceHistories.subList(i, Math.min(i + batchSize, priceHistories.size()));
+            jdbcTemplate.update(upsertSql(batch.size()), arguments(batch));
+            written += batch.size();
+        }
+        refreshLatest(priceHistories.stream().map(priceHistory -> priceHistory.getStock().getTicker())
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        return written;
+    }
+
+    @Override
+    @Transactional
+    public void refreshLatest(Collection<String> tickers) {
+        List<String> distinct = List.copyOf(new LinkedHashSet<>(tickers));
+        for (int i = 0; i < distinct.size(); i += batchSize) {
+            List<String> batch = distinct.subList(i, Math.min(i + batchSize, distinct.size()));
+            jdbcTemplate.update(REFRESH_LATEST + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")",
+                    batch.toArray());
+        }
+    }
+
+    @Override
+    public void markBackfilledFrom(String ticker, LocalDate from) {
+        Date date = Date.valueOf(from);
+        jdbcTemplate.update(MARK_BACKFILLED_FROM, date, ticker, date);
+    }
+
+    static String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + rows * (ROW.length() + 2) + ON_CONFLICT.length());
+        sql.append(INSERT);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+        }
+        return sql.append(ON_CONFLICT).toString();
+    }
+
+    private static Object[] arguments(List<PriceHistory> batch) {
+        List<Object> arguments = new ArrayList<>(batch.size() * COLUMNS);
+        for (PriceHistory priceHistory : batch) {
+            arguments.add(priceHistory.getStock().getTicker());
+            arguments.add(Date.valueOf(priceHistory.getDate()));
+            arguments.add(priceHistory.getClosingPrice());
+            arguments.add(priceHistory.getPeRatio());
+            arguments.add(priceHistory.getMarketCap());
+        }
+        return arguments.toArray();
+    }
+}
@@ -9,6 +9,7 @@ package com.PortfolioHeatmap.repositories;
 import com.PortfolioHeatmap.models.PortfolioHolding;
 import com.PortfolioHeatmap.models.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,4 +25,8 @@ public interface PortfolioHoldingRepository extends JpaRepository<PortfolioHoldi
     List<PortfolioHolding> findByPortfolioIdAndSellingDateIsNotNull(Long portfolioId); // Closed positions
 
     Optional<PortfolioHolding> findByPortfolioIdAndStockTicker(Long portfolioId, String ticker);
-}
\ No newline at end of file
+
+    // Tickers of every open position across all portfolios
+    @Query("SELECT DISTINCT h.stock.ticker FROM PortfolioHolding h WHERE h.sellingDate IS NULL")
+    List<String> findDistinctOpenTickers();
+}
@@ -16,10 +16,12 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PriceHistoryRepository extends JpaRepository<PriceHistory, Long> {
+public interface PriceHistoryRepository extends JpaRepository<PriceHistory, Long>, CustomPriceHistoryRepository {
         Page<PriceHistory> findByStockTickerOrderByDateDesc(String stockTicker, Pageable pageable);
 
         @Query("SELECT ph FROM PriceHistory ph JOIN ph.stock s WHERE s.ticker = :ticker AND ph.date = :date")
@@ -43,4 +45,25 @@ public interface PriceHistoryRepository extends JpaRepository<PriceHistory, Long
 
         // Find the first price history entry for a stock
         Optional<PriceHistory> findFirstByStockTickerOrderByDateAsc(String stockTicker);
-}
\ No newline at end of file
+
+        // Latest entry before a date for each of the given tickers, in one query
+        @Query("SELECT ph FROM PriceHistory ph JOIN FETCH ph.stock s WHERE s.ticker IN :tickers AND ph.date = "
+                        + "(SELECT MAX(p2.date) FROM PriceHistory p2 WHERE p2.stock = ph.stock AND p2.date < :date)")
+        List<PriceHistory> findLatestBeforeDateForTickers(@Param("tickers") Collection<String> tickers,
+                        @Param("date") LocalDate date);
+
+        // Latest entry for each of the given tickers, in one query
+        @Query("SELECT ph FROM PriceHistory ph JOIN FETCH ph.stock s WHERE s.ticker IN :tickers AND ph.date = "
+                        + "(SELECT MAX(p2.date) FROM PriceHistory p2 WHERE p2.stock = ph.stock)")
+        List<PriceHistory> findLatestForTickers(@Param("tickers") Collection<String> tickers);
+
+        // Earliest entry for each of the given tickers, in one query
+        @Query("SELECT ph FROM PriceHistory ph JOIN FETCH ph.stock s WHERE s.ticker IN :tickers AND ph.date = "
+                        + "(SELECT MIN(p2.date) FROM PriceHistory p2 WHERE p2.stock = ph.stock)")
+        List<PriceHistory> findEarliestForTickers(@Param("tickers") Collection<String> tickers);
+
+        // Earliest stored date of every ticker with history, as (ticker, date) pairs;
+        // answered from the (stock_ticker, date) index
+        @Query("SELECT s.ticker, MIN(ph.date) FROM PriceHistory ph JOIN ph.stock s GROUP BY s.ticker")
+        List<Object[]> findEarliestDates();
+}
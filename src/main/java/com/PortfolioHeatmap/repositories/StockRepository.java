@@ -2,10 +2,13 @@ package com.PortfolioHeatmap.repositories;
 
 import com.PortfolioHeatmap.models.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 /**
  * Repository interface for managing {@link Stock} entities.
  * Provides database access methods for stock data.
@@ -14,4 +17,8 @@ import org.springframework.data.domain.Pageable;
 @Repository
 public interface StockRepository extends JpaRepository<Stock, String> {
     Page<Stock> findAll(Pageable pageable);
+
+    // Every ticker, without loading the stocks themselves
+    @Query("SELECT s.ticker FROM Stock s")
+    List<String> findAllTickers();
 }
@@ -112,6 +112,8 @@ public class SecurityConfig {
         config.setAllowedHeaders(Arrays.asList("*"));
         // Enable credentials (e.g., cookies, Authorization headers) to support JWT
         config.setAllowCredentials(true);
+        // Let the frontend read the symbols a batch price request could not price
+        config.setExposedHeaders(Arrays.asList("X-Failed-Symbols"));
 
         // Create a URL-based CORS configuration source for applying rules to paths
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -7,31 +7,47 @@ package com.PortfolioHeatmap.services;
  * 
  * @author [Marvel Bana]
  */
+import com.PortfolioHeatmap.models.AlphaVantageBatchResponse;
 import com.PortfolioHeatmap.models.AlphaVantageQuoteResponse;
+import com.PortfolioHeatmap.models.BatchQuoteResult;
 import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
 import com.PortfolioHeatmap.models.FMPStockListResponse;
 import com.PortfolioHeatmap.models.StockPrice;
 import com.PortfolioHeatmap.models.AlphaVantageHistoricalPriceResponse;
 import com.PortfolioHeatmap.models.AlphaVantageHistoricalPriceResponse.DailyPrice;
 import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.PortfolioHeatmap.models.OhlcvSeries;
 import com.PortfolioHeatmap.models.CandlestickData;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 public class AlphaVantageStockDataService implements StockDataService {
     // Logger for tracking requests, responses, and errors in this service.
     private static final Logger log = LoggerFactory.getLogger(AlphaVantageStockDataService.class);
+    // Calendar days the compact daily output (100 trading days) safely covers
+    private static final int COMPACT_CALENDAR_DAYS = 130;
+    // Days a series may start after the requested date (weekends and holidays)
+    private static final int COVERAGE_TOLERANCE_DAYS = 7;
     // RestTemplate for making HTTP requests to the Alpha Vantage API.
     private final RestTemplate restTemplate;
     // API key for authenticating requests to the Alpha Vantage API, loaded from
@@ -39,12 +55,36 @@ public class AlphaVantageStockDataService implements StockDataService {
     private final String apiKey;
     // ObjectMapper for deserializing JSON responses from the API.
     private final ObjectMapper objectMapper;
+    // Shared provider rate limiter; every Alpha Vantage request waits for a permit.
+    private final MarketDataRateLimiter rateLimiter;
+    // Virtual-thread executor that runs every blocking request, so a slow or
+    // throttled Alpha Vantage never holds the shared market data executor that
+    // completes FMP responses.
+    private final SimpleAsyncTaskExecutor batchExecutor;
+    // Bounds how many batch requests are in flight at once.
+    private final Semaphore batchPermits;
+    // Maximum number of symbols sent in one BATCH_STOCK_QUOTES request.
+    private final int bulkQuoteSize;
+    // Whether to try the BATCH_STOCK_QUOTES function before per-symbol quotes.
+    // Cleared the first time Alpha Vantage reports the function as unsupported,
+    // since it is not available on every API key.
+    private volatile boolean bulkQuotesEnabled;
 
-    // Constructor for dependency injection of RestTemplateBuilder and API key.
-    // Initializes RestTemplate, API key, and ObjectMapper with JavaTimeModule for
-    // LocalDate support.
-    public AlphaVantageStockDataService(RestTemplateBuilder builder, @Value("${alphavantage.api.key}") String apiKey) {
-        this.restTemplate = builder.build();
+    // Constructor for dependency injection of the shared RestTemplate, executor and
+    // API key. Initializes RestTemplate, API key, and ObjectMapper with
+    // JavaTimeModule for LocalDate support.
+    public AlphaVantageStockDataService(RestTemplate marketDataRestTemplate,
+            SimpleAsyncTaskExecutor alphaVantageBatchExecutor, MarketDataRateLimiter rateLimiter,
+            @Value("${alphavantage.api.key}") String apiKey,
+            @Value("${stock.data.alphavantage.batch-concurrency:8}") int batchConcurrency,
+            @Value("${stock.data.alphavantage.bulk-quotes:true}") boolean bulkQuotesEnabled,
+            @Value("${stock.data.alphavantage.bulk-quote-size:100}") int bulkQuoteSize) {
+        this.restTemplate = marketDataRestTemplate;
+        this.batchExecutor = alphaVantageBatchExecutor;
+        this.batchPermits = new Semaphore(Math.max(1, batchConcurrency));
+        this.bulkQuotesEnabled = bulkQuotesEnabled;
+        this.bulkQuoteSize = Math.max(1, bulkQuoteSize);
+        this.rateLimiter = rateLimiter;
         this.apiKey = apiKey;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
@@ -53,6 +93,11 @@ public class AlphaVantageStockDataService implements StockDataService {
 
     @Override
     public StockPrice getStockPrice(String symbol) {
+        return StockDataService.await(getStockPriceAsync(symbol));
+    }
+
+    // Sends the GLOBAL_QUOTE request; callers must hold a rate limiter permit.
+    private StockPrice fetchStockPrice(String symbol) {
         String url = "https://www.alphavantage.co/query?function=GLOBAL_QUOTE&symbol=" + symbol + "&apikey=" + apiKey;
         log.info("Requesting URL: {}", url);
 
@@ -93,44 +138,176 @@ public class AlphaVantageStockDataService implements StockDataService {
 
     @Override
     public List<StockPrice> getBatchStockPrices(List<String> symbols) {
+        return StockDataService.await(getBatchQuotesAsync(symbols)).getPrices();
+    }
+
+    // Quotes the batch with BATCH_STOCK_QUOTES requests of up to bulkQuoteSize
+    // symbols where the API key supports it, falling back to one GLOBAL_QUOTE per
+    // symbol. Every request runs on its own virtual thread, at most
+    // batchConcurrency at a time and each under the shared rate limit, so the
+    // batch takes about as long as its slowest request rather than the sum of
+    // them. Failed symbols are recorded with the reason instead of failing the
+    // batch.
+    @Override
+    public CompletableFuture<BatchQuoteResult> getBatchQuotesAsync(List<String> symbols) {
         log.info("Fetching batch prices for symbols: {}", symbols);
-        if (symbols.size() > 100) {
-            log.warn("Symbol count exceeds 100: {}", symbols.size());
-            throw new IllegalArgumentException("Batch request limited to 100 symbols");
-        }
-
-        List<StockPrice> stockPrices = symbols.stream()
-                .map(symbol -> {
-                    try {
-                        StockPrice price = getStockPrice(symbol);
-                        log.info("Fetched price for {}: {}", symbol, price);
-                        return price;
-                    } catch (Exception e) {
-                        log.warn("Failed to fetch price for {}: {}", symbol, e.getMessage());
-                        return null; // Skip failed symbols
-                    }
-                })
-                .filter(stockPrice -> stockPrice != null) // Remove nulls
+        List<String> uniqueSymbols = new ArrayList<>(new LinkedHashSet<>(symbols));
+        RequestPriority priority = RequestPriority.current();
+        Map<String, StockPrice> fetched = new ConcurrentHashMap<>();
+        Map<String, String> errors = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (int i = 0; i < uniqueSymbols.size(); i += bulkQuoteSize) {
+            List<String> chunk = uniqueSymbols.subList(i, Math.min(i + bulkQuoteSize, uniqueSymbols.size()));
+            requests.add(fetchChunkAsync(chunk, priority, fetched, errors));
+        }
+
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            // Rebuild the result in request order
+            List<StockPrice> stockPrices = new ArrayList<>();
+            Map<String, String> failedSymbols = new LinkedHashMap<>();
+            for (String symbol : uniqueSymbols) {
+                StockPrice price = fetched.get(symbol.toUpperCase());
+                if (price != null) {
+                    stockPrices.add(price);
+                } else {
+                    failedSymbols.put(symbol, errors.getOrDefault(symbol.toUpperCase(),
+                            "No quote returned by Alpha Vantage"));
+                }
+            }
+            if (stockPrices.isEmpty()) {
+                log.warn("No valid stock prices fetched for symbols: {}", symbols);
+            } else {
+                log.info("Returning {} batch prices, {} failed", stockPrices.size(), failedSymbols.size());
+            }
+            return new BatchQuoteResult(stockPrices, failedSymbols);
+        });
+    }
+
+    // Tries one bulk request for the chunk and, if bulk quotes are unavailable
+    // or the request fails, quotes the chunk's symbols individually
+    private CompletableFuture<Void> fetchChunkAsync(List<String> chunk, RequestPriority priority,
+            Map<String, StockPrice> fetched, Map<String, String> errors) {
+        if (bulkQuotesEnabled && chunk.size() > 1) {
+            return runOnBatchExecutor(priority, () -> fetchBulkQuotes(chunk))
+                    .handle((prices, e) -> {
+                        if (e != null) {
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            log.warn("Bulk quote request failed, quoting {} symbols individually: {}",
+                                    chunk.size(), cause.getMessage());
+                            return fetchIndividuallyAsync(chunk, priority, fetched, errors);
+                        }
+                        prices.forEach(price -> fetched.put(price.getSymbol().toUpperCase(), price));
+                        return CompletableFuture.<Void>completedFuture(null);
+                    })
+                    .thenCompose(next -> next);
+        }
+        return fetchIndividuallyAsync(chunk, priority, fetched, errors);
+    }
+
+    private CompletableFuture<Void> fetchIndividuallyAsync(List<String> symbols, RequestPriority priority,
+            Map<String, StockPrice> fetched, Map<String, String> errors) {
+        return CompletableFuture.allOf(symbols.stream()
+                .map(symbol -> runOnBatchExecutor(priority, () -> fetchStockPrice(symbol))
+                        .handle((price, e) -> {
+                            if (e != null) {
+                                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                                log.warn("Failed to fetch price for {}: {}", symbol, cause.getMessage());
+                                errors.put(symbol.toUpperCase(), String.valueOf(cause.getMessage()));
+                            } else {
+                                fetched.put(symbol.toUpperCase(), price);
+                            }
+                            return null;
+                        }))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    // Runs one blocking request on a virtual thread once both a concurrency slot
+    // and a rate limiter permit are available
+    private <T> CompletableFuture<T> runOnBatchExecutor(RequestPriority priority,
+            Supplier<T> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            batchPermits.acquireUninterruptibly();
+            try {
+                StockDataService.await(rateLimiter.acquire(MarketDataRateLimiter.ALPHA_VANTAGE, priority));
+                return request.get();
+            } finally {
+                batchPermits.release();
+            }
+        }, batchExecutor);
+    }
+
+    // Sends one BATCH_STOCK_QUOTES request; callers must hold a rate limiter
+    // permit. The bulk endpoint only reports the latest price for each symbol.
+    private List<StockPrice> fetchBulkQuotes(List<String> symbols) {
+        String url = "https://www.alphavantage.co/query?function=BATCH_STOCK_QUOTES&symbols="
+                + String.join(",", symbols) + "&apikey=" + apiKey;
+        log.info("Requesting bulk quotes for {} symbols", symbols.size());
+
+        String rawResponse = restTemplate.getForObject(url, String.class);
+        if (rawResponse == null) {
+            throw new RuntimeException("No response from Alpha Vantage");
+        }
+
+        AlphaVantageBatchResponse response;
+        try {
+            response = objectMapper.readValue(rawResponse, AlphaVantageBatchResponse.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Error parsing Alpha Vantage batch response", e);
+        }
+        if (response.getStockQuotes() == null) {
+            // Alpha Vantage answers with an "Error Message", "Note" or "Information"
+            // body instead of an error status. Only an unsupported function turns bulk
+            // quotes off; anything else, such as throttling, fails this chunk alone.
+            if (isUnsupportedFunction(response.getErrorMessage())) {
+                bulkQuotesEnabled = false;
+                log.warn("Alpha Vantage bulk quotes unavailable, using per-symbol quotes from now on: {}",
+                        response.getErrorMessage());
+                throw new RuntimeException("Alpha Vantage bulk quotes unavailable");
+            }
+            throw new RuntimeException("Alpha Vantage bulk quote request rejected: " + rawResponse);
+        }
+
+        return response.getStockQuotes().stream()
+                .filter(quote -> quote.getSymbol() != null && quote.getPrice() != null)
+                .map(quote -> new StockPrice(quote.getSymbol(), parseDouble(quote.getPrice(), "price")))
                 .collect(Collectors.toList());
+    }
 
-        if (stockPrices.isEmpty()) {
-            log.warn("No valid stock prices fetched for symbols: {}", symbols);
-        } else {
-            log.info("Returning batch prices: {}", stockPrices);
+    // The error Alpha Vantage gives for a function the key cannot use, e.g. "This API
+    // function (BATCH_STOCK_QUOTES) does not exist."
+    static boolean isUnsupportedFunction(String errorMessage) {
+        if (errorMessage == null) {
+            return false;
         }
-        return stockPrices;
+        String message = errorMessage.toLowerCase();
+        return message.contains("batch_stock_quotes")
+                || (message.contains("function")
+                        && (message.contains("does not exist") || message.contains("not supported")));
     }
 
     @Override
     public List<HistoricalPrice> getHistoricalPrices(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getHistoricalPricesAsync(symbol, from, to));
+    }
+
+    @Override
+    public OhlcvSeries getDailySeries(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getDailySeriesAsync(symbol, from, to));
+    }
+
+    // Sends the TIME_SERIES_DAILY request; callers must hold a rate limiter permit.
+    // The compact output only holds the latest 100 trading days, so older ranges
+    // ask for the full output.
+    private OhlcvSeries fetchDailySeries(String symbol, LocalDate from, LocalDate to) {
         // Construct the API URL for historical prices with the symbol and API key.
-        String url = "https://www.alphavantage.co/query?function=TIME_SERIES_DAILY&symbol=" + symbol + "&apikey="
-                + apiKey;
+        String outputSize = from.isBefore(LocalDate.now().minusDays(COMPACT_CALENDAR_DAYS)) ? "full" : "compact";
+        String url = "https://www.alphavantage.co/query?function=TIME_SERIES_DAILY&symbol=" + symbol
+                + "&outputsize=" + outputSize + "&apikey=" + apiKey;
         log.info("Requesting historical prices URL: {}", url);
 
         // Make the HTTP request and get the raw JSON response.
         String rawResponse = restTemplate.getForObject(url, String.class);
-        log.info("Raw API Response: {}", rawResponse);
 
         // Check if the response is null, and throw an exception if it is.
         if (rawResponse == null) {
@@ -143,28 +320,65 @@ public class AlphaVantageStockDataService implements StockDataService {
         AlphaVantageHistoricalPriceResponse response;
         try {
             response = objectMapper.readValue(rawResponse, AlphaVantageHistoricalPriceResponse.class);
-            log.info("Deserialized Historical Response: {}", response);
         } catch (Exception e) {
             log.error("Failed to deserialize historical response: {}", e.getMessage(), e);
             throw new RuntimeException("Error parsing Alpha Vantage historical response", e);
         }
 
-        // Validate the response, returning an empty list if it is null or has no time
-        // series data.
+        // Validate the response, returning an empty series if it is null or has no
+        // time series data.
         if (response == null || response.getTimeSeries() == null || response.getTimeSeries().isEmpty()) {
             log.warn("No historical data found for symbol: {}. Raw response: {}", symbol, rawResponse);
-            return List.of();
+            return OhlcvSeries.empty(symbol);
         }
 
-        // Map each time series entry to a HistoricalPrice object, filter by date range,
-        // and collect into a list.
-        List<HistoricalPrice> historicalPrices = response.getTimeSeries().entrySet().stream()
+        // A compact answer that starts well after the requested range would be a
+        // silently truncated chart or backfill, so it fails instead (and a hedged
+        // call keeps the other provider's answer)
+        requireCoverage(symbol, response, from);
+
+        // Keep the entries within the date range, oldest first, and copy them into
+        // the series columns.
+        List<Map.Entry<LocalDate, DailyPrice>> entries = response.getTimeSeries().entrySet().stream()
                 .filter(entry -> !entry.getKey().isBefore(from) && !entry.getKey().isAfter(to))
-                .map(entry -> new HistoricalPrice(String.valueOf(entry.getKey()),
-                        parseDouble(entry.getValue().getClose(), "close")))
+                .sorted(Map.Entry.comparingByKey())
                 .collect(Collectors.toList());
-        log.info("Returning historical prices for {}: {}", symbol, historicalPrices);
-        return historicalPrices;
+        int size = entries.size();
+        int[] epochDays = new int[size];
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        long[] volume = new long[size];
+        for (int i = 0; i < size; i++) {
+            DailyPrice dailyPrice = entries.get(i).getValue();
+            epochDays[i] = (int) entries.get(i).getKey().toEpochDay();
+            open[i] = parseOptionalDouble(dailyPrice.getOpen());
+            high[i] = parseOptionalDouble(dailyPrice.getHigh());
+            low[i] = parseOptionalDouble(dailyPrice.getLow());
+            close[i] = parseDouble(dailyPrice.getClose(), "close");
+            volume[i] = dailyPrice.getVolume() == null || dailyPrice.getVolume().isBlank()
+                    ? OhlcvSeries.MISSING_VOLUME
+                    : Long.parseLong(dailyPrice.getVolume().trim());
+        }
+        log.info("Returning {} daily bars for {}", size, symbol);
+        return new OhlcvSeries(symbol, epochDays, open, high, low, close, volume);
+    }
+
+    static void requireCoverage(String symbol, AlphaVantageHistoricalPriceResponse response, LocalDate from) {
+        if (!response.isCompact()) {
+            return;
+        }
+        LocalDate earliest = Collections.min(response.getTimeSeries().keySet());
+        if (earliest.isAfter(from.plusDays(COVERAGE_TOLERANCE_DAYS))) {
+            throw new RuntimeException("Alpha Vantage returned " + symbol + " only from " + earliest
+                    + ", not from " + from);
+        }
+    }
+
+    // Parses an optional price field, using NaN when it is missing
+    private double parseOptionalDouble(String value) {
+        return value == null || value.trim().isEmpty() ? Double.NaN : Double.parseDouble(value);
     }
 
     private double parseDouble(String value, String fieldName) {
@@ -205,6 +419,43 @@ public class AlphaVantageStockDataService implements StockDataService {
 
     @Override
     public List<CandlestickData> getCandlestickData(String symbol, LocalDate from, LocalDate to) {
-        throw new UnsupportedOperationException("Alpha Vantage implementation does not support candlestick data");
+        return StockDataService.await(getCandlestickDataAsync(symbol, from, to));
+    }
+
+    // The async variants wait for a rate limiter permit without holding a thread,
+    // then run the blocking request on a virtual thread.
+    @Override
+    public CompletableFuture<StockPrice> getStockPriceAsync(String symbol) {
+        return fetchStockPriceAsync(symbol, RequestPriority.current());
+    }
+
+    private CompletableFuture<StockPrice> fetchStockPriceAsync(String symbol, RequestPriority priority) {
+        return rateLimiter.acquire(MarketDataRateLimiter.ALPHA_VANTAGE, priority)
+                .thenApplyAsync(permit -> fetchStockPrice(symbol), batchExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<StockPrice>> getBatchStockPricesAsync(List<String> symbols) {
+        return getBatchQuotesAsync(symbols).thenApply(BatchQuoteResult::getPrices);
+    }
+
+    // Closes and candlesticks are projections of the same TIME_SERIES_DAILY
+    // response
+    @Override
+    public CompletableFuture<List<HistoricalPrice>> getHistoricalPricesAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return getDailySeriesAsync(symbol, from, to).thenApply(OhlcvSeries::toHistoricalPrices);
+    }
+
+    @Override
+    public CompletableFuture<List<CandlestickData>> getCandlestickDataAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return getDailySeriesAsync(symbol, from, to).thenApply(OhlcvSeries::toCandlesticks);
+    }
+
+    @Override
+    public CompletableFuture<OhlcvSeries> getDailySeriesAsync(String symbol, LocalDate from, LocalDate to) {
+        return rateLimiter.acquire(MarketDataRateLimiter.ALPHA_VANTAGE)
+                .thenApplyAsync(permit -> fetchDailySeries(symbol, from, to), batchExecutor);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Keeps the local caches of several application instances consistent. Evictions and clears made
+ * on one instance are published over a CacheInvalidationTransport and applied to the same caches
+ * on every other instance, so no node keeps serving a value another node has invalidated. Puts
+ * are not broadcast: each instance fills its caches on its own misses.
+ *
+ * Caches register themselves when CacheConfig builds them (see BroadcastingCaffeineCache).
+ * Remote invalidations are applied to the underlying Caffeine cache directly, so they are never
+ * published again. Components that hold per-ticker state outside a cache (PriceSeriesStore,
+ * ReferencePriceTable) register a ticker listener under a name instead, and are told about remote
+ * ticker evictions published to that name.
+ */
+import com.github.benmanes.caffeine.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Component
+public class CacheInvalidationBus {
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private final CacheInvalidationTransport transport;
+    private final String nodeId;
+    private final Map<String, Cache<Object, Object>> caches = new ConcurrentHashMap<>();
+    private final Map<String, List<Consumer<String>>> tickerListeners = new ConcurrentHashMap<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport,
+            @Value("${cache.invalidation.node-id:}") String nodeId) {
+        this.transport = transport;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        transport.subscribe(this::onMessage);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void register(String cacheName, Cache<Object, Object> cache) {
+        caches.put(cacheName, cache);
+    }
+
+    // Called with the ticker of every ticker eviction another instance publishes
+    // to the name
+    public void addTickerListener(String name, Consumer<String> listener) {
+        tickerListeners.computeIfAbsent(name, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void publishEvict(String cacheName, Object key) {
+        publish(new CacheInvalidationMessage(nodeId, CacheInvalidationMessage.Kind.EVICT, cacheName,
+                String.valueOf(key)));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(new CacheInvalidationMessage(nodeId, CacheInvalidationMessage.Kind.CLEAR, cacheName, null));
+    }
+
+    // Asks the other instances to drop every key of the ticker from the given caches
+    public void publishTickerEviction(String ticker, Collection<String> cacheNames) {
+        for (String cacheName : cacheNames) {
+            publish(new CacheInvalidationMessage(nodeId, CacheInvalidationMessage.Kind.EVICT_TICKER, cacheName,
+                    ticker));
+        }
+    }
+
+    private void publish(CacheInvalidationMessage message) {
+        try {
+            transport.publish(message);
+            published.incrementAndGet();
+        } catch (RuntimeException e) {
+            // The local eviction has already happened; other nodes fall back to their TTLs
+            log.error("Failed to publish {}: {}", message, e.getMessage());
+        }
+    }
+
+    void onMessage(CacheInvalidationMessage message) {
+        if (nodeId.equals(message.getOrigin())) {
+            return;
+        }
+        received.incrementAndGet();
+        if (message.getKind() == CacheInvalidationMessage.Kind.EVICT_TICKER) {
+            notifyTickerListeners(message.getCacheName(), message.getKey());
+        }
+        Cache<Object, Object> cache = caches.get(message.getCacheName());
+        if (cache == null) {
+            return;
+        }
+        switch (message.getKind()) {
+            case EVICT -> cache.invalidate(message.getKey());
+            case EVICT_TICKER -> evictTickerKeys(cache, message.getKey());
+            case CLEAR -> cache.invalidateAll();
+        }
+        log.debug("Applied {}", message);
+    }
+
+    private void notifyTickerListeners(String name, String ticker) {
+        for (Consumer<String> listener : tickerListeners.getOrDefault(name, List.of())) {
+            try {
+                listener.accept(ticker);
+            } catch (RuntimeException e) {
+                log.error("Ticker listener for {} failed on {}: {}", name, ticker, e.getMessage(), e);
+            }
+        }
+    }
+
+    // Removes the ticker's entries, keyed by the ticker itself or "ticker-...",
+    // and returns how many were removed
+    public static int evictTickerKeys(Cache<?, ?> cache, String ticker) {
+        String prefix = ticker + "-";
+        int evicted = 0;
+        for (Object key : cache.asMap().keySet()) {
+            if ((key.equals(ticker) || (key instanceof String string && string.startsWith(prefix)))
+                    && cache.asMap().remove(key) != null) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("transport", transport.getName());
+        stats.put("published", published.get());
+        stats.put("received", received.get());
+        stats.put("caches", caches.size());
+        return stats;
+    }
+}
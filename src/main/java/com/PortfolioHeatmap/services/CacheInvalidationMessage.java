@@ -0,0 +1,51 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * One cache invalidation sent between application instances over a CacheInvalidationTransport.
+ * Keys travel as strings, which covers every cache key the application uses. The origin
+ * identifies the sending instance so it can ignore its own messages.
+ */
+public class CacheInvalidationMessage {
+    public enum Kind {
+        // Remove a single key
+        EVICT,
+        // Remove every key of a ticker: the ticker itself or "ticker-..."
+        EVICT_TICKER,
+        // Remove every key
+        CLEAR
+    }
+
+    private final String origin;
+    private final Kind kind;
+    private final String cacheName;
+    private final String key;
+
+    public CacheInvalidationMessage(String origin, Kind kind, String cacheName, String key) {
+        this.origin = origin;
+        this.kind = kind;
+        this.cacheName = cacheName;
+        this.key = key;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationMessage[" + kind + " " + cacheName + (key != null ? " " + key : "") + " from "
+                + origin + "]";
+    }
+}
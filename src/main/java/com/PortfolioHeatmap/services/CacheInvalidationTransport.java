@@ -0,0 +1,22 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Carries cache invalidations between application instances. A transport delivers every
+ * published message to every subscriber, including subscribers in the publishing instance;
+ * CacheInvalidationBus drops its own messages. Delivery may repeat a message, since applying
+ * an invalidation twice is harmless.
+ */
+import java.util.function.Consumer;
+
+public interface CacheInvalidationTransport extends AutoCloseable {
+    void publish(CacheInvalidationMessage message);
+
+    void subscribe(Consumer<CacheInvalidationMessage> listener);
+
+    // Name reported in the admin statistics
+    String getName();
+
+    @Override
+    default void close() {
+    }
+}
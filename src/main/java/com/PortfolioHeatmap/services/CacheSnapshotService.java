@@ -0,0 +1,332 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Persists the stockPrice and ohlcvSeries caches to a local binary file so a restarted node starts
+ * warm instead of stampeding FMP and the database. The snapshot is written periodically and on
+ * shutdown, and memory-mapped back on startup. Each quote is stored with the instant its cache
+ * entry would have expired and is restored with the remaining time only; series month segments
+ * are restored only if FMPStockDataService would still serve them, i.e. the month had ended
+ * when it was downloaded or it was downloaded today.
+ *
+ * File layout (big-endian): magic, version, written-at millis, then for each cache its name,
+ * entry count and entries. Strings are a short byte length followed by UTF-8 bytes, and series
+ * columns are written as raw primitive arrays.
+ */
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.PackedOhlcvSeries;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class CacheSnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(CacheSnapshotService.class);
+
+    private static final int MAGIC = 0x50484353; // "PHCS"
+    private static final int VERSION = 2;
+    static final String QUOTE_CACHE = "stockPrice";
+    static final String SERIES_CACHE = "ohlcvSeries";
+    // Written in place of an expiry for entries that never expire
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private final CacheManager cacheManager;
+    private final Path snapshotFile;
+    private final boolean enabled;
+    private final Clock clock;
+
+    public CacheSnapshotService(CacheManager cacheManager,
+            @Value("${cache.snapshot.file:cache-snapshot/market-data.bin}") String snapshotFile,
+            @Value("${cache.snapshot.enabled:true}") boolean enabled) {
+        this.cacheManager = cacheManager;
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.enabled = enabled;
+        this.clock = Clock.systemUTC();
+    }
+
+    @PostConstruct
+    void restoreOnStartup() {
+        if (enabled) {
+            restore();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.snapshot.interval-ms:300000}",
+            initialDelayString = "${cache.snapshot.interval-ms:300000}")
+    public void snapshotPeriodically() {
+        if (enabled) {
+            snapshot();
+        }
+    }
+
+    @PreDestroy
+    void snapshotOnShutdown() {
+        if (enabled) {
+            snapshot();
+        }
+    }
+
+    // Writes both caches to a temporary file and moves it over the previous
+    // snapshot, so a crash mid-write never leaves a truncated snapshot behind.
+    // Returns the number of entries written.
+    public synchronized int snapshot() {
+        Cache<Object, Object> quotes = nativeCache(QUOTE_CACHE);
+        Cache<Object, Object> series = nativeCache(SERIES_CACHE);
+        if (quotes == null && series == null) {
+            return 0;
+        }
+        long now = clock.millis();
+        int written = 0;
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tempFile = Files.createTempFile(parent, "cache-snapshot", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(now);
+                written += writeQuotes(out, quotes, now);
+                written += writeSeries(out, series);
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} cache entries to {}", written, snapshotFile);
+        } catch (IOException e) {
+            log.error("Failed to write cache snapshot {}: {}", snapshotFile, e.getMessage(), e);
+        }
+        return written;
+    }
+
+    // Loads the snapshot into the caches, skipping entries that have expired or
+    // are from an earlier day. Returns the number of entries restored.
+    public synchronized int restore() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            log.info("No cache snapshot at {}, starting cold", snapshotFile);
+            return 0;
+        }
+        int restored = 0;
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring cache snapshot {} with unknown format", snapshotFile);
+                return 0;
+            }
+            Instant writtenAt = Instant.ofEpochMilli(buffer.getLong());
+            restored += readQuotes(buffer, nativeCache(QUOTE_CACHE));
+            restored += readSeries(buffer, nativeCache(SERIES_CACHE));
+            log.info("Restored {} cache entries from snapshot written at {}", restored, writtenAt);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to restore cache snapshot {}: {}", snapshotFile, e.getMessage(), e);
+        }
+        return restored;
+    }
+
+    private int writeQuotes(DataOutputStream out, Cache<Object, Object> cache, long now) throws IOException {
+        List<Map.Entry<Object, Object>> entries = new ArrayList<>();
+        if (cache != null) {
+            cache.asMap().entrySet().stream()
+                    .filter(entry -> entry.getKey() instanceof String && entry.getValue() instanceof StockPrice price
+                            && price.hasPrice())
+                    .forEach(entries::add);
+        }
+        writeString(out, QUOTE_CACHE);
+        out.writeInt(entries.size());
+        for (Map.Entry<Object, Object> entry : entries) {
+            StockPrice price = (StockPrice) entry.getValue();
+            long remainingMs = remainingMillis(cache, entry.getKey());
+            writeString(out, (String) entry.getKey());
+            out.writeLong(remainingMs == NO_EXPIRY ? NO_EXPIRY : now + remainingMs);
+            writeString(out, price.getSymbol());
+            out.writeDouble(price.getPrice());
+            out.writeDouble(price.getOpen());
+            out.writeDouble(price.getHigh());
+            out.writeDouble(price.getLow());
+            out.writeDouble(price.getPreviousClose());
+            out.writeDouble(price.getPeRatio() != null ? price.getPeRatio() : Double.NaN);
+            out.writeLong(price.getMarketCap() != null ? price.getMarketCap() : Long.MIN_VALUE);
+            out.writeLong(price.getAsOf() != null ? price.getAsOf().toEpochMilli() : Long.MIN_VALUE);
+        }
+        return entries.size();
+    }
+
+    private int readQuotes(ByteBuffer buffer, Cache<Object, Object> cache) {
+        String name = readString(buffer);
+        if (!QUOTE_CACHE.equals(name)) {
+            throw new IllegalStateException("Expected " + QUOTE_CACHE + " section but found " + name);
+        }
+        int count = buffer.getInt();
+        long now = clock.millis();
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            String key = readString(buffer);
+            long expiresAt = buffer.getLong();
+            StockPrice price = new StockPrice(readString(buffer), buffer.getDouble());
+            price.setOpen(buffer.getDouble());
+            price.setHigh(buffer.getDouble());
+            price.setLow(buffer.getDouble());
+            price.setPreviousClose(buffer.getDouble());
+            double peRatio = buffer.getDouble();
+            price.setPeRatio(Double.isNaN(peRatio) ? null : peRatio);
+            long marketCap = buffer.getLong();
+            price.setMarketCap(marketCap == Long.MIN_VALUE ? null : marketCap);
+            long asOf = buffer.getLong();
+            price.setAsOf(asOf == Long.MIN_VALUE ? null : Instant.ofEpochMilli(asOf));
+            if (cache == null || expiresAt <= now) {
+                continue;
+            }
+            Optional<Policy.VarExpiration<Object, Object>> varExpiration = cache.policy().expireVariably();
+            if (varExpiration.isPresent() && expiresAt != NO_EXPIRY) {
+                varExpiration.get().put(key, price, Duration.ofMillis(expiresAt - now));
+            } else {
+                cache.put(key, price);
+            }
+            restored++;
+        }
+        return restored;
+    }
+
+    private int writeSeries(DataOutputStream out, Cache<Object, Object> cache) throws IOException {
+        List<Map.Entry<Object, Object>> entries = new ArrayList<>();
+        if (cache != null) {
+            cache.asMap().entrySet().stream()
+                    .filter(entry -> entry.getKey() instanceof String
+                            && entry.getValue() instanceof FMPStockDataService.SeriesEntry)
+                    .forEach(entries::add);
+        }
+        writeString(out, SERIES_CACHE);
+        out.writeInt(entries.size());
+        for (Map.Entry<Object, Object> entry : entries) {
+            FMPStockDataService.SeriesEntry seriesEntry = (FMPStockDataService.SeriesEntry) entry.getValue();
+            OhlcvSeries series = seriesEntry.series();
+            int size = series.size();
+            writeString(out, (String) entry.getKey());
+            out.writeLong(seriesEntry.fetchedOn().toEpochDay());
+            out.writeBoolean(seriesEntry.complete());
+            writeString(out, series.getSymbol());
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(series.getEpochDay(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeDouble(series.getOpen(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeDouble(series.getHigh(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeDouble(series.getLow(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeDouble(series.getClose(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeLong(series.getVolume(i));
+            }
+        }
+        return entries.size();
+    }
+
+    private int readSeries(ByteBuffer buffer, Cache<Object, Object> cache) {
+        String name = readString(buffer);
+        if (!SERIES_CACHE.equals(name)) {
+            throw new IllegalStateException("Expected " + SERIES_CACHE + " section but found " + name);
+        }
+        int count = buffer.getInt();
+        LocalDate today = LocalDate.now(clock);
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            String key = readString(buffer);
+            LocalDate fetchedOn = LocalDate.ofEpochDay(buffer.getLong());
+            boolean complete = buffer.get() != 0;
+            String symbol = readString(buffer);
+            int size = buffer.getInt();
+            if (cache == null || !FMPStockDataService.SeriesEntry.isFresh(fetchedOn, complete, today)) {
+                // Skip the columns without decoding them
+                buffer.position(buffer.position() + size * (Integer.BYTES + 4 * Double.BYTES + Long.BYTES));
+                continue;
+            }
+            int[] epochDays = new int[size];
+            buffer.asIntBuffer().get(epochDays);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+            double[] open = readDoubles(buffer, size);
+            double[] high = readDoubles(buffer, size);
+            double[] low = readDoubles(buffer, size);
+            double[] close = readDoubles(buffer, size);
+            long[] volume = new long[size];
+            buffer.asLongBuffer().get(volume);
+            buffer.position(buffer.position() + size * Long.BYTES);
+            cache.put(key, new FMPStockDataService.SeriesEntry(fetchedOn,
+                    PackedOhlcvSeries.pack(new OhlcvSeries(symbol, epochDays, open, high, low, close, volume), false),
+                    complete));
+            restored++;
+        }
+        return restored;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int size) {
+        double[] values = new double[size];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + size * Double.BYTES);
+        return values;
+    }
+
+    // Time left before the entry expires, or NO_EXPIRY if the cache has no expiry
+    private static long remainingMillis(Cache<Object, Object> cache, Object key) {
+        Optional<Policy.VarExpiration<Object, Object>> varExpiration = cache.policy().expireVariably();
+        if (varExpiration.isPresent()) {
+            return varExpiration.get().getExpiresAfter(key, TimeUnit.MILLISECONDS).orElse(0);
+        }
+        Optional<Policy.FixedExpiration<Object, Object>> expireAfterWrite = cache.policy().expireAfterWrite();
+        if (expireAfterWrite.isPresent()) {
+            long age = expireAfterWrite.get().ageOf(key, TimeUnit.MILLISECONDS).orElse(0);
+            return Math.max(0, expireAfterWrite.get().getExpiresAfter(TimeUnit.MILLISECONDS) - age);
+        }
+        return NO_EXPIRY;
+    }
+
+    private Cache<Object, Object> nativeCache(String name) {
+        return cacheManager.getCache(name) instanceof CaffeineCache cache ? cache.getNativeCache() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
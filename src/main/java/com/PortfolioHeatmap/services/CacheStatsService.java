@@ -0,0 +1,66 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Reports hit ratio, evictions, size and estimated memory for every Caffeine cache managed by the
+ * application's CacheManager.
+ */
+import com.PortfolioHeatmap.config.CacheSizeEstimator;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class CacheStatsService {
+    private final CacheManager cacheManager;
+
+    public CacheStatsService(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        cacheManager.getCacheNames().stream().sorted().forEach(name -> {
+            if (cacheManager.getCache(name) instanceof CaffeineCache cache) {
+                stats.put(name, describe(cache.getNativeCache()));
+            }
+        });
+        return stats;
+    }
+
+    private static Map<String, Object> describe(com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+        // Apply pending writes so size and weight reflect every entry put so far
+        cache.cleanUp();
+        CacheStats cacheStats = cache.stats();
+        Optional<Policy.Eviction<Object, Object>> eviction = cache.policy().eviction();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("size", cache.estimatedSize());
+        entry.put("hitCount", cacheStats.hitCount());
+        entry.put("missCount", cacheStats.missCount());
+        entry.put("hitRatio", cacheStats.hitRate());
+        entry.put("evictionCount", cacheStats.evictionCount());
+        entry.put("maximum", eviction.map(Policy.Eviction::getMaximum).orElse(null));
+        entry.put("weighted", eviction.map(Policy.Eviction::isWeighted).orElse(false));
+        entry.put("estimatedBytes", estimateBytes(cache, eviction));
+        return entry;
+    }
+
+    // Weighted caches already track their size in bytes; the rest are summed
+    // entry by entry, which is bounded by their maximumSize
+    private static long estimateBytes(com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+            Optional<Policy.Eviction<Object, Object>> eviction) {
+        if (eviction.isPresent() && eviction.get().isWeighted()) {
+            return eviction.get().weightedSize().orElse(0L);
+        }
+        long bytes = 0;
+        for (Map.Entry<Object, Object> entry : cache.asMap().entrySet()) {
+            bytes += CacheSizeEstimator.weigh(entry.getKey(), entry.getValue());
+        }
+        return bytes;
+    }
+}
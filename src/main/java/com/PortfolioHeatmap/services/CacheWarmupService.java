@@ -0,0 +1,142 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Preloads what the first requests of the day would otherwise miss: the S&P 500 constituents,
+ * current quotes for every ticker held in an open position, fetched with batched provider calls,
+ * the in-memory PriceSeriesStore that answers stored-close lookups, and the ReferencePriceTable
+ * that portfolio returns are read from.
+ *
+ * The warm-up runs once at startup, before the application is marked ready; until it completes
+ * or times out, WarmupReadinessFilter answers requests with 503. It runs again before the market
+ * opens on every trading day.
+ */
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.repositories.PortfolioHoldingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class CacheWarmupService implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmupService.class);
+
+    private final StockDataServiceFactory stockDataServiceFactory;
+    private final PortfolioHoldingRepository portfolioHoldingRepository;
+    private final PriceSeriesStore priceSeriesStore;
+    private final ReferencePriceTable referencePriceTable;
+    private final TradingSessionCalendar calendar;
+    private final boolean enabled;
+    private final long timeoutMs;
+
+    // False until the startup warm-up has finished or timed out
+    private volatile boolean ready;
+
+    public CacheWarmupService(StockDataServiceFactory stockDataServiceFactory,
+            PortfolioHoldingRepository portfolioHoldingRepository, PriceSeriesStore priceSeriesStore,
+            ReferencePriceTable referencePriceTable, TradingSessionCalendar calendar,
+            @Value("${cache.warmup.enabled:true}") boolean enabled,
+            @Value("${cache.warmup.timeout-ms:60000}") long timeoutMs) {
+        this.stockDataServiceFactory = stockDataServiceFactory;
+        this.portfolioHoldingRepository = portfolioHoldingRepository;
+        this.priceSeriesStore = priceSeriesStore;
+        this.referencePriceTable = referencePriceTable;
+        this.calendar = calendar;
+        this.enabled = enabled;
+        this.timeoutMs = timeoutMs;
+        this.ready = !enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Runs after the context has started and before ApplicationReadyEvent, so the
+    // application is not reported ready until this returns
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        CompletableFuture<Void> warmup = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                warmUp();
+                warmup.complete(null);
+            } catch (RuntimeException e) {
+                warmup.completeExceptionally(e);
+            }
+        }, "cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            warmup.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Cache warm-up did not finish within {} ms, accepting traffic with a partly warm cache",
+                    timeoutMs);
+        } catch (ExecutionException e) {
+            log.error("Cache warm-up failed: {}", e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ready = true;
+        }
+    }
+
+    // Refreshes the caches shortly before the open on trading days
+    @Scheduled(cron = "${cache.warmup.pre-market-cron:0 0 9 * * MON-FRI}", zone = "America/New_York")
+    public void warmUpBeforeOpen() {
+        if (!enabled || !calendar.isTradingDay(Instant.now().atZone(calendar.getZone()).toLocalDate())) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (RuntimeException e) {
+            log.error("Pre-market cache warm-up failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public void warmUp() {
+        long start = System.nanoTime();
+        StockDataService stockDataService = stockDataServiceFactory.getService();
+        try {
+            int constituents = stockDataService.getSP500Constituents().size();
+            log.info("Warmed S&P 500 constituents ({} symbols)", constituents);
+        } catch (RuntimeException e) {
+            log.warn("Could not warm S&P 500 constituents: {}", e.getMessage());
+        }
+
+        // Quotes come from the provider, so start them first and load stored
+        // prices from the database while they are in flight
+        List<String> tickers = portfolioHoldingRepository.findDistinctOpenTickers();
+        CompletableFuture<BatchQuoteResult> quotes = tickers.isEmpty()
+                ? CompletableFuture.completedFuture(new BatchQuoteResult())
+                : RequestPriority.callAs(RequestPriority.BACKFILL, () -> stockDataService.getBatchQuotesAsync(tickers));
+        int storedPrices = priceSeriesStore.load();
+        try {
+            // Before the open this prepares the coming session's rows
+            referencePriceTable.rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Could not warm reference prices: {}", e.getMessage());
+        }
+
+        try {
+            BatchQuoteResult result = StockDataService.await(quotes);
+            log.info("Warmed {} quotes ({} already cached, {} failed) for {} tickers and {} stored prices in {} ms",
+                    result.getPrices().size(), result.getCacheHits().size(), result.getFailedSymbols().size(),
+                    tickers.size(), storedPrices, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.warn("Could not warm quotes for {} tickers: {}", tickers.size(), e.getMessage());
+        }
+    }
+}
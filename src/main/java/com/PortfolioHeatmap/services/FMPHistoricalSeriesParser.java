@@ -0,0 +1,380 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Single-pass decoder for FMP /historical-price-full responses. Bytes are fed to a non-blocking
+ * Jackson parser as they arrive from the network and each day is written straight into the
+ * primitive columns of an OhlcvSeries, so the body is never materialised as a String, a JsonNode
+ * tree or a list of entry objects. An "error" or "Error Message" field is detected in the same
+ * pass, and days outside the requested range are dropped while parsing.
+ */
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+final class FMPHistoricalSeriesParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // Marks a row whose date has not been read yet
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final String symbol;
+    private final long fromDay;
+    private final long toDay;
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+
+    // Position in the document: nesting depth, the current top-level field, and
+    // whether we are inside the "historical" array
+    private int depth;
+    private boolean sawToken;
+    private boolean rootIsObject;
+    private String rootField;
+    private String entryField;
+    private boolean inHistorical;
+
+    // The row currently being read
+    private int rowDay;
+    private double rowOpen;
+    private double rowHigh;
+    private double rowLow;
+    private double rowClose;
+    private long rowVolume;
+
+    // Growable output columns
+    private int size;
+    private int[] days = new int[INITIAL_CAPACITY];
+    private double[] open = new double[INITIAL_CAPACITY];
+    private double[] high = new double[INITIAL_CAPACITY];
+    private double[] low = new double[INITIAL_CAPACITY];
+    private double[] close = new double[INITIAL_CAPACITY];
+    private long[] volume = new long[INITIAL_CAPACITY];
+
+    FMPHistoricalSeriesParser(String symbol, LocalDate from, LocalDate to) {
+        this.symbol = symbol;
+        this.fromDay = from.toEpochDay();
+        this.toDay = to.toEpochDay();
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating FMP response parser for " + symbol, e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    // Parses a complete response body
+    static OhlcvSeries parse(String symbol, byte[] body, LocalDate from, LocalDate to) {
+        FMPHistoricalSeriesParser seriesParser = new FMPHistoricalSeriesParser(symbol, from, to);
+        seriesParser.feed(ByteBuffer.wrap(body));
+        return seriesParser.finish();
+    }
+
+    // Body handler that decodes the response while it is being received. Error
+    // statuses are discarded so the caller can report the status instead.
+    static HttpResponse.BodyHandler<OhlcvSeries> bodyHandler(String symbol, LocalDate from, LocalDate to) {
+        return responseInfo -> responseInfo.statusCode() >= 400
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : new SeriesBodySubscriber(new FMPHistoricalSeriesParser(symbol, from, to));
+    }
+
+    // Consumes the next chunk of the body. Every complete token in the chunk is
+    // processed before returning, so the buffer is not referenced afterwards.
+    void feed(ByteBuffer buffer) {
+        try {
+            feeder.feedInput(buffer);
+            drain();
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing FMP historical response for " + symbol, e);
+        }
+    }
+
+    // Signals the end of the body and returns the parsed rows in ascending date
+    // order
+    OhlcvSeries finish() {
+        try {
+            feeder.endOfInput();
+            drain();
+            parser.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing FMP historical response for " + symbol, e);
+        }
+        if (!sawToken) {
+            throw new RuntimeException("Empty response from FMP for " + symbol);
+        }
+        if (depth != 0) {
+            throw new RuntimeException("Truncated FMP historical response for " + symbol);
+        }
+        return buildSeries();
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            sawToken = true;
+            handle(token);
+        }
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> {
+                depth++;
+                if (depth == 1) {
+                    rootIsObject = true;
+                } else if (depth == 3 && inHistorical) {
+                    beginRow();
+                }
+            }
+            case START_ARRAY -> {
+                depth++;
+                if (depth == 2 && rootIsObject && "historical".equals(rootField)) {
+                    inHistorical = true;
+                }
+            }
+            case END_OBJECT -> {
+                if (depth == 3 && inHistorical) {
+                    endRow();
+                }
+                depth--;
+            }
+            case END_ARRAY -> {
+                if (depth == 2) {
+                    inHistorical = false;
+                }
+                depth--;
+            }
+            case FIELD_NAME -> {
+                if (depth == 1) {
+                    rootField = parser.currentName();
+                } else if (depth == 3 && inHistorical) {
+                    entryField = parser.currentName();
+                }
+            }
+            default -> {
+                if (depth == 1 && rootIsObject) {
+                    rootValue();
+                } else if (depth == 3 && inHistorical) {
+                    entryValue(token);
+                }
+            }
+        }
+    }
+
+    // FMP reports problems such as an invalid key or symbol as a top-level
+    // "error" or "Error Message" field instead of an error status
+    private void rootValue() throws IOException {
+        if ("error".equals(rootField) || "Error Message".equals(rootField)) {
+            throw new RuntimeException("FMP API error: " + parser.getText());
+        }
+    }
+
+    private void beginRow() {
+        entryField = null;
+        rowDay = NO_DATE;
+        rowOpen = Double.NaN;
+        rowHigh = Double.NaN;
+        rowLow = Double.NaN;
+        rowClose = Double.NaN;
+        rowVolume = OhlcvSeries.MISSING_VOLUME;
+    }
+
+    private void entryValue(JsonToken token) throws IOException {
+        if (entryField == null) {
+            return;
+        }
+        switch (entryField) {
+            case "date" -> rowDay = token == JsonToken.VALUE_STRING ? parseEpochDay() : NO_DATE;
+            case "open" -> rowOpen = number(token);
+            case "high" -> rowHigh = number(token);
+            case "low" -> rowLow = number(token);
+            case "close" -> rowClose = number(token);
+            case "volume" -> rowVolume = token.isNumeric() ? parser.getValueAsLong() : OhlcvSeries.MISSING_VOLUME;
+            default -> {
+            }
+        }
+    }
+
+    private double number(JsonToken token) throws IOException {
+        return token.isNumeric() ? parser.getDoubleValue() : Double.NaN;
+    }
+
+    // Reads a yyyy-MM-dd date (optionally followed by a time) directly from the
+    // parser's character buffer
+    private int parseEpochDay() throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (length < 10 || chars[offset + 4] != '-' || chars[offset + 7] != '-') {
+            return NO_DATE;
+        }
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (RuntimeException e) {
+            return NO_DATE;
+        }
+    }
+
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void endRow() {
+        entryField = null;
+        if (rowDay == NO_DATE || rowDay < fromDay || rowDay > toDay) {
+            return;
+        }
+        if (size == days.length) {
+            int capacity = size * 2;
+            days = Arrays.copyOf(days, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+        }
+        days[size] = rowDay;
+        open[size] = rowOpen;
+        high[size] = rowHigh;
+        low[size] = rowLow;
+        close[size] = rowClose;
+        volume[size] = rowVolume;
+        size++;
+    }
+
+    // FMP returns the newest day first; the series is stored oldest first.
+    // Anything that is neither ascending nor descending is sorted by date.
+    private OhlcvSeries buildSeries() {
+        if (size == 0) {
+            return OhlcvSeries.empty(symbol);
+        }
+        if (isSorted(days, size, true)) {
+            return new OhlcvSeries(symbol, Arrays.copyOf(days, size), Arrays.copyOf(open, size),
+                    Arrays.copyOf(high, size), Arrays.copyOf(low, size), Arrays.copyOf(close, size),
+                    Arrays.copyOf(volume, size));
+        }
+
+        int[] order = new int[size];
+        if (isSorted(days, size, false)) {
+            for (int i = 0; i < size; i++) {
+                order[i] = size - 1 - i;
+            }
+        } else {
+            Integer[] boxed = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (a, b) -> Integer.compare(days[a], days[b]));
+            for (int i = 0; i < size; i++) {
+                order[i] = boxed[i];
+            }
+        }
+
+        int[] sortedDays = new int[size];
+        double[] sortedOpen = new double[size];
+        double[] sortedHigh = new double[size];
+        double[] sortedLow = new double[size];
+        double[] sortedClose = new double[size];
+        long[] sortedVolume = new long[size];
+        for (int i = 0; i < size; i++) {
+            int j = order[i];
+            sortedDays[i] = days[j];
+            sortedOpen[i] = open[j];
+            sortedHigh[i] = high[j];
+            sortedLow[i] = low[j];
+            sortedClose[i] = close[j];
+            sortedVolume[i] = volume[j];
+        }
+        return new OhlcvSeries(symbol, sortedDays, sortedOpen, sortedHigh, sortedLow, sortedClose, sortedVolume);
+    }
+
+    private static boolean isSorted(int[] values, int length, boolean ascending) {
+        for (int i = 1; i < length; i++) {
+            if (ascending ? values[i] < values[i - 1] : values[i] > values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Feeds each chunk of the HTTP response to the parser as it arrives,
+    // requesting the next chunk only once the current one has been consumed
+    private static final class SeriesBodySubscriber implements HttpResponse.BodySubscriber<OhlcvSeries> {
+        private final FMPHistoricalSeriesParser seriesParser;
+        private final CompletableFuture<OhlcvSeries> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        SeriesBodySubscriber(FMPHistoricalSeriesParser seriesParser) {
+            this.seriesParser = seriesParser;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    seriesParser.feed(buffer);
+                }
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(seriesParser.finish());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public CompletionStage<OhlcvSeries> getBody() {
+            return result;
+        }
+    }
+}
@@ -7,51 +7,109 @@ package com.PortfolioHeatmap.services;
  * 
  * @author Marvel Bana
  */
+import com.PortfolioHeatmap.models.BatchQuoteResult;
 import com.PortfolioHeatmap.models.FMPQuoteResponse;
 import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
 import com.PortfolioHeatmap.models.FMPStockListResponse;
 import com.PortfolioHeatmap.models.StockPrice;
-import com.PortfolioHeatmap.models.FMPHistoricalPriceResponse;
-import com.PortfolioHeatmap.models.FMPCandlestickResponse;
 import com.PortfolioHeatmap.models.HistoricalPrice;
 import com.PortfolioHeatmap.models.CandlestickData;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.PackedOhlcvSeries;
+import com.PortfolioHeatmap.models.SizeEstimated;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
 public class FMPStockDataService implements StockDataService {
     // Logger for tracking requests, responses, and errors in this service
     private static final Logger log = LoggerFactory.getLogger(FMPStockDataService.class);
-    // RestTemplate for making HTTP requests to the FMP API
+    // RestTemplate for making synchronous HTTP requests to the FMP API
     private final RestTemplate restTemplate;
+    // Pooled HTTP/2 client for non-blocking requests to the FMP API
+    private final HttpClient httpClient;
+    // Maximum time to wait for a response once a request has been sent
+    private final Duration readTimeout;
+    // Maximum number of symbols FMP accepts in a single /quote request
+    private final int batchSize;
+    // Maximum number of batch chunks fetched concurrently
+    private final int batchParallelism;
     // API key for authenticating requests to the FMP API, loaded from application
     // properties
     private final String apiKey;
     // ObjectMapper for deserializing JSON responses from the API
     private final ObjectMapper objectMapper;
+    // Shared provider rate limiter; every FMP request waits for a permit first
+    private final MarketDataRateLimiter rateLimiter;
+    // Single-flight layers so concurrent requests for the same key share one
+    // upstream call
+    private final RequestCoalescer<String, StockPrice> quoteCoalescer;
+    private final RequestCoalescer<String, OhlcvSeries> seriesCoalescer;
+    // Per-symbol daily series covering the last seriesWindowYears, shared by
+    // historical prices, candlesticks and price history backfill
+    private final Cache seriesCache;
+    private final int seriesWindowYears;
+    // Whether cached series are deflated on top of delta packing
+    private final boolean deflateSeries;
+    // Quotes by symbol; entries expire with the trading session (see
+    // MarketHoursExpiry), so after hours quotes are served without a request
+    private final Cache quoteCache;
 
     // Variable to store raw S&P 500 constituents response
     private String rawSP500ConstituentsResponse;
 
-    // Constructor for dependency injection of RestTemplateBuilder and API key
-    // Initializes RestTemplate, API key, and ObjectMapper with JavaTimeModule for
-    // LocalDate support
-    public FMPStockDataService(RestTemplateBuilder builder, @Value("${fmp.api.key}") String apiKey) {
-        this.restTemplate = builder.build();
+    // Constructor for dependency injection of the shared HTTP clients and API key
+    // Initializes RestTemplate, HttpClient, API key, and ObjectMapper with
+    // JavaTimeModule for LocalDate support
+    public FMPStockDataService(RestTemplate marketDataRestTemplate, HttpClient marketDataHttpClient,
+            MarketDataRateLimiter rateLimiter, RequestCoalescerRegistry coalescerRegistry, CacheManager cacheManager,
+            @Value("${fmp.api.key}") String apiKey,
+            @Value("${stock.data.http.read-timeout-ms:10000}") long readTimeoutMs,
+            @Value("${stock.data.fmp.batch-size:100}") int batchSize,
+            @Value("${stock.data.batch.parallelism:4}") int batchParallelism,
+            @Value("${stock.data.series.window-years:5}") int seriesWindowYears,
+            @Value("${stock.data.series.deflate:false}") boolean deflateSeries) {
+        this.restTemplate = marketDataRestTemplate;
+        this.httpClient = marketDataHttpClient;
+        this.rateLimiter = rateLimiter;
+        this.quoteCoalescer = coalescerRegistry.create("fmp.quote");
+        this.seriesCoalescer = coalescerRegistry.create("fmp.dailySeries");
+        this.seriesCache = cacheManager.getCache("ohlcvSeries");
+        this.quoteCache = cacheManager.getCache("stockPrice");
+        this.seriesWindowYears = seriesWindowYears;
+        this.deflateSeries = deflateSeries;
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.batchSize = batchSize;
+        this.batchParallelism = Math.max(1, batchParallelism);
         this.apiKey = apiKey;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
@@ -59,19 +117,35 @@ public class FMPStockDataService implements StockDataService {
     }
 
     // Fetches the current stock price for a given symbol from the FMP API
-    @Cacheable(value = "stockPrice", key = "#symbol")
     @Override
     public StockPrice getStockPrice(String symbol) {
-        String url = "https://financialmodelingprep.com/api/v3/quote/" + symbol + "?apikey=" + apiKey;
-        log.info("Requesting URL: {}", url);
+        return StockDataService.await(getStockPriceAsync(symbol));
+    }
 
-        String rawResponse;
-        try {
-            rawResponse = restTemplate.getForObject(url, String.class);
-        } catch (Exception e) {
-            log.error("Failed to fetch data from FMP for symbol {}: {}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Error fetching data from FMP for " + symbol, e);
+    // Fetches the current stock price for a given symbol without blocking the
+    // calling thread. Quotes are served from the stockPrice cache while it holds
+    // them, and concurrent requests for the same symbol share one call.
+    @Override
+    public CompletableFuture<StockPrice> getStockPriceAsync(String symbol) {
+        StockPrice cached = quoteCache.get(symbol, StockPrice.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        RequestPriority priority = RequestPriority.current();
+        return quoteCoalescer.execute(symbol, () -> {
+            String url = "https://financialmodelingprep.com/api/v3/quote/" + symbol + "?apikey=" + apiKey;
+            log.info("Requesting URL: {}", url);
+            return fetchAsync(url, priority, "Error fetching data from FMP for " + symbol)
+                    .thenApply(rawResponse -> {
+                        StockPrice price = parseQuote(symbol, rawResponse);
+                        quoteCache.put(symbol, price);
+                        return price;
+                    });
+        });
+    }
+
+    // Deserializes a single-symbol /quote response into a StockPrice
+    private StockPrice parseQuote(String symbol, String rawResponse) {
         log.info("Raw API Response: {}", rawResponse);
 
         if (rawResponse == null || rawResponse.trim().isEmpty()) {
@@ -95,6 +169,15 @@ public class FMPStockDataService implements StockDataService {
         }
 
         FMPQuoteResponse quote = response[0];
+        StockPrice stockPrice = toStockPrice(quote);
+        log.info("Parsed Quote: symbol={}, price={}, pe={}, marketCap={}",
+                quote.getSymbol(), quote.getPrice(), quote.getPe(), quote.getMarketCap());
+        return stockPrice;
+    }
+
+    // Maps a /quote entry to a StockPrice. Single and batch quotes share the quote
+    // cache, so both must carry the same fields.
+    static StockPrice toStockPrice(FMPQuoteResponse quote) {
         StockPrice stockPrice = new StockPrice();
         stockPrice.setSymbol(quote.getSymbol());
         stockPrice.setPrice(quote.getPrice());
@@ -104,31 +187,134 @@ public class FMPStockDataService implements StockDataService {
         stockPrice.setPreviousClose(quote.getPreviousClose());
         stockPrice.setPeRatio(quote.getPe());
         stockPrice.setMarketCap(quote.getMarketCap());
-        log.info("Parsed Quote: symbol={}, price={}, pe={}, marketCap={}",
-                quote.getSymbol(), quote.getPrice(), quote.getPe(), quote.getMarketCap());
         return stockPrice;
     }
 
     // Fetches current stock prices for multiple symbols in a batch request
     @Override
     public List<StockPrice> getBatchStockPrices(List<String> symbols) {
+        return StockDataService.await(getBatchStockPricesAsync(symbols));
+    }
+
+    // Fetches current stock prices for multiple symbols without blocking the
+    // calling thread
+    @Override
+    public CompletableFuture<List<StockPrice>> getBatchStockPricesAsync(List<String> symbols) {
+        return getBatchQuotesAsync(symbols).thenApply(BatchQuoteResult::getPrices);
+    }
+
+    // Fetches quotes for any number of symbols. Symbols with a quote in the
+    // stockPrice cache are served from it, and only the misses are requested.
+    // The de-duplicated misses are split into chunks of batchSize, and the chunks
+    // are spread over batchParallelism lanes that each fetch their chunks one
+    // after another, so at most batchParallelism requests are in flight at once.
+    // Fetched quotes are written back to the cache per symbol, and results are
+    // merged back into request order; symbols from failed chunks or missing from
+    // the response are reported in failedSymbols. The future only fails if
+    // nothing was cached and every chunk failed.
+    @Override
+    public CompletableFuture<BatchQuoteResult> getBatchQuotesAsync(List<String> symbols) {
         log.info("Fetching batch prices for symbols: {}", symbols);
-        if (symbols.size() > 100) {
-            log.warn("Symbol count exceeds 100: {}", symbols.size());
-            throw new IllegalArgumentException("Batch request limited to 100 symbols");
+        List<String> uniqueSymbols = new ArrayList<>(new LinkedHashSet<>(symbols));
+        Map<String, StockPrice> cached = new HashMap<>();
+        List<String> cacheHits = new ArrayList<>();
+        List<String> cacheMisses = new ArrayList<>();
+        for (String symbol : uniqueSymbols) {
+            StockPrice price = quoteCache.get(symbol, StockPrice.class);
+            if (price != null) {
+                cached.put(symbol, price);
+                cacheHits.add(symbol);
+            } else {
+                cacheMisses.add(symbol);
+            }
+        }
+        if (cacheMisses.isEmpty()) {
+            BatchQuoteResult result = new BatchQuoteResult(
+                    uniqueSymbols.stream().map(cached::get).collect(Collectors.toList()), new LinkedHashMap<>());
+            result.setCacheHits(cacheHits);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < cacheMisses.size(); i += batchSize) {
+            chunks.add(cacheMisses.subList(i, Math.min(i + batchSize, cacheMisses.size())));
         }
+        int lanes = Math.min(batchParallelism, chunks.size());
+        log.info("{} of {} symbols cached, splitting the rest into {} chunks across {} parallel lanes",
+                cacheHits.size(), uniqueSymbols.size(), chunks.size(), lanes);
+
+        // Keyed by upper-case symbol, as FMP echoes symbols back in upper case
+        Map<String, StockPrice> fetched = new ConcurrentHashMap<>();
+        // Later chunks are started from completion callbacks on other threads, so
+        // capture the caller's priority here
+        RequestPriority priority = RequestPriority.current();
+        Map<String, String> failed = new ConcurrentHashMap<>();
+        List<RuntimeException> chunkErrors = new ArrayList<>();
+        List<CompletableFuture<Void>> laneFutures = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> laneFuture = CompletableFuture.completedFuture(null);
+            for (int c = lane; c < chunks.size(); c += lanes) {
+                List<String> chunk = chunks.get(c);
+                laneFuture = laneFuture.thenCompose(ignored -> fetchQuoteChunk(chunk, priority)
+                        .handle((prices, e) -> {
+                            if (e != null) {
+                                RuntimeException error = unwrap(e);
+                                synchronized (chunkErrors) {
+                                    chunkErrors.add(error);
+                                }
+                                chunk.forEach(symbol -> failed.put(symbol, error.getMessage()));
+                            } else {
+                                prices.forEach(price -> fetched.putIfAbsent(price.getSymbol().toUpperCase(), price));
+                            }
+                            return null;
+                        }));
+            }
+            laneFutures.add(laneFuture);
+        }
+
+        return CompletableFuture.allOf(laneFutures.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    if (chunkErrors.size() == chunks.size() && cacheHits.isEmpty()) {
+                        throw chunkErrors.get(0);
+                    }
+                    List<StockPrice> prices = new ArrayList<>();
+                    Map<String, String> failedSymbols = new LinkedHashMap<>();
+                    for (String symbol : uniqueSymbols) {
+                        StockPrice price = cached.get(symbol);
+                        if (price == null) {
+                            price = fetched.get(symbol.toUpperCase());
+                            if (price != null) {
+                                quoteCache.put(symbol, price);
+                            }
+                        }
+                        if (price != null) {
+                            prices.add(price);
+                        } else {
+                            failedSymbols.put(symbol, failed.getOrDefault(symbol, "No quote returned by FMP"));
+                        }
+                    }
+                    if (!failedSymbols.isEmpty()) {
+                        log.warn("Batch quote request could not price {} of {} symbols: {}", failedSymbols.size(),
+                                uniqueSymbols.size(), failedSymbols.keySet());
+                    }
+                    BatchQuoteResult result = new BatchQuoteResult(prices, failedSymbols);
+                    result.setCacheHits(cacheHits);
+                    result.setCacheMisses(cacheMisses);
+                    return result;
+                });
+    }
 
+    // Fetches one provider-sized chunk of symbols with a single /quote request
+    private CompletableFuture<List<StockPrice>> fetchQuoteChunk(List<String> symbols, RequestPriority priority) {
         String symbolList = String.join(",", symbols);
         String url = "https://financialmodelingprep.com/api/v3/quote/" + symbolList + "?apikey=" + apiKey;
         log.info("Requesting URL: {}", url);
+        return fetchAsync(url, priority, "Error fetching batch data from FMP for " + symbolList)
+                .thenApply(rawResponse -> parseBatchQuotes(symbolList, rawResponse));
+    }
 
-        String rawResponse;
-        try {
-            rawResponse = restTemplate.getForObject(url, String.class);
-        } catch (Exception e) {
-            log.error("Failed to fetch batch data from FMP for symbols {}: {}", symbolList, e.getMessage(), e);
-            throw new RuntimeException("Error fetching batch data from FMP for " + symbolList, e);
-        }
+    // Deserializes a multi-symbol /quote response into a list of StockPrice objects
+    private List<StockPrice> parseBatchQuotes(String symbolList, String rawResponse) {
         log.info("Raw API Response: {}", rawResponse);
 
         if (rawResponse == null || rawResponse.trim().isEmpty()) {
@@ -153,14 +339,9 @@ public class FMPStockDataService implements StockDataService {
 
         List<StockPrice> stockPrices = Arrays.stream(response)
                 .map(quote -> {
-                    StockPrice stockPrice = new StockPrice();
-                    stockPrice.setSymbol(quote.getSymbol());
-                    stockPrice.setPrice(quote.getPrice());
-                    stockPrice.setOpen(quote.getOpen());
-                    stockPrice.setHigh(quote.getHigh());
-                    stockPrice.setLow(quote.getLow());
-                    stockPrice.setPreviousClose(quote.getPreviousClose());
-                    log.info("Mapped StockPrice: symbol={}, price={}", quote.getSymbol(), quote.getPrice());
+                    StockPrice stockPrice = toStockPrice(quote);
+                    log.info("Mapped StockPrice: symbol={}, price={}, pe={}, marketCap={}", quote.getSymbol(),
+                            quote.getPrice(), quote.getPe(), quote.getMarketCap());
                     return stockPrice;
                 })
                 .collect(Collectors.toList());
@@ -171,78 +352,120 @@ public class FMPStockDataService implements StockDataService {
     // Fetches historical stock prices for a given symbol over a date range
     @Override
     public List<HistoricalPrice> getHistoricalPrices(String symbol, LocalDate from, LocalDate to) {
-        String url = String.format(
-                "https://financialmodelingprep.com/api/v3/historical-price-full/%s?from=%s&to=%s&apikey=%s",
-                symbol, from, to, apiKey);
-        log.info("Requesting historical prices URL: {}", url);
+        return StockDataService.await(getHistoricalPricesAsync(symbol, from, to));
+    }
 
-        String rawResponse;
-        try {
-            rawResponse = restTemplate.getForObject(url, String.class);
-        } catch (Exception e) {
-            log.error("Failed to fetch historical data from FMP for symbol {}: {}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Error fetching historical data from FMP for " + symbol, e);
-        }
-        log.info("Raw API Response: {}", rawResponse);
+    // Fetches historical closing prices as a projection of the daily series
+    @Override
+    public CompletableFuture<List<HistoricalPrice>> getHistoricalPricesAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return getDailySeriesAsync(symbol, from, to).thenApply(OhlcvSeries::toHistoricalPrices);
+    }
 
-        if (rawResponse == null || rawResponse.trim().isEmpty()) {
-            log.error("Empty response from FMP for symbol: {}", symbol);
-            throw new RuntimeException("Empty response from FMP for " + symbol);
+    // Fetches the daily OHLCV series for a given symbol over a date range
+    @Override
+    public OhlcvSeries getDailySeries(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getDailySeriesAsync(symbol, from, to));
+    }
+
+    // Ranges within the last seriesWindowYears are assembled from cached calendar
+    // month segments, so a 1m chart, its candlesticks, a 5y chart and a backfill
+    // of the same symbol share entries. Only missing or stale months are fetched,
+    // with one request per run of consecutive months. A month that ended before
+    // it was fetched never changes and stays cached; the current month is
+    // fetched again on each new day. Older ranges are fetched on their own and
+    // not cached. Concurrent requests for the same download share one call.
+    @Override
+    public CompletableFuture<OhlcvSeries> getDailySeriesAsync(String symbol, LocalDate from, LocalDate to) {
+        RequestPriority priority = RequestPriority.current();
+        LocalDate today = LocalDate.now();
+        LocalDate windowStart = today.minusYears(seriesWindowYears);
+        if (from.isBefore(windowStart)) {
+            return seriesCoalescer.execute(symbol + "-" + from + "-" + to,
+                    () -> fetchDailySeriesAsync(symbol, from, to, priority));
         }
 
-        try {
-            JsonNode rootNode = objectMapper.readTree(rawResponse);
-            if (rootNode.has("error")) {
-                String errorMessage = rootNode.get("error").asText();
-                log.error("FMP API returned an error for symbol {}: {}", symbol, errorMessage);
-                throw new RuntimeException("FMP API error: " + errorMessage);
+        YearMonth firstMonth = YearMonth.from(from);
+        YearMonth lastMonth = YearMonth.from(to.isAfter(today) ? today : to);
+        // Cached segments and fetched runs, keyed by their first month
+        Map<YearMonth, OhlcvSeries> parts = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> fetches = new ArrayList<>();
+        YearMonth runStart = null;
+        for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            SeriesEntry cached = seriesCache.get(segmentKey(symbol, month), SeriesEntry.class);
+            if (cached != null && cached.isFresh(today)) {
+                parts.put(month, cached.series());
+                if (runStart != null) {
+                    YearMonth start = runStart;
+                    fetches.add(fetchSegmentsAsync(symbol, start, month.minusMonths(1), today, priority)
+                            .thenAccept(series -> parts.put(start, series)));
+                    runStart = null;
+                }
+            } else if (runStart == null) {
+                runStart = month;
             }
-        } catch (Exception e) {
-            log.error("Failed to parse raw response as JSON for symbol {}: {}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Error parsing FMP response for " + symbol, e);
         }
-
-        FMPHistoricalPriceResponse response;
-        try {
-            response = objectMapper.readValue(rawResponse, FMPHistoricalPriceResponse.class);
-            log.info("Deserialized Historical Response: {}", response);
-        } catch (Exception e) {
-            log.error("Failed to deserialize historical response for symbol {}: {}. Raw response: {}", symbol,
-                    e.getMessage(),
-                    rawResponse, e);
-            throw new RuntimeException("Error parsing FMP historical response for " + symbol, e);
+        if (runStart != null) {
+            YearMonth start = runStart;
+            fetches.add(fetchSegmentsAsync(symbol, start, lastMonth, today, priority)
+                    .thenAccept(series -> parts.put(start, series)));
         }
+        return CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> OhlcvSeries.concat(symbol, new TreeMap<>(parts).values()).slice(from, to));
+    }
 
-        if (response == null || response.getHistorical() == null || response.getHistorical().isEmpty()) {
-            log.warn("No historical data found for symbol: {}. Raw response: {}", symbol, rawResponse);
-            return List.of();
-        }
+    // Downloads the months from first to last in one request and caches each
+    // month as its own segment
+    private CompletableFuture<OhlcvSeries> fetchSegmentsAsync(String symbol, YearMonth first, YearMonth last,
+            LocalDate today, RequestPriority priority) {
+        LocalDate end = last.atEndOfMonth().isAfter(today) ? today : last.atEndOfMonth();
+        return seriesCoalescer.execute(symbol + "-" + first + "-" + last,
+                () -> fetchDailySeriesAsync(symbol, first.atDay(1), end, priority).thenApply(series -> {
+                    for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                        OhlcvSeries segment = series.slice(month.atDay(1), month.atEndOfMonth());
+                        seriesCache.put(segmentKey(symbol, month),
+                                new SeriesEntry(today, PackedOhlcvSeries.pack(segment, deflateSeries),
+                                        SeriesEntry.isComplete(month, today)));
+                    }
+                    return series;
+                }));
+    }
 
-        List<HistoricalPrice> historicalPrices = response.getHistorical()
-                .stream()
-                .filter(entry -> entry.getDate() != null && entry.getClose() != 0.0)
-                .map(entry -> new HistoricalPrice(String.valueOf(entry.getDate()), Double.valueOf(entry.getClose())))
-                .filter(hp -> {
-                    LocalDate entryDate = LocalDate.parse(hp.getDate());
-                    return !entryDate.isBefore(from) && !entryDate.isAfter(to);
-                })
-                .collect(Collectors.toList());
-        log.info("Returning historical prices for {}: {}", symbol, historicalPrices);
-        return historicalPrices;
+    static String segmentKey(String symbol, YearMonth month) {
+        return symbol + "-" + month;
+    }
+
+    // Downloads the daily series and decodes it while the response streams in
+    private CompletableFuture<OhlcvSeries> fetchDailySeriesAsync(String symbol, LocalDate from, LocalDate to,
+            RequestPriority priority) {
+        String url = String.format(
+                "https://financialmodelingprep.com/api/v3/historical-price-full/%s?from=%s&to=%s&apikey=%s",
+                symbol, from, to, apiKey);
+        log.info("Requesting daily series URL: {}", url);
+        return fetchAsync(url, priority, FMPHistoricalSeriesParser.bodyHandler(symbol, from, to),
+                "Error fetching historical data from FMP for " + symbol)
+                .thenApply(series -> {
+                    log.info("Fetched daily series for {}: {}", symbol, series);
+                    return series;
+                });
     }
 
     // Fetches the raw stock list response from the FMP API
     @Override
     public String getRawStockListResponse() {
         String url = String.format("https://financialmodelingprep.com/api/v3/stock/list?apikey=%s", apiKey);
+        StockDataService.await(rateLimiter.acquire(MarketDataRateLimiter.FMP));
         ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
         return response.getBody();
     }
 
-    // Fetches the list of S&P 500 constituents from the FMP API
+    // Fetches the list of S&P 500 constituents from the FMP API. The list changes
+    // a few times a year, so it is cached and shared read-only.
+    @Cacheable(value = "sp500Constituents", key = "'sp500'")
     @Override
     public List<FMPSP500ConstituentResponse> getSP500Constituents() {
         String url = String.format("https://financialmodelingprep.com/api/v3/sp500_constituent?apikey=%s", apiKey);
+        StockDataService.await(rateLimiter.acquire(MarketDataRateLimiter.FMP));
         ResponseEntity<FMPSP500ConstituentResponse[]> response = restTemplate.getForEntity(url,
                 FMPSP500ConstituentResponse[].class);
         FMPSP500ConstituentResponse[] constituents = response.getBody();
@@ -253,13 +476,14 @@ public class FMPStockDataService implements StockDataService {
                 .limit(5)
                 .forEach(stock -> log.info("Deserialized S&P 500 Stock: {}, Market Cap: {}", stock.getSymbol(),
                         stock.getMarketCap()));
-        return Arrays.asList(constituents);
+        return List.of(constituents);
     }
 
     // Fetches and stores the raw S&P 500 constituents response from the FMP API
     @Override
     public String getRawSP500ConstituentsResponse() {
         String url = String.format("https://financialmodelingprep.com/api/v3/sp500_constituent?apikey=%s", apiKey);
+        StockDataService.await(rateLimiter.acquire(MarketDataRateLimiter.FMP));
         ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
         rawSP500ConstituentsResponse = response.getBody();
         if (rawSP500ConstituentsResponse == null) {
@@ -272,6 +496,7 @@ public class FMPStockDataService implements StockDataService {
     @Override
     public List<FMPStockListResponse> getStockList() {
         String url = String.format("https://financialmodelingprep.com/api/v3/stock/list?apikey=%s", apiKey);
+        StockDataService.await(rateLimiter.acquire(MarketDataRateLimiter.FMP));
         ResponseEntity<FMPStockListResponse[]> response = restTemplate.getForEntity(url, FMPStockListResponse[].class);
         FMPStockListResponse[] stockList = response.getBody();
         if (stockList == null) {
@@ -285,68 +510,91 @@ public class FMPStockDataService implements StockDataService {
         return Arrays.asList(stockList);
     }
 
-    @Cacheable(value = "candlestickData", key = "#symbol + '-' + #from + '-' + #to")
+    // Fetches candlestick data for a given symbol over a date range
     @Override
     public List<CandlestickData> getCandlestickData(String symbol, LocalDate from, LocalDate to) {
-        String url = String.format(
-                "https://financialmodelingprep.com/api/v3/historical-price-full/%s?from=%s&to=%s&apikey=%s",
-                symbol, from, to, apiKey);
-        log.info("Requesting candlestick data URL: {}", url);
+        return StockDataService.await(getCandlestickDataAsync(symbol, from, to));
+    }
 
-        String rawResponse;
-        try {
-            rawResponse = restTemplate.getForObject(url, String.class);
-        } catch (Exception e) {
-            log.error("Failed to fetch candlestick data from FMP for symbol {}: {}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Error fetching candlestick data from FMP for " + symbol, e);
-        }
+    // Fetches candlestick data as a projection of the daily series
+    @Override
+    public CompletableFuture<List<CandlestickData>> getCandlestickDataAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return getDailySeriesAsync(symbol, from, to).thenApply(OhlcvSeries::toCandlesticks);
+    }
 
-        if (rawResponse == null || rawResponse.trim().isEmpty()) {
-            log.error("Empty response from FMP for symbol: {}", symbol);
-            throw new RuntimeException("Empty response from FMP for " + symbol);
+    // Sends a GET request over the pooled HTTP client once the rate limiter grants
+    // a permit, and completes with the response body. Transport failures and
+    // non-2xx statuses complete the future exceptionally with a RuntimeException
+    // carrying the given error message.
+    private CompletableFuture<String> fetchAsync(String url, RequestPriority priority, String errorMessage) {
+        return fetchAsync(url, priority, HttpResponse.BodyHandlers.ofString(), errorMessage);
+    }
+
+    // As above, but decodes the body with the given handler while it is being
+    // received. A RuntimeException raised by the handler (such as an FMP error
+    // payload) is passed through unchanged.
+    private <T> CompletableFuture<T> fetchAsync(String url, RequestPriority priority,
+            HttpResponse.BodyHandler<T> bodyHandler, String errorMessage) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .GET()
+                .build();
+        return rateLimiter.acquire(MarketDataRateLimiter.FMP, priority)
+                .thenCompose(permit -> httpClient.sendAsync(request, bodyHandler))
+                .handle((response, e) -> {
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        log.error("{}: {}", errorMessage, cause.getMessage(), cause);
+                        if (cause instanceof RuntimeException runtime) {
+                            throw runtime;
+                        }
+                        throw new RuntimeException(errorMessage, cause);
+                    }
+                    if (response.statusCode() >= 400) {
+                        log.error("{}: HTTP {}", errorMessage, response.statusCode());
+                        throw new RuntimeException(errorMessage + " (HTTP " + response.statusCode() + ")");
+                    }
+                    return response.body();
+                });
+    }
+
+    // Unwraps the CompletionException added by CompletableFuture so the
+    // provider's own RuntimeException is reported
+    private static RuntimeException unwrap(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+    }
+
+    // One cached month of a daily series, packed, with the day it was downloaded
+    // and whether the month had already ended by then
+    record SeriesEntry(LocalDate fetchedOn, PackedOhlcvSeries packed, boolean complete) implements SizeEstimated {
+        SeriesEntry(LocalDate fetchedOn, OhlcvSeries series) {
+            this(fetchedOn, PackedOhlcvSeries.pack(series, false), false);
         }
 
-        try {
-            JsonNode rootNode = objectMapper.readTree(rawResponse);
-            if (rootNode.has("error")) {
-                String errorMessage = rootNode.get("error").asText();
-                log.error("FMP API returned an error for symbol {}: {}", symbol, errorMessage);
-                throw new RuntimeException("FMP API error: " + errorMessage);
-            }
-        } catch (Exception e) {
-            log.error("Failed to parse raw response as JSON for symbol {}: {}", symbol, e.getMessage(), e);
-            throw new RuntimeException("Error parsing FMP response for " + symbol, e);
+        // The record and its LocalDate, plus the packed series
+        @Override
+        public long estimatedBytes() {
+            return 48 + packed.estimatedBytes();
         }
 
-        FMPCandlestickResponse response;
-        try {
-            response = objectMapper.readValue(rawResponse, FMPCandlestickResponse.class);
-            log.info("Deserialized Candlestick Response for symbol {}", symbol);
-        } catch (Exception e) {
-            log.error("Failed to deserialize candlestick response for symbol {}: {}. Raw response: {}", symbol,
-                    e.getMessage(), rawResponse, e);
-            throw new RuntimeException("Error parsing FMP candlestick response for " + symbol, e);
+        // A month is complete once the day after it ended has passed, leaving the
+        // provider time to publish its last close
+        static boolean isComplete(YearMonth month, LocalDate fetchedOn) {
+            return month.atEndOfMonth().plusDays(1).isBefore(fetchedOn);
         }
 
-        if (response == null || response.getHistorical() == null || response.getHistorical().isEmpty()) {
-            log.warn("No candlestick data found for symbol: {}. Raw response: {}", symbol, rawResponse);
-            return List.of();
+        boolean isFresh(LocalDate today) {
+            return isFresh(fetchedOn, complete, today);
         }
 
-        List<CandlestickData> candlestickDataList = response.getHistorical()
-                .stream()
-                .filter(entry -> entry.getDate() != null && entry.getOpen() != null && entry.getHigh() != null
-                        && entry.getLow() != null && entry.getClose() != null)
-                .map(entry -> new CandlestickData(
-                        entry.getDate(),
-                        entry.getOpen(),
-                        entry.getHigh(),
-                        entry.getLow(),
-                        entry.getClose(),
-                        entry.getVolume()))
-                .collect(Collectors.toList());
+        static boolean isFresh(LocalDate fetchedOn, boolean complete, LocalDate today) {
+            return complete || fetchedOn.equals(today);
+        }
 
-        log.info("Returning {} candlestick data points for {}", candlestickDataList.size(), symbol);
-        return candlestickDataList;
+        OhlcvSeries series() {
+            return packed.unpack();
+        }
     }
-}
\ No newline at end of file
+}
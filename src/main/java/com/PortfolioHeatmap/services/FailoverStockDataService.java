@@ -0,0 +1,387 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * A StockDataService that spreads calls over a primary and a secondary provider. Quote and
+ * history calls are sent to the healthier provider first; if it has not answered by its recent
+ * latency percentile, a hedged request goes to the other provider and whichever answers first
+ * wins. Errors fail over to the other provider immediately, and each provider's latency and
+ * failures are tracked so a provider that keeps failing is skipped until its cooldown passes.
+ * Responses from either provider are validated and normalised before they are returned.
+ */
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
+import com.PortfolioHeatmap.models.FMPStockListResponse;
+import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.StockPrice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+public class FailoverStockDataService implements StockDataService {
+    private static final Logger log = LoggerFactory.getLogger(FailoverStockDataService.class);
+
+    private final Provider primary;
+    private final Provider secondary;
+    // Fires hedged requests once the first provider has been waited on long enough
+    private final ScheduledExecutorService scheduler;
+    // Percentile (0-100) of the first provider's recent latency after which a
+    // hedged request is sent
+    private final double hedgePercentile;
+    // Hedge delay used until enough latencies have been recorded
+    private final long initialHedgeDelayNanos;
+    // Lower bound on the hedge delay so fast providers are not hedged constantly
+    private final long minHedgeDelayNanos;
+    private final LongSupplier nanoClock;
+
+    FailoverStockDataService(String primaryName, StockDataService primaryService, String secondaryName,
+            StockDataService secondaryService, ScheduledExecutorService scheduler, double hedgePercentile,
+            long initialHedgeDelayMs, long minHedgeDelayMs, int failureThreshold, long cooldownMs,
+            LongSupplier nanoClock) {
+        this.primary = new Provider(primaryService,
+                new ProviderHealth(primaryName, failureThreshold, cooldownMs, nanoClock));
+        this.secondary = new Provider(secondaryService,
+                new ProviderHealth(secondaryName, failureThreshold, cooldownMs, nanoClock));
+        this.scheduler = scheduler;
+        this.hedgePercentile = hedgePercentile;
+        this.initialHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(initialHedgeDelayMs);
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs);
+        this.nanoClock = nanoClock;
+    }
+
+    // Per-provider health, latency percentiles and hedge/failover counts
+    public Map<String, Map<String, Object>> getHealthSnapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        snapshot.put(primary.health.getName(), primary.health.snapshot());
+        snapshot.put(secondary.health.getName(), secondary.health.snapshot());
+        return snapshot;
+    }
+
+    @Override
+    public StockPrice getStockPrice(String symbol) {
+        return StockDataService.await(getStockPriceAsync(symbol));
+    }
+
+    @Override
+    public CompletableFuture<StockPrice> getStockPriceAsync(String symbol) {
+        return execute("quote " + symbol, true, service -> service.getStockPriceAsync(symbol),
+                price -> normalizeQuote(symbol, price));
+    }
+
+    @Override
+    public List<StockPrice> getBatchStockPrices(List<String> symbols) {
+        return StockDataService.await(getBatchStockPricesAsync(symbols));
+    }
+
+    @Override
+    public CompletableFuture<List<StockPrice>> getBatchStockPricesAsync(List<String> symbols) {
+        return getBatchQuotesAsync(symbols).thenApply(BatchQuoteResult::getPrices);
+    }
+
+    // Batch quotes are not hedged: a duplicate batch would spend a large part of
+    // the secondary provider's rate limit. They still fail over if the whole
+    // batch fails.
+    @Override
+    public CompletableFuture<BatchQuoteResult> getBatchQuotesAsync(List<String> symbols) {
+        return execute("batch quote of " + symbols.size() + " symbols", false,
+                service -> service.getBatchQuotesAsync(symbols),
+                FailoverStockDataService::normalizeBatch);
+    }
+
+    @Override
+    public List<HistoricalPrice> getHistoricalPrices(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getHistoricalPricesAsync(symbol, from, to));
+    }
+
+    @Override
+    public CompletableFuture<List<HistoricalPrice>> getHistoricalPricesAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return execute("historical prices " + symbol, true,
+                service -> service.getHistoricalPricesAsync(symbol, from, to),
+                FailoverStockDataService::normalizeHistoricalPrices);
+    }
+
+    @Override
+    public List<CandlestickData> getCandlestickData(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getCandlestickDataAsync(symbol, from, to));
+    }
+
+    @Override
+    public CompletableFuture<List<CandlestickData>> getCandlestickDataAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return execute("candlestick data " + symbol, true,
+                service -> service.getCandlestickDataAsync(symbol, from, to),
+                FailoverStockDataService::normalizeCandlesticks);
+    }
+
+    @Override
+    public OhlcvSeries getDailySeries(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getDailySeriesAsync(symbol, from, to));
+    }
+
+    @Override
+    public CompletableFuture<OhlcvSeries> getDailySeriesAsync(String symbol, LocalDate from, LocalDate to) {
+        return execute("daily series " + symbol, true, service -> service.getDailySeriesAsync(symbol, from, to),
+                Objects::requireNonNull);
+    }
+
+    // Listing endpoints are only offered by some providers; they fail over but are
+    // never hedged
+    @Override
+    public List<FMPStockListResponse> getStockList() {
+        return executeSync(StockDataService::getStockList);
+    }
+
+    @Override
+    public String getRawStockListResponse() {
+        return executeSync(StockDataService::getRawStockListResponse);
+    }
+
+    @Override
+    public String getRawSP500ConstituentsResponse() {
+        return executeSync(StockDataService::getRawSP500ConstituentsResponse);
+    }
+
+    @Override
+    public List<FMPSP500ConstituentResponse> getSP500Constituents() {
+        return executeSync(StockDataService::getSP500Constituents);
+    }
+
+    // Runs a call against the healthier provider first, hedging and failing over
+    // to the other provider as described above
+    private <T> CompletableFuture<T> execute(String operation, boolean hedged,
+            Function<StockDataService, CompletableFuture<T>> call, UnaryOperator<T> normalizer) {
+        Provider first = primary.health.isHealthy() || !secondary.health.isHealthy() ? primary : secondary;
+        Provider second = first == primary ? secondary : primary;
+        return new HedgedCall<>(operation, first, second, call, normalizer).start(hedged);
+    }
+
+    private <T> T executeSync(Function<StockDataService, T> call) {
+        Provider first = primary.health.isHealthy() || !secondary.health.isHealthy() ? primary : secondary;
+        Provider second = first == primary ? secondary : primary;
+        try {
+            return call.apply(first.service);
+        } catch (UnsupportedOperationException e) {
+            return call.apply(second.service);
+        } catch (RuntimeException e) {
+            log.warn("{} failed, failing over to {}: {}", first.health.getName(), second.health.getName(),
+                    e.getMessage());
+            second.health.recordFailover();
+            try {
+                return call.apply(second.service);
+            } catch (UnsupportedOperationException unsupported) {
+                throw e;
+            }
+        }
+    }
+
+    private long hedgeDelayNanos(Provider provider) {
+        long percentileLatency = provider.health.latencyPercentileNanos(hedgePercentile);
+        long delay = percentileLatency < 0 ? initialHedgeDelayNanos : percentileLatency;
+        return Math.max(delay, minHedgeDelayNanos);
+    }
+
+    // Starts one provider call, validating its result and recording its latency
+    // or failure against the provider's health
+    private <T> CompletableFuture<T> attempt(Provider provider,
+            Function<StockDataService, CompletableFuture<T>> call, UnaryOperator<T> normalizer) {
+        long start = nanoClock.getAsLong();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(provider.service);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.thenApply(normalizer).whenComplete((value, e) -> {
+            if (e == null) {
+                provider.health.recordSuccess(nanoClock.getAsLong() - start);
+            } else {
+                provider.health.recordFailure(unwrap(e));
+            }
+        });
+    }
+
+    private static StockPrice normalizeQuote(String symbol, StockPrice price) {
+        if (price == null || !price.hasPrice() || !isValidPrice(price.getPrice())) {
+            throw new RuntimeException("Invalid quote returned for " + symbol);
+        }
+        String normalizedSymbol = (price.getSymbol() != null ? price.getSymbol() : symbol).toUpperCase();
+        if (!normalizedSymbol.equals(price.getSymbol())) {
+            price.setSymbol(normalizedSymbol);
+        }
+        return price;
+    }
+
+    // A copy of the result without invalid quotes, which are reported in
+    // failedSymbols instead so callers can tell they were not quoted
+    private static BatchQuoteResult normalizeBatch(BatchQuoteResult result) {
+        List<StockPrice> prices = new ArrayList<>(result.getPrices().size());
+        Map<String, String> failedSymbols = new LinkedHashMap<>(result.getFailedSymbols());
+        for (StockPrice price : result.getPrices()) {
+            if (price == null) {
+                continue;
+            }
+            if (price.getSymbol() != null) {
+                price.setSymbol(price.getSymbol().toUpperCase());
+            }
+            if (price.hasPrice() && isValidPrice(price.getPrice())) {
+                prices.add(price);
+            } else if (price.getSymbol() != null) {
+                failedSymbols.put(price.getSymbol(), "Invalid quote returned");
+            }
+        }
+        BatchQuoteResult normalized = new BatchQuoteResult(prices, failedSymbols);
+        normalized.setCacheHits(result.getCacheHits());
+        normalized.setCacheMisses(result.getCacheMisses());
+        return normalized;
+    }
+
+    // Newest first, one entry per date, positive closes only
+    private static List<HistoricalPrice> normalizeHistoricalPrices(List<HistoricalPrice> prices) {
+        Map<String, HistoricalPrice> byDate = new LinkedHashMap<>();
+        prices.stream()
+                .filter(price -> price.getDate() != null && isValidPrice(price.getClose()))
+                .forEach(price -> byDate.putIfAbsent(price.getDate(), price));
+        return byDate.values().stream()
+                .sorted(Comparator.comparing(HistoricalPrice::getDate).reversed())
+                .collect(Collectors.toList());
+    }
+
+    // Newest first, one candle per date, with open, high, low and close present
+    private static List<CandlestickData> normalizeCandlesticks(List<CandlestickData> candles) {
+        Map<String, CandlestickData> byDate = new LinkedHashMap<>();
+        candles.stream()
+                .filter(candle -> candle.getDate() != null && candle.getOpen() != null && candle.getHigh() != null
+                        && candle.getLow() != null && isValidPrice(candle.getClose()))
+                .forEach(candle -> byDate.putIfAbsent(candle.getDate(), candle));
+        return byDate.values().stream()
+                .sorted(Comparator.comparing(CandlestickData::getDate).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isValidPrice(Double price) {
+        return price != null && !price.isNaN() && price > 0;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private record Provider(StockDataService service, ProviderHealth health) {
+    }
+
+    // One logical call: the first provider's request, plus at most one request
+    // to the other provider, sent either as a hedge after the delay or as a
+    // failover when the first request fails. The first success wins; the call
+    // fails only when every request sent has failed, with the first error seen.
+    private final class HedgedCall<T> {
+        private final String operation;
+        private final Provider first;
+        private final Provider second;
+        private final Function<StockDataService, CompletableFuture<T>> call;
+        private final UnaryOperator<T> normalizer;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private boolean secondStarted;
+        private int outstanding;
+        private Throwable firstError;
+        private ScheduledFuture<?> hedgeTimer;
+
+        HedgedCall(String operation, Provider first, Provider second,
+                Function<StockDataService, CompletableFuture<T>> call, UnaryOperator<T> normalizer) {
+            this.operation = operation;
+            this.first = first;
+            this.second = second;
+            this.call = call;
+            this.normalizer = normalizer;
+        }
+
+        CompletableFuture<T> start(boolean hedged) {
+            launch(first, false);
+            if (hedged) {
+                synchronized (this) {
+                    if (!result.isDone() && !secondStarted) {
+                        hedgeTimer = scheduler.schedule(() -> launchSecond(true), hedgeDelayNanos(first),
+                                TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private synchronized void launchSecond(boolean hedge) {
+            if (result.isDone() || secondStarted) {
+                return;
+            }
+            secondStarted = true;
+            if (hedge) {
+                log.info("{} slow on {}, sending hedged request to {}", first.health.getName(), operation,
+                        second.health.getName());
+                second.health.recordHedgeSent();
+            } else {
+                log.warn("{} failed on {}, failing over to {}", first.health.getName(), operation,
+                        second.health.getName());
+                second.health.recordFailover();
+            }
+            launch(second, hedge);
+        }
+
+        private void launch(Provider provider, boolean hedge) {
+            synchronized (this) {
+                outstanding++;
+            }
+            attempt(provider, call, normalizer).whenComplete((value, e) -> onResult(provider, hedge, value, e));
+        }
+
+        private void onResult(Provider provider, boolean hedge, T value, Throwable e) {
+            boolean failOver = false;
+            synchronized (this) {
+                outstanding--;
+                if (e == null) {
+                    // The result is only ever completed while holding this lock
+                    if (!result.isDone()) {
+                        if (hedge) {
+                            provider.health.recordHedgeWon();
+                        }
+                        if (hedgeTimer != null) {
+                            hedgeTimer.cancel(false);
+                        }
+                        result.complete(value);
+                    }
+                    return;
+                }
+                if (firstError == null) {
+                    firstError = unwrap(e);
+                }
+                if (!secondStarted) {
+                    failOver = true;
+                } else if (outstanding == 0) {
+                    result.completeExceptionally(firstError);
+                }
+            }
+            if (failOver) {
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                }
+                launchSecond(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Shares cache invalidations between instances through the cache_invalidations table (see
+ * V3__create_cache_invalidations.sql). Publishing inserts a row; every instance polls for rows
+ * with a higher id than it has seen and delivers them to its subscribers. Rows older than the
+ * retention period are purged by whichever instance polls.
+ *
+ * Inserts run on the poller thread rather than the caller's, so a publish from an after-commit
+ * listener never joins the already completed transaction. Because auto-increment ids can commit
+ * out of order, each poll re-reads a small window below the highest id seen and skips ids it has
+ * already delivered.
+ */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class JdbcCacheInvalidationTransport implements CacheInvalidationTransport {
+    private static final Logger log = LoggerFactory.getLogger(JdbcCacheInvalidationTransport.class);
+
+    // Ids below the highest seen that are read again on every poll
+    private static final int ID_OVERLAP = 100;
+    // Delivered ids remembered to skip repeats from the overlap window
+    private static final int DELIVERED_IDS = 1000;
+    private static final int POLL_LIMIT = 1000;
+    // Polls between purges of expired rows
+    private static final int PURGE_EVERY_POLLS = 60;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long pollIntervalMs;
+    private final Duration retention;
+    private final Clock clock;
+    private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Long> deliveredIds = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > DELIVERED_IDS;
+        }
+    });
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Highest id seen, or -1 until the starting position has been read
+    private long lastSeenId = -1;
+    private long polls;
+    private boolean started;
+
+    public JdbcCacheInvalidationTransport(JdbcTemplate jdbcTemplate, long pollIntervalMs, Duration retention,
+            Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollIntervalMs = pollIntervalMs;
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+        poller.execute(() -> {
+            try {
+                jdbcTemplate.update(
+                        "INSERT INTO cache_invalidations (origin, kind, cache_name, cache_key, created_at) "
+                                + "VALUES (?, ?, ?, ?, ?)",
+                        message.getOrigin(), message.getKind().name(), message.getCacheName(), message.getKey(),
+                        Timestamp.from(clock.instant()));
+            } catch (RuntimeException e) {
+                log.error("Failed to publish {}: {}", message, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<CacheInvalidationMessage> listener) {
+        listeners.add(listener);
+        if (!started) {
+            started = true;
+            poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jdbc";
+    }
+
+    // Runs on the poller thread only
+    void poll() {
+        try {
+            if (lastSeenId < 0) {
+                // Start after the rows written before this instance came up
+                Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM cache_invalidations",
+                        Long.class);
+                lastSeenId = maxId != null ? maxId : 0;
+                return;
+            }
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, origin, kind, cache_name, cache_key FROM cache_invalidations WHERE id > ? "
+                            + "ORDER BY id LIMIT " + POLL_LIMIT,
+                    Math.max(0, lastSeenId - ID_OVERLAP));
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                lastSeenId = Math.max(lastSeenId, id);
+                if (!deliveredIds.add(id)) {
+                    continue;
+                }
+                CacheInvalidationMessage message = new CacheInvalidationMessage((String) row.get("origin"),
+                        CacheInvalidationMessage.Kind.valueOf((String) row.get("kind")),
+                        (String) row.get("cache_name"), (String) row.get("cache_key"));
+                listeners.forEach(listener -> listener.accept(message));
+            }
+            if (++polls % PURGE_EVERY_POLLS == 0) {
+                int purged = jdbcTemplate.update("DELETE FROM cache_invalidations WHERE created_at < ?",
+                        Timestamp.from(clock.instant().minus(retention)));
+                log.debug("Purged {} expired cache invalidations", purged);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+}
@@ -0,0 +1,29 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Delivers invalidations synchronously to subscribers in the same JVM. Used for single-instance
+ * deployments, and in tests, where several CacheInvalidationBus instances sharing one loopback
+ * transport behave like separate nodes.
+ */
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport {
+    private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+        listeners.forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public String getName() {
+        return "loopback";
+    }
+}
@@ -0,0 +1,75 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Shared rate limiter for every request sent to a market data provider. Each provider has its own
+ * token bucket sized from its requests-per-minute budget, so all callers (controllers, scheduled
+ * jobs and history backfill) draw from the same quota. Permits are handed out asynchronously:
+ * callers chain their HTTP request onto the returned future instead of sleeping on a thread, and
+ * INTERACTIVE requests are served before BACKFILL requests whenever the budget is exhausted.
+ */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Service
+public class MarketDataRateLimiter {
+    private static final Logger log = LoggerFactory.getLogger(MarketDataRateLimiter.class);
+
+    public static final String FMP = "fmp";
+    public static final String ALPHA_VANTAGE = "alphavantage";
+
+    // Single daemon thread that completes permits as tokens refill
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, TokenBucket> buckets;
+
+    public MarketDataRateLimiter(
+            @Value("${stock.data.fmp.requests-per-minute:300}") int fmpRequestsPerMinute,
+            @Value("${stock.data.fmp.burst:10}") int fmpBurst,
+            @Value("${stock.data.alphavantage.requests-per-minute:5}") int alphaRequestsPerMinute,
+            @Value("${stock.data.alphavantage.burst:1}") int alphaBurst) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "market-data-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buckets = Map.of(
+                FMP, new TokenBucket(fmpRequestsPerMinute, fmpBurst, scheduler, System::nanoTime),
+                ALPHA_VANTAGE, new TokenBucket(alphaRequestsPerMinute, alphaBurst, scheduler, System::nanoTime));
+        log.info("Rate limits: FMP={}/min (burst {}), Alpha Vantage={}/min (burst {})", fmpRequestsPerMinute,
+                fmpBurst, alphaRequestsPerMinute, alphaBurst);
+    }
+
+    // Returns a future that completes once a request to the given provider may be
+    // sent, using the priority of the calling thread
+    public CompletableFuture<Void> acquire(String provider) {
+        return acquire(provider, RequestPriority.current());
+    }
+
+    // Returns a future that completes once a request to the given provider may be
+    // sent with the given priority
+    public CompletableFuture<Void> acquire(String provider, RequestPriority priority) {
+        TokenBucket bucket = buckets.get(provider);
+        if (bucket == null) {
+            throw new IllegalArgumentException("Unknown market data provider: " + provider);
+        }
+        CompletableFuture<Void> permit = bucket.acquire(priority);
+        if (!permit.isDone()) {
+            log.debug("Rate limit reached for {}, {} request queued ({} waiting)", provider, priority,
+                    bucket.waitingCount());
+        }
+        return permit;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * A Caffeine expiry policy for quote caches that follows the trading session. While the market
+ * is open, and for a short settle period after the close while the closing print arrives, an
+ * entry lives for the intraday TTL. Outside those hours the cached quote is final, so it lives
+ * until the next session opens and overnight and weekend reads never reach the provider.
+ */
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+public class MarketHoursExpiry implements Expiry<Object, Object> {
+    private final TradingSessionCalendar calendar;
+    private final Duration intradayTtl;
+    private final Duration closeSettle;
+    private final Clock clock;
+
+    public MarketHoursExpiry(TradingSessionCalendar calendar, Duration intradayTtl, Duration closeSettle,
+            Clock clock) {
+        this.calendar = calendar;
+        this.intradayTtl = intradayTtl;
+        this.closeSettle = closeSettle;
+        this.clock = clock;
+    }
+
+    // How long a value written now may be served
+    public Duration timeToLive() {
+        Instant now = clock.instant();
+        if (calendar.isOpen(now) || now.isBefore(calendar.previousClose(now).plus(closeSettle))) {
+            return intradayTtl;
+        }
+        Duration untilOpen = Duration.between(now, calendar.nextOpen(now));
+        return untilOpen.compareTo(intradayTtl) > 0 ? untilOpen : intradayTtl;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return timeToLive().toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return timeToLive().toNanos();
+    }
+
+    // Reads do not extend an entry's life
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
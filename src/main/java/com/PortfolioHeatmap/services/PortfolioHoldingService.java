@@ -7,9 +7,9 @@ package com.PortfolioHeatmap.services;
  *
  * @author Marvel Bana
  */
+import com.PortfolioHeatmap.models.ClosingPrice;
 import com.PortfolioHeatmap.models.Portfolio;
 import com.PortfolioHeatmap.models.PortfolioHolding;
-import com.PortfolioHeatmap.models.PriceHistory;
 import com.PortfolioHeatmap.models.Stock;
 import com.PortfolioHeatmap.repositories.PortfolioHoldingRepository;
 
@@ -120,13 +120,13 @@ public class PortfolioHoldingService {
             return (holding.getSellingPrice() - holding.getPurchasePrice()) * holding.getShares();
         } else {
             // Open position: Gain/loss = (current price - purchase price) * shares
-            Optional<PriceHistory> latestPrice = priceHistoryService
-                    .findTopByStockTickerOrderByDateDesc(holding.getStock().getTicker());
+            Optional<ClosingPrice> latestPrice = priceHistoryService
+                    .findLatestClose(holding.getStock().getTicker());
             if (latestPrice.isEmpty()) {
                 log.warn("No price history found for ticker: {}", holding.getStock().getTicker());
                 return 0.0;
             }
-            return (latestPrice.get().getClosingPrice() - holding.getPurchasePrice()) * holding.getShares();
+            return (latestPrice.get().price() - holding.getPurchasePrice()) * holding.getShares();
         }
     }
 
@@ -163,13 +163,13 @@ public class PortfolioHoldingService {
             return holding.getSellingPrice() * holding.getShares();
         } else {
             // Open position: Current value
-            Optional<PriceHistory> latestPrice = priceHistoryService
-                    .findTopByStockTickerOrderByDateDesc(holding.getStock().getTicker());
+            Optional<ClosingPrice> latestPrice = priceHistoryService
+                    .findLatestClose(holding.getStock().getTicker());
             if (latestPrice.isEmpty()) {
                 log.warn("No price history found for ticker: {}", holding.getStock().getTicker());
                 return 0.0;
             }
-            return latestPrice.get().getClosingPrice() * holding.getShares();
+            return latestPrice.get().price() * holding.getShares();
         }
     }
 
@@ -0,0 +1,58 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Works out which date ranges a price history backfill still has to download for one ticker,
+ * from the ticker's stored history. The watermark is the last stored date (stocks.latest_date):
+ * only the days from the watermark to today are requested, including the watermark day itself
+ * so a close stored before the market settled is corrected. A ticker whose watermark is already
+ * today has nothing to download; its close is re-read on the next day's run. Older days are
+ * requested only when the configured window reaches further back than both the earliest stored
+ * date and the earliest date already asked for (stocks.backfilled_from), so a ticker whose
+ * history starts inside the window, such as a recent IPO, is not asked for the missing years
+ * again on every run; raising price-history.backfill.years asks for the new years once.
+ *
+ * A ticker with no stored history gets the whole window, so a steady-state refresh costs at most
+ * one small request per ticker, a rerun on the same day none, and a first run one full download.
+ */
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class PriceHistoryBackfillPlan {
+    // Gap between the window start and the earliest stored date that is not worth
+    // a request: weekends and market holidays have no closes
+    static final int START_TOLERANCE_DAYS = 5;
+
+    public record Range(LocalDate from, LocalDate to) {
+    }
+
+    private PriceHistoryBackfillPlan() {
+    }
+
+    // Ranges to download, oldest first; earliestStored and latestStored are null
+    // for a ticker with no stored history, backfilledFrom for one never backfilled
+    public static List<Range> ranges(LocalDate earliestStored, LocalDate latestStored, LocalDate backfilledFrom,
+            LocalDate windowStart, LocalDate today) {
+        if (latestStored == null || earliestStored == null) {
+            return List.of(new Range(windowStart, today));
+        }
+        List<Range> ranges = new ArrayList<>(2);
+        // Days between backfilledFrom and the earliest stored date are known to be empty
+        LocalDate olderEnd = backfilledFrom != null && backfilledFrom.isBefore(earliestStored) ? backfilledFrom
+                : earliestStored;
+        if (olderEnd.isAfter(windowStart.plusDays(START_TOLERANCE_DAYS))) {
+            ranges.add(new Range(windowStart, olderEnd.minusDays(1)));
+        }
+        LocalDate deltaStart = latestStored.isBefore(windowStart) ? windowStart : latestStored;
+        if (deltaStart.isBefore(today)) {
+            ranges.add(new Range(deltaStart, today));
+        }
+        return ranges;
+    }
+
+    // Whether downloading the ranges asks the provider for every day back to the
+    // window start, which is then recorded as the ticker's backfilledFrom
+    public static boolean reachesWindowStart(List<Range> ranges, LocalDate windowStart) {
+        return ranges.stream().anyMatch(range -> !range.from().isAfter(windowStart));
+    }
+}
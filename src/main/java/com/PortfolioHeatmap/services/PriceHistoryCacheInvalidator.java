@@ -0,0 +1,67 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Evicts the PriceHistoryService caches for a ticker when its price_history rows change. Every
+ * derived cache key starts with the ticker (either the ticker itself or "ticker-..."), so only
+ * that ticker's entries are removed and the rest of the cache stays warm. Runs after the writing
+ * transaction commits, or immediately when the write was not transactional. The eviction is also
+ * published on the CacheInvalidationBus so other instances drop the ticker's entries too, and
+ * reload the ticker in their PriceSeriesStore and ReferencePriceTable (see PRICE_HISTORY).
+ */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+@Component
+public class PriceHistoryCacheInvalidator {
+    private static final Logger log = LoggerFactory.getLogger(PriceHistoryCacheInvalidator.class);
+
+    // Caches whose values are computed from price_history
+    static final List<String> DERIVED_CACHES = List.of("priceHistory", "priceHistoryByDate");
+    // Name of the ticker evictions that reach the in-memory price state of other
+    // instances, which has no cache of its own
+    public static final String PRICE_HISTORY = "price_history";
+    private static final List<String> PUBLISHED = Stream.concat(DERIVED_CACHES.stream(), Stream.of(PRICE_HISTORY))
+            .toList();
+
+    private final CacheManager cacheManager;
+    private final CacheInvalidationBus invalidationBus;
+
+    public PriceHistoryCacheInvalidator(CacheManager cacheManager, CacheInvalidationBus invalidationBus) {
+        this.cacheManager = cacheManager;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceHistoryUpdated(PriceHistoryUpdatedEvent event) {
+        int evicted = evictTicker(event.getTicker());
+        log.info("Evicted {} cached entries for {} after {} price history writes", evicted, event.getTicker(),
+                event.getDates().size());
+    }
+
+    // Removes every entry keyed by the ticker from the derived caches, here and
+    // on the other instances, and returns how many were removed here
+    public int evictTicker(String ticker) {
+        int evicted = 0;
+        for (String name : DERIVED_CACHES) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null) {
+                continue;
+            }
+            if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+                evicted += CacheInvalidationBus.evictTickerKeys(nativeCache, ticker);
+            } else {
+                // Caches that cannot be scanned are cleared entirely
+                cache.clear();
+            }
+        }
+        invalidationBus.publishTickerEviction(ticker, PUBLISHED);
+        return evicted;
+    }
+}
@@ -4,20 +4,29 @@ package com.PortfolioHeatmap.services;
  * Service class for managing price history data in the PortfolioHeatmap application.
  * This class provides methods to save and retrieve price history records,
  * interacting with the PriceHistoryRepository for database operations.
+ * All writes go through this service, which publishes a PriceHistoryUpdatedEvent per ticker so
+ * the caches below are evicted as soon as new prices are stored. Percentage changes are read
+ * from ReferencePriceTable rather than cached, and single closes (latest, first, as of a date)
+ * from PriceSeriesStore.
  *
  * @author Marvel Bana
  */
+import com.PortfolioHeatmap.models.ClosingPrice;
 import com.PortfolioHeatmap.models.PriceHistory;
 import com.PortfolioHeatmap.models.StockPrice;
 import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -26,10 +35,18 @@ public class PriceHistoryService {
 
     private final PriceHistoryRepository priceHistoryRepository;
     private final FMPStockDataService fmpStockDataService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReferencePriceTable referencePriceTable;
+    private final PriceSeriesStore priceSeriesStore;
 
-    public PriceHistoryService(PriceHistoryRepository priceHistoryRepository, FMPStockDataService fmpStockDataService) {
+    public PriceHistoryService(PriceHistoryRepository priceHistoryRepository, FMPStockDataService fmpStockDataService,
+            ApplicationEventPublisher eventPublisher, ReferencePriceTable referencePriceTable,
+            PriceSeriesStore priceSeriesStore) {
         this.priceHistoryRepository = priceHistoryRepository;
         this.fmpStockDataService = fmpStockDataService;
+        this.eventPublisher = eventPublisher;
+        this.referencePriceTable = referencePriceTable;
+        this.priceSeriesStore = priceSeriesStore;
     }
 
     @Cacheable(value = "priceHistory", key = "#ticker + '-' + #pageable.pageNumber + '-' + #pageable.pageSize")
@@ -43,111 +60,129 @@ public class PriceHistoryService {
     }
 
     public PriceHistory save(PriceHistory priceHistory) {
-        return priceHistoryRepository.save(priceHistory);
+        PriceHistory saved = priceHistoryRepository.save(priceHistory);
+        priceHistoryRepository.refreshLatest(List.of(saved.getStock().getTicker()));
+        publishUpdated(List.of(saved));
+        return saved;
     }
 
-    @Cacheable(value = "latestPrice", key = "#stockTicker")
-    public Optional<PriceHistory> findTopByStockTickerOrderByDateDesc(String stockTicker) {
-        return priceHistoryRepository.findTopByStockTickerOrderByDateDesc(stockTicker);
+    public List<PriceHistory> saveAll(List<PriceHistory> priceHistories) {
+        if (priceHistories.isEmpty()) {
+            return priceHistories;
+        }
+        List<PriceHistory> saved = priceHistoryRepository.saveAll(priceHistories);
+        priceHistoryRepository.refreshLatest(
+                saved.stream().map(priceHistory -> priceHistory.getStock().getTicker()).toList());
+        publishUpdated(saved);
+        return saved;
     }
 
-    @Cacheable(value = "historicalPrice", key = "#stockTicker + '-' + #date")
-    public Optional<PriceHistory> findFirstByStockTickerAndDateLessThanOrderByDateDesc(String stockTicker,
-            LocalDate date) {
-        return priceHistoryRepository.findFirstByStockTickerAndDateLessThanOrderByDateDesc(stockTicker, date);
+    // Bulk path for backfills and the daily job: entries are upserted on stock and
+    // date in multi-row statements, without per-row existence checks, and are not
+    // returned with their ids
+    public int upsertAll(List<PriceHistory> priceHistories) {
+        if (priceHistories.isEmpty()) {
+            return 0;
+        }
+        int written = priceHistoryRepository.upsertAll(priceHistories);
+        publishUpdated(priceHistories);
+        return written;
     }
 
-    @Cacheable(value = "percentageChange", key = "#ticker + '-' + #timeframe")
-    public double calculatePercentageChange(String ticker, String timeframe) {
-        // First try to get today's price from database
-        Optional<PriceHistory> latestPrice = findTopByStockTickerOrderByDateDesc(ticker);
-        double currentPrice;
-        LocalDate currentDate = LocalDate.now();
-
-        // If we have today's price in the database, use it
-        if (latestPrice.isPresent() && latestPrice.get().getDate().equals(currentDate)) {
-            currentPrice = latestPrice.get().getClosingPrice();
-            log.info("Using today's price from database for {}: ${}", ticker, currentPrice);
-        } else {
-            // Otherwise get current price from API
-            StockPrice currentStockPrice = fmpStockDataService.getStockPrice(ticker);
-            if (currentStockPrice == null) {
-                log.warn("Could not get current price for {}", ticker);
-                return 0.0;
-            }
-            currentPrice = currentStockPrice.getPrice();
-            log.info("Using current price from API for {}: ${}", ticker, currentPrice);
+    // Latest stored close of the ticker
+    public Optional<ClosingPrice> findLatestClose(String ticker) {
+        if (priceSeriesStore.isLoaded()) {
+            return priceSeriesStore.latest(ticker);
         }
+        return toClose(priceHistoryRepository.findTopByStockTickerOrderByDateDesc(ticker));
+    }
 
-        // For total gain/loss, we need to get the first price history entry
-        if ("total".equals(timeframe)) {
-            Optional<PriceHistory> firstPrice = priceHistoryRepository.findFirstByStockTickerOrderByDateAsc(ticker);
-            if (firstPrice.isEmpty()) {
-                return 0.0;
-            }
-            double initialPrice = firstPrice.get().getClosingPrice();
-            return ((currentPrice - initialPrice) / initialPrice) * 100;
+    // First stored close of the ticker
+    public Optional<ClosingPrice> findFirstClose(String ticker) {
+        if (priceSeriesStore.isLoaded()) {
+            return priceSeriesStore.first(ticker);
+        }
+        return toClose(priceHistoryRepository.findFirstByStockTickerOrderByDateAsc(ticker));
+    }
+
+    // Latest stored close strictly before the date
+    public Optional<ClosingPrice> findCloseBefore(String ticker, LocalDate date) {
+        if (priceSeriesStore.isLoaded()) {
+            return priceSeriesStore.before(ticker, date);
+        }
+        return toClose(priceHistoryRepository.findFirstByStockTickerAndDateLessThanOrderByDateDesc(ticker, date));
+    }
+
+    // Latest stored close on or before the date
+    public Optional<ClosingPrice> findCloseOnOrBefore(String ticker, LocalDate date) {
+        if (priceSeriesStore.isLoaded()) {
+            return priceSeriesStore.onOrBefore(ticker, date);
         }
+        return toClose(
+                priceHistoryRepository.findFirstByStockTickerAndDateLessThanEqualOrderByDateDesc(ticker, date));
+    }
 
-        // Calculate the start date based on timeframe
-        LocalDate startDate;
+    private static Optional<ClosingPrice> toClose(Optional<PriceHistory> priceHistory) {
+        return priceHistory.filter(history -> history.getClosingPrice() != null)
+                .map(history -> new ClosingPrice(history.getDate(), history.getClosingPrice()));
+    }
+
+    // The date a portfolio timeframe's change is measured from
+    public static LocalDate timeframeStartDate(String timeframe, LocalDate today) {
         switch (timeframe) {
             case "1d":
-                // For 1-day, find yesterday's closing price
-                Optional<PriceHistory> previousDay = priceHistoryRepository
-                        .findFirstByStockTickerAndDateLessThanOrderByDateDesc(ticker, currentDate);
-                if (previousDay.isEmpty()) {
-                    return 0.0;
-                }
-                double previousClose = previousDay.get().getClosingPrice();
-
-                // If current price is the same as yesterday's price, look back one more day
-                if (currentPrice == previousClose) {
-                    LocalDate previousDate = previousDay.get().getDate();
-                    Optional<PriceHistory> dayBefore = priceHistoryRepository
-                            .findFirstByStockTickerAndDateLessThanOrderByDateDesc(ticker, previousDate);
-                    if (dayBefore.isPresent()) {
-                        previousClose = dayBefore.get().getClosingPrice();
-                        log.info("Current price matches yesterday's price for {}, using price from {}: ${}",
-                                ticker, dayBefore.get().getDate(), previousClose);
-                    }
-                }
-
-                log.info("Calculating 1d change for {}: current=${}, previous=${}", ticker, currentPrice,
-                        previousClose);
-                return ((currentPrice - previousClose) / previousClose) * 100;
+                return today.minusDays(1);
             case "1w":
-                startDate = currentDate.minusWeeks(1);
-                break;
+                return today.minusWeeks(1);
             case "1m":
-                startDate = currentDate.minusMonths(1);
-                break;
+                return today.minusMonths(1);
             case "3m":
-                startDate = currentDate.minusMonths(3);
-                break;
+                return today.minusMonths(3);
             case "6m":
-                startDate = currentDate.minusMonths(6);
-                break;
+                return today.minusMonths(6);
             case "ytd":
-                startDate = currentDate.withMonth(1).withDayOfMonth(1);
-                break;
+                return LocalDate.of(today.getYear(), 1, 1);
             case "1y":
-                startDate = currentDate.minusYears(1);
-                break;
+                return today.minusYears(1);
+            case "total":
+                return LocalDate.of(1900, 1, 1);
             default:
-                return 0.0;
+                return today.minusDays(1);
         }
+    }
+
+    // Publishes one event per ticker with the closes written for it
+    private void publishUpdated(List<PriceHistory> saved) {
+        Map<String, Map<LocalDate, Double>> closesByTicker = new HashMap<>();
+        for (PriceHistory priceHistory : saved) {
+            closesByTicker.computeIfAbsent(priceHistory.getStock().getTicker(), ticker -> new HashMap<>())
+                    .put(priceHistory.getDate(), priceHistory.getClosingPrice());
+        }
+        closesByTicker.forEach(
+                (ticker, closes) -> eventPublisher.publishEvent(new PriceHistoryUpdatedEvent(ticker, closes)));
+    }
 
-        // Get the historical price for the start date
-        Optional<PriceHistory> historicalPrice = priceHistoryRepository
-                .findFirstByStockTickerAndDateLessThanEqualOrderByDateDesc(ticker, startDate);
-        if (historicalPrice.isEmpty()) {
+    // Percentage change of the ticker over the timeframe, measured from the
+    // reference close in ReferencePriceTable to the session's stored close, or to
+    // the live quote while that close has not been ingested yet
+    public double calculatePercentageChange(String ticker, String timeframe) {
+        ReferencePriceTable.Row row = referencePriceTable.row(ticker);
+        double startPrice = row != null ? row.referenceClose(timeframe) : Double.NaN;
+        if (Double.isNaN(startPrice)) {
             return 0.0;
         }
 
-        // Calculate percentage change using current market price
-        double startPrice = historicalPrice.get().getClosingPrice();
-        log.info("Calculating {} change for {}: current=${}, start=${}", timeframe, ticker, currentPrice, startPrice);
+        double currentPrice = row.sessionClose();
+        if (Double.isNaN(currentPrice)) {
+            StockPrice currentStockPrice = fmpStockDataService.getStockPrice(ticker);
+            if (currentStockPrice == null) {
+                log.warn("Could not get current price for {}", ticker);
+                return 0.0;
+            }
+            currentPrice = currentStockPrice.getPrice();
+        }
+        log.debug("Calculating {} change for {}: current=${}, start=${}", timeframe, ticker, currentPrice,
+                startPrice);
         return ((currentPrice - startPrice) / startPrice) * 100;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Published by PriceHistoryService after rows of one ticker's price_history have been written.
+ * Carries the ticker, the trading dates written and, when known, the closing price written for
+ * each date, so listeners can drop or refresh anything derived from that ticker's stored prices.
+ */
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class PriceHistoryUpdatedEvent {
+    private final String ticker;
+    private final Set<LocalDate> dates;
+    private final Map<LocalDate, Double> closes;
+
+    // For writes whose closing prices are not at hand; listeners reload the ticker
+    public PriceHistoryUpdatedEvent(String ticker, Set<LocalDate> dates) {
+        this.ticker = ticker;
+        this.dates = Set.copyOf(dates);
+        this.closes = Map.of();
+    }
+
+    // Closes may hold null for rows written without a closing price
+    public PriceHistoryUpdatedEvent(String ticker, Map<LocalDate, Double> closes) {
+        this.ticker = ticker;
+        this.dates = Set.copyOf(closes.keySet());
+        this.closes = Collections.unmodifiableMap(new HashMap<>(closes));
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public Set<LocalDate> getDates() {
+        return dates;
+    }
+
+    public Map<LocalDate, Double> getCloses() {
+        return closes;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceHistoryUpdatedEvent[ticker=" + ticker + ", dates=" + dates.size() + "]";
+    }
+}
@@ -0,0 +1,224 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Keeps every ticker's stored closing prices in memory as two parallel arrays, epoch days in
+ * ascending order and the matching closes, so latest, first and as-of lookups are a binary
+ * search instead of a query. A few years of daily closes for the whole S&P 500 take around
+ * 12 bytes per row.
+ *
+ * The store is filled with one streaming query over price_history, without materialising
+ * entities, and then kept current from PriceHistoryUpdatedEvent: new closes are merged into the
+ * ticker's arrays, and a ticker whose event carries no closes is reloaded from the table. Tickers
+ * written by another instance are reloaded when its eviction arrives on the CacheInvalidationBus.
+ * Each ticker's arrays are replaced rather than modified, so readers never lock. Until the first
+ * load has finished, PriceHistoryService answers from the repository instead.
+ */
+import com.PortfolioHeatmap.models.ClosingPrice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class PriceSeriesStore {
+    private static final Logger log = LoggerFactory.getLogger(PriceSeriesStore.class);
+
+    // One ticker's closes; never modified once published
+    private record Series(int[] epochDays, double[] closes) {
+        int size() {
+            return epochDays.length;
+        }
+
+        ClosingPrice at(int index) {
+            return new ClosingPrice(LocalDate.ofEpochDay(epochDays[index]), closes[index]);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Map<String, Series> seriesByTicker = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public PriceSeriesStore(JdbcTemplate jdbcTemplate, CacheInvalidationBus invalidationBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        invalidationBus.addTickerListener(PriceHistoryCacheInvalidator.PRICE_HISTORY, this::onRemoteUpdate);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Replaces the whole store with the contents of price_history and returns the
+    // number of closes loaded. Updates wait for a load in progress, so none is lost.
+    public synchronized int load() {
+        long start = System.nanoTime();
+        SeriesLoader loader = new SeriesLoader();
+        jdbcTemplate.query("SELECT stock_ticker, date, closing_price FROM price_history "
+                + "WHERE closing_price IS NOT NULL ORDER BY stock_ticker, date", loader);
+        seriesByTicker = loader.finish();
+        loaded = true;
+        log.info("Loaded {} closes for {} tickers into the price series store in {} ms", loader.rows,
+                seriesByTicker.size(), (System.nanoTime() - start) / 1_000_000);
+        return loader.rows;
+    }
+
+    public int size() {
+        return seriesByTicker.values().stream().mapToInt(Series::size).sum();
+    }
+
+    public Optional<ClosingPrice> latest(String ticker) {
+        Series series = seriesByTicker.get(ticker);
+        return series == null || series.size() == 0 ? Optional.empty() : Optional.of(series.at(series.size() - 1));
+    }
+
+    public Optional<ClosingPrice> first(String ticker) {
+        Series series = seriesByTicker.get(ticker);
+        return series == null || series.size() == 0 ? Optional.empty() : Optional.of(series.at(0));
+    }
+
+    // Latest close strictly before the date
+    public Optional<ClosingPrice> before(String ticker, LocalDate date) {
+        return atOrBeforeIndex(ticker, date.toEpochDay() - 1);
+    }
+
+    // Latest close on or before the date
+    public Optional<ClosingPrice> onOrBefore(String ticker, LocalDate date) {
+        return atOrBeforeIndex(ticker, date.toEpochDay());
+    }
+
+    private Optional<ClosingPrice> atOrBeforeIndex(String ticker, long epochDay) {
+        Series series = seriesByTicker.get(ticker);
+        if (series == null) {
+            return Optional.empty();
+        }
+        // Index of the first day after epochDay, minus one
+        int lo = 0;
+        int hi = series.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (series.epochDays()[mid] <= epochDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo == 0 ? Optional.empty() : Optional.of(series.at(lo - 1));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPriceHistoryUpdated(PriceHistoryUpdatedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        String ticker = event.getTicker();
+        if (event.getCloses().isEmpty()) {
+            reloadTicker(ticker);
+            return;
+        }
+        Series merged = merge(seriesByTicker.get(ticker), event.getCloses());
+        if (merged != null) {
+            seriesByTicker.put(ticker, merged);
+        }
+    }
+
+    // Another instance wrote the ticker's history; its closes are not in the message
+    synchronized void onRemoteUpdate(String ticker) {
+        if (loaded) {
+            reloadTicker(ticker);
+        }
+    }
+
+    private void reloadTicker(String ticker) {
+        SeriesLoader loader = new SeriesLoader();
+        jdbcTemplate.query("SELECT stock_ticker, date, closing_price FROM price_history "
+                + "WHERE stock_ticker = ? AND closing_price IS NOT NULL ORDER BY date", loader, ticker);
+        Series series = loader.finish().get(ticker);
+        if (series != null) {
+            seriesByTicker.put(ticker, series);
+        } else {
+            seriesByTicker.remove(ticker);
+        }
+    }
+
+    // Returns the series with the closes added, replacing closes of the same day
+    private static Series merge(Series current, Map<LocalDate, Double> closes) {
+        TreeMap<Integer, Double> updates = new TreeMap<>();
+        closes.forEach((date, close) -> {
+            if (close != null) {
+                updates.put((int) date.toEpochDay(), close);
+            }
+        });
+        if (updates.isEmpty()) {
+            return current;
+        }
+        int currentSize = current != null ? current.size() : 0;
+        int[] epochDays = new int[currentSize + updates.size()];
+        double[] values = new double[epochDays.length];
+        int size = 0;
+        int i = 0;
+        for (Map.Entry<Integer, Double> update : updates.entrySet()) {
+            while (i < currentSize && current.epochDays()[i] < update.getKey()) {
+                epochDays[size] = current.epochDays()[i];
+                values[size++] = current.closes()[i++];
+            }
+            if (i < currentSize && current.epochDays()[i] == update.getKey()) {
+                i++;
+            }
+            epochDays[size] = update.getKey();
+            values[size++] = update.getValue();
+        }
+        while (i < currentSize) {
+            epochDays[size] = current.epochDays()[i];
+            values[size++] = current.closes()[i++];
+        }
+        return new Series(Arrays.copyOf(epochDays, size), Arrays.copyOf(values, size));
+    }
+
+    // Builds series from rows ordered by ticker and date
+    private static final class SeriesLoader implements RowCallbackHandler {
+        private final Map<String, Series> series = new ConcurrentHashMap<>();
+        private String ticker;
+        private int[] epochDays = new int[256];
+        private double[] closes = new double[256];
+        private int size;
+        private int rows;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            String rowTicker = rs.getString(1);
+            if (!rowTicker.equals(ticker)) {
+                flush();
+                ticker = rowTicker;
+            }
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                closes = Arrays.copyOf(closes, size * 2);
+            }
+            epochDays[size] = (int) rs.getObject(2, LocalDate.class).toEpochDay();
+            closes[size++] = rs.getDouble(3);
+            rows++;
+        }
+
+        private void flush() {
+            if (ticker != null && size > 0) {
+                series.put(ticker, new Series(Arrays.copyOf(epochDays, size), Arrays.copyOf(closes, size)));
+            }
+            size = 0;
+        }
+
+        Map<String, Series> finish() {
+            flush();
+            return series;
+        }
+    }
+}
@@ -13,10 +13,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.PortfolioHeatmap.models.BatchQuoteResult;
 import com.PortfolioHeatmap.models.PriceHistory;
 import com.PortfolioHeatmap.models.Stock;
 import com.PortfolioHeatmap.models.StockPrice;
-import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
 import com.PortfolioHeatmap.repositories.StockRepository;
 
 import java.time.LocalDate;
@@ -29,16 +29,19 @@ import java.util.stream.Collectors;
 public class PriceUpdateService {
 
     private static final Logger log = LoggerFactory.getLogger(PriceUpdateService.class);
-    private static final int BATCH_SIZE = 100; // Matches the limit in FmpStockDataService
 
     @Autowired
     private StockRepository stockRepository;
 
     @Autowired
-    private PriceHistoryRepository priceHistoryRepository;
+    private FMPStockDataService fmpStockDataService;
 
+    // Writes go through PriceHistoryService so derived caches are evicted
     @Autowired
-    private FMPStockDataService fmpStockDataService;
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired
+    private ReferencePriceTable referencePriceTable;
 
     // Runs daily at 6:00 PM EST (assuming server is in UTC; adjust if needed) to
     // update stock prices
@@ -53,51 +56,47 @@ public class PriceUpdateService {
             return;
         }
 
-        // Split stocks into batches of 100 to respect API limits
-        List<List<Stock>> batches = new ArrayList<>();
-        for (int i = 0; i < stocks.size(); i += BATCH_SIZE) {
-            batches.add(stocks.subList(i, Math.min(i + BATCH_SIZE, stocks.size())));
-        }
-
+        // Fetch all quotes in one call; the data service splits the symbols into
+        // provider-sized chunks and fetches them concurrently
+        List<String> symbols = stocks.stream().map(Stock::getTicker).collect(Collectors.toList());
         LocalDate today = LocalDate.now();
-        for (List<Stock> batch : batches) {
-            List<String> symbols = batch.stream().map(Stock::getTicker).collect(Collectors.toList());
-            try {
-                List<StockPrice> prices = fmpStockDataService.getBatchStockPrices(symbols);
-                if (prices.isEmpty()) {
-                    log.warn("No prices returned for batch: {}", symbols);
-                    continue;
-                }
-
-                // Map prices by symbol for efficient lookup
-                Map<String, StockPrice> priceMap = prices.stream()
-                        .collect(Collectors.toMap(StockPrice::getSymbol, price -> price));
-
-                // Save prices to price_history table
-                for (Stock stock : batch) {
-                    // Skip if an entry already exists for this stock and date
-                    if (priceHistoryRepository.existsByStockAndDate(stock, today)) {
-                        log.info("Price history already exists for {} on {}", stock.getTicker(), today);
-                        continue;
-                    }
+        try {
+            // Scheduled job: yield the rate limit budget to interactive requests
+            BatchQuoteResult batchResult = StockDataService.await(RequestPriority.callAs(RequestPriority.BACKFILL,
+                    () -> fmpStockDataService.getBatchQuotesAsync(symbols)));
+            if (batchResult.hasFailures()) {
+                log.warn("No prices returned for {} symbols: {}", batchResult.getFailedSymbols().size(),
+                        batchResult.getFailedSymbols().keySet());
+            }
 
-                    StockPrice stockPrice = priceMap.get(stock.getTicker());
-                    if (stockPrice != null) {
-                        PriceHistory priceHistory = new PriceHistory();
-                        priceHistory.setStock(stock);
-                        priceHistory.setDate(today);
-                        priceHistory.setClosingPrice(stockPrice.getPrice());
-                        priceHistory.setPeRatio(stockPrice.getPeRatio());
-                        priceHistory.setMarketCap(stockPrice.getMarketCap());
-                        priceHistoryRepository.save(priceHistory);
-                        log.info("Updated price for {}: ${} on {}", stock.getTicker(), stockPrice.getPrice(), today);
-                    } else {
-                        log.warn("No price found for {} on {}", stock.getTicker(), today);
-                    }
+            // Map prices by symbol for efficient lookup
+            Map<String, StockPrice> priceMap = batchResult.getPrices().stream()
+                    .collect(Collectors.toMap(StockPrice::getSymbol, price -> price, (first, second) -> first));
+
+            // Save prices to price_history table
+            List<PriceHistory> newPrices = new ArrayList<>();
+            for (Stock stock : stocks) {
+                StockPrice stockPrice = priceMap.get(stock.getTicker());
+                if (stockPrice != null) {
+                    PriceHistory priceHistory = new PriceHistory();
+                    priceHistory.setStock(stock);
+                    priceHistory.setDate(today);
+                    priceHistory.setClosingPrice(stockPrice.getPrice());
+                    priceHistory.setPeRatio(stockPrice.getPeRatio());
+                    priceHistory.setMarketCap(stockPrice.getMarketCap());
+                    newPrices.add(priceHistory);
+                } else {
+                    log.warn("No price found for {} on {}", stock.getTicker(), today);
                 }
-            } catch (Exception e) {
-                log.error("Failed to update prices for batch: {}", symbols, e);
             }
+            // One upsert per batch of stocks; a rerun on the same day replaces
+            // today's closes instead of checking each stock first
+            int written = priceHistoryService.upsertAll(newPrices);
+            log.info("Stored {} prices for {}", written, today);
+            // Roll return lookups forward to the closes just stored
+            referencePriceTable.rebuild();
+        } catch (Exception e) {
+            log.error("Failed to update prices for symbols: {}", symbols, e);
         }
 
         log.info("Daily price update completed.");
@@ -0,0 +1,118 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Rolling health and latency statistics for one market data provider, used by
+ * FailoverStockDataService to order providers and to decide when to send a hedged request. A
+ * provider is marked unhealthy after a run of consecutive failures and is tried again once the
+ * cooldown has passed.
+ */
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+final class ProviderHealth {
+    // Number of recent successful call latencies kept for percentile estimates
+    static final int LATENCY_WINDOW = 200;
+    // Percentiles are only reported once this many latencies have been recorded
+    static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int nextLatency;
+
+    private long successes;
+    private long failures;
+    private int consecutiveFailures;
+    private long unhealthyUntil;
+    private boolean unhealthy;
+    private String lastError;
+    private long hedgesSent;
+    private long hedgesWon;
+    private long failovers;
+
+    ProviderHealth(String name, int failureThreshold, long cooldownMs, LongSupplier nanoClock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+        this.nanoClock = nanoClock;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    synchronized void recordSuccess(long latencyNanos) {
+        successes++;
+        consecutiveFailures = 0;
+        unhealthy = false;
+        latencies[nextLatency] = latencyNanos;
+        nextLatency = (nextLatency + 1) % LATENCY_WINDOW;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+    }
+
+    synchronized void recordFailure(Throwable error) {
+        failures++;
+        consecutiveFailures++;
+        lastError = error.getMessage();
+        if (consecutiveFailures >= failureThreshold) {
+            unhealthy = true;
+            unhealthyUntil = nanoClock.getAsLong() + cooldownNanos;
+        }
+    }
+
+    synchronized void recordHedgeSent() {
+        hedgesSent++;
+    }
+
+    synchronized void recordHedgeWon() {
+        hedgesWon++;
+    }
+
+    synchronized void recordFailover() {
+        failovers++;
+    }
+
+    // Healthy unless it has failed failureThreshold times in a row within the
+    // cooldown; once the cooldown passes it is tried again
+    synchronized boolean isHealthy() {
+        return !unhealthy || nanoClock.getAsLong() - unhealthyUntil >= 0;
+    }
+
+    // Latency at the given percentile (0-100) of recent successful calls, or -1
+    // if there are not enough samples yet
+    synchronized long latencyPercentileNanos(double percentile) {
+        if (latencyCount < MIN_LATENCY_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(index, latencyCount - 1))];
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("healthy", isHealthy());
+        snapshot.put("successes", successes);
+        snapshot.put("failures", failures);
+        snapshot.put("consecutiveFailures", consecutiveFailures);
+        snapshot.put("lastError", lastError);
+        snapshot.put("p50LatencyMs", toMillis(latencyPercentileNanos(50)));
+        snapshot.put("p95LatencyMs", toMillis(latencyPercentileNanos(95)));
+        snapshot.put("hedgesSent", hedgesSent);
+        snapshot.put("hedgesWon", hedgesWon);
+        snapshot.put("failovers", failovers);
+        return snapshot;
+    }
+
+    private static Long toMillis(long nanos) {
+        return nanos < 0 ? null : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
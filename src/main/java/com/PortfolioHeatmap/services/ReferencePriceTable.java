@@ -0,0 +1,214 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Holds, for every stock, the close each portfolio timeframe's return is measured from, as of the
+ * current trading session, plus the stored close of that session once it has been ingested. A
+ * return lookup reads one row instead of querying price_history.
+ *
+ * The table is loaded with a few queries per chunk of tickers and replaced as a whole, so readers
+ * always see one consistent generation. CacheWarmupService rebuilds it at startup and before the
+ * open, when the coming session's rows are loaded ahead and swapped in once it opens; it is also
+ * rebuilt when PriceUpdateService ingests the session's closes, and loaded on the first lookup of
+ * a session nobody prepared. Tickers written in between (for example through the stock controller,
+ * here or on another instance, see CacheInvalidationBus) are reloaded individually on their next
+ * lookup.
+ *
+ * Reference closes: 1d is the last close before the session, total is the first stored close,
+ * and every other timeframe is the last close on or before its start date (see
+ * PriceHistoryService.timeframeStartDate).
+ */
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
+import com.PortfolioHeatmap.repositories.StockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class ReferencePriceTable {
+    private static final Logger log = LoggerFactory.getLogger(ReferencePriceTable.class);
+
+    // Column order of Row.referenceCloses
+    public static final List<String> TIMEFRAMES = List.of("1d", "1w", "1m", "3m", "6m", "ytd", "1y", "total");
+    // Tickers per query, well below database IN-list limits
+    private static final int QUERY_CHUNK_SIZE = 500;
+
+    // One ticker's reference closes in TIMEFRAMES order, NaN where there is no
+    // stored close, and the stored close of the as-of session, NaN until ingested
+    public record Row(double[] referenceCloses, double sessionClose) {
+        public double referenceClose(String timeframe) {
+            int index = TIMEFRAMES.indexOf(timeframe);
+            return index < 0 ? Double.NaN : referenceCloses[index];
+        }
+    }
+
+    private record Generation(LocalDate asOf, Map<String, Row> rows) {
+    }
+
+    private final PriceHistoryRepository priceHistoryRepository;
+    private final StockRepository stockRepository;
+    private final TradingSessionCalendar calendar;
+    private final Clock clock;
+
+    private volatile Generation generation = new Generation(null, Map.of());
+    // Loaded before the open for the session about to start; guarded by the monitor
+    private Generation upcoming;
+    // Tickers written since the current generation was loaded
+    private final Set<String> staleTickers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ReferencePriceTable(PriceHistoryRepository priceHistoryRepository, StockRepository stockRepository,
+            TradingSessionCalendar calendar, CacheInvalidationBus invalidationBus) {
+        this(priceHistoryRepository, stockRepository, calendar, invalidationBus, Clock.systemUTC());
+    }
+
+    ReferencePriceTable(PriceHistoryRepository priceHistoryRepository, StockRepository stockRepository,
+            TradingSessionCalendar calendar, CacheInvalidationBus invalidationBus, Clock clock) {
+        this.priceHistoryRepository = priceHistoryRepository;
+        this.stockRepository = stockRepository;
+        this.calendar = calendar;
+        this.clock = clock;
+        invalidationBus.addTickerListener(PriceHistoryCacheInvalidator.PRICE_HISTORY, staleTickers::add);
+    }
+
+    // Returns the ticker's row for the current session, or null for a ticker with
+    // no stored prices
+    public Row row(String ticker) {
+        Generation current = currentGeneration();
+        if (staleTickers.remove(ticker)) {
+            current = reloadTicker(ticker, current.asOf());
+        }
+        return current.rows().get(ticker);
+    }
+
+    // The session the table currently describes
+    public LocalDate getAsOf() {
+        return generation.asOf();
+    }
+
+    // Reloads every row for the current session and swaps the table in one step.
+    // Before the open on a trading day, the rows are loaded for that day's session
+    // instead and swapped in when it opens
+    public synchronized void rebuild() {
+        Instant now = clock.instant();
+        LocalDate session = calendar.currentSession(now);
+        LocalDate today = now.atZone(calendar.getZone()).toLocalDate();
+        if (!today.equals(session) && calendar.isTradingDay(today)) {
+            upcoming = loadGeneration(today);
+        } else {
+            load(session);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceHistoryUpdated(PriceHistoryUpdatedEvent event) {
+        staleTickers.add(event.getTicker());
+    }
+
+    private Generation currentGeneration() {
+        Generation current = generation;
+        LocalDate session = calendar.currentSession(clock.instant());
+        if (session.equals(current.asOf())) {
+            return current;
+        }
+        synchronized (this) {
+            current = generation;
+            if (session.equals(current.asOf())) {
+                return current;
+            }
+            if (upcoming != null && session.equals(upcoming.asOf())) {
+                // Tickers written since it was loaded are still marked stale
+                generation = upcoming;
+                upcoming = null;
+                return generation;
+            }
+            return load(session);
+        }
+    }
+
+    // Runs with the monitor held
+    private Generation load(LocalDate asOf) {
+        Set<String> reloaded = Set.copyOf(staleTickers);
+        Generation loaded = loadGeneration(asOf);
+        generation = loaded;
+        upcoming = null;
+        staleTickers.removeAll(reloaded);
+        return loaded;
+    }
+
+    private Generation loadGeneration(LocalDate asOf) {
+        long start = System.nanoTime();
+        List<String> tickers = stockRepository.findAllTickers();
+        Map<String, Row> rows = new HashMap<>();
+        for (int i = 0; i < tickers.size(); i += QUERY_CHUNK_SIZE) {
+            rows.putAll(loadRows(tickers.subList(i, Math.min(i + QUERY_CHUNK_SIZE, tickers.size())), asOf));
+        }
+        log.info("Loaded reference prices for {} tickers as of {} in {} ms", rows.size(), asOf,
+                (System.nanoTime() - start) / 1_000_000);
+        return new Generation(asOf, Map.copyOf(rows));
+    }
+
+    private synchronized Generation reloadTicker(String ticker, LocalDate asOf) {
+        Generation current = generation;
+        if (!asOf.equals(current.asOf())) {
+            // A full load for a newer session has already replaced the table
+            return current;
+        }
+        Map<String, Row> rows = new HashMap<>(current.rows());
+        rows.remove(ticker);
+        rows.putAll(loadRows(List.of(ticker), asOf));
+        Generation reloaded = new Generation(asOf, Map.copyOf(rows));
+        generation = reloaded;
+        return reloaded;
+    }
+
+    private Map<String, Row> loadRows(Collection<String> tickers, LocalDate asOf) {
+        Map<String, double[]> referenceCloses = new HashMap<>();
+        for (int index = 0; index < TIMEFRAMES.size(); index++) {
+            String timeframe = TIMEFRAMES.get(index);
+            List<PriceHistory> closes;
+            if ("total".equals(timeframe)) {
+                closes = priceHistoryRepository.findEarliestForTickers(tickers);
+            } else if ("1d".equals(timeframe)) {
+                closes = priceHistoryRepository.findLatestBeforeDateForTickers(tickers, asOf);
+            } else {
+                // On or before the start date
+                closes = priceHistoryRepository.findLatestBeforeDateForTickers(tickers,
+                        PriceHistoryService.timeframeStartDate(timeframe, asOf).plusDays(1));
+            }
+            for (PriceHistory close : closes) {
+                referenceCloses.computeIfAbsent(close.getStock().getTicker(), ticker -> emptyCloses())[index] =
+                        close.getClosingPrice();
+            }
+        }
+        Map<String, Double> sessionCloses = new HashMap<>();
+        for (PriceHistory latest : priceHistoryRepository.findLatestForTickers(tickers)) {
+            if (latest.getDate().equals(asOf)) {
+                sessionCloses.put(latest.getStock().getTicker(), latest.getClosingPrice());
+            }
+        }
+        Map<String, Row> rows = new HashMap<>();
+        referenceCloses.forEach((ticker, closes) -> rows.put(ticker,
+                new Row(closes, sessionCloses.getOrDefault(ticker, Double.NaN))));
+        return rows;
+    }
+
+    private static double[] emptyCloses() {
+        double[] closes = new double[TIMEFRAMES.size()];
+        Arrays.fill(closes, Double.NaN);
+        return closes;
+    }
+}
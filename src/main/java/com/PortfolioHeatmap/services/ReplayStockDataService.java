@@ -0,0 +1,431 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Offline market data provider for load testing, selected with stock.data.provider=replay. Quotes,
+ * histories, candles, the stock list and S&P 500 constituents are served from fixture files in
+ * FMP's response formats, so no network or API quota is needed. Symbols without a fixture can be
+ * given deterministic synthetic data. Every call can be slowed by a configurable latency and made
+ * to fail at a configurable rate. In record mode, calls are forwarded to FMP and the responses are
+ * written to the fixture directory so they can be replayed later; recorded histories are merged
+ * into the symbol's existing fixture, so a short range never truncates a longer one.
+ *
+ * Fixture layout under stock.data.replay.fixtures-dir:
+ *   quotes/SYMBOL.json      FMP /quote response
+ *   historical/SYMBOL.json  FMP /historical-price-full response
+ *   stock-list.json         FMP /stock/list response
+ *   sp500_constituent.json  FMP /sp500_constituent response (falls back to
+ *                           stock.data.replay.constituents-file)
+ */
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.FMPQuoteResponse;
+import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
+import com.PortfolioHeatmap.models.FMPStockListResponse;
+import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+public class ReplayStockDataService implements StockDataService {
+    private static final Logger log = LoggerFactory.getLogger(ReplayStockDataService.class);
+
+    private final FMPStockDataService recordingSource;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper;
+    private final Path fixturesDir;
+    private final Path constituentsFile;
+    // Mean added latency per call and the maximum random jitter around it
+    private final long latencyMs;
+    private final long latencyJitterMs;
+    // Fraction of calls (0.0 - 1.0) that fail with an injected error
+    private final double errorRate;
+    // Whether symbols without a fixture get synthetic data instead of an error
+    private final boolean synthesizeMissing;
+    // Forward calls to FMP and write the responses as fixtures
+    private final boolean record;
+
+    // Fixture files are read once and kept in memory, so replay throughput is
+    // not limited by disk reads
+    private final Map<String, Optional<FMPQuoteResponse>> quoteFixtures = new ConcurrentHashMap<>();
+    private final Map<String, Optional<byte[]>> historyFixtures = new ConcurrentHashMap<>();
+
+    public ReplayStockDataService(FMPStockDataService fmpService, ExecutorService marketDataExecutor,
+            @Value("${stock.data.replay.fixtures-dir:fixtures/market-data}") String fixturesDir,
+            @Value("${stock.data.replay.constituents-file:sp500_constituents_response.json}") String constituentsFile,
+            @Value("${stock.data.replay.latency-ms:0}") long latencyMs,
+            @Value("${stock.data.replay.latency-jitter-ms:0}") long latencyJitterMs,
+            @Value("${stock.data.replay.error-rate:0.0}") double errorRate,
+            @Value("${stock.data.replay.synthesize-missing:true}") boolean synthesizeMissing,
+            @Value("${stock.data.replay.record:false}") boolean record) {
+        this.recordingSource = fmpService;
+        this.executor = marketDataExecutor;
+        this.fixturesDir = Paths.get(fixturesDir);
+        this.constituentsFile = Paths.get(constituentsFile);
+        this.latencyMs = Math.max(0, latencyMs);
+        this.latencyJitterMs = Math.max(0, latencyJitterMs);
+        this.errorRate = errorRate;
+        this.synthesizeMissing = synthesizeMissing;
+        this.record = record;
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public StockPrice getStockPrice(String symbol) {
+        return StockDataService.await(getStockPriceAsync(symbol));
+    }
+
+    @Override
+    public CompletableFuture<StockPrice> getStockPriceAsync(String symbol) {
+        if (record) {
+            return recordingSource.getStockPriceAsync(symbol).thenApply(price -> {
+                recordQuote(price);
+                return price;
+            });
+        }
+        return replay("quote " + symbol, () -> loadQuote(symbol));
+    }
+
+    @Override
+    public List<StockPrice> getBatchStockPrices(List<String> symbols) {
+        return StockDataService.await(getBatchStockPricesAsync(symbols));
+    }
+
+    @Override
+    public CompletableFuture<List<StockPrice>> getBatchStockPricesAsync(List<String> symbols) {
+        return getBatchQuotesAsync(symbols).thenApply(BatchQuoteResult::getPrices);
+    }
+
+    // A batch is replayed as a single round-trip; symbols without a fixture are
+    // reported in failedSymbols
+    @Override
+    public CompletableFuture<BatchQuoteResult> getBatchQuotesAsync(List<String> symbols) {
+        if (record) {
+            return recordingSource.getBatchQuotesAsync(symbols).thenApply(result -> {
+                result.getPrices().forEach(this::recordQuote);
+                return result;
+            });
+        }
+        return replay("batch quote of " + symbols.size() + " symbols", () -> {
+            List<StockPrice> prices = new ArrayList<>();
+            Map<String, String> failedSymbols = new LinkedHashMap<>();
+            for (String symbol : new LinkedHashSet<>(symbols)) {
+                try {
+                    prices.add(loadQuote(symbol));
+                } catch (RuntimeException e) {
+                    failedSymbols.put(symbol, e.getMessage());
+                }
+            }
+            return new BatchQuoteResult(prices, failedSymbols);
+        });
+    }
+
+    @Override
+    public List<HistoricalPrice> getHistoricalPrices(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getHistoricalPricesAsync(symbol, from, to));
+    }
+
+    @Override
+    public CompletableFuture<List<HistoricalPrice>> getHistoricalPricesAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return getDailySeriesAsync(symbol, from, to).thenApply(OhlcvSeries::toHistoricalPrices);
+    }
+
+    @Override
+    public List<CandlestickData> getCandlestickData(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getCandlestickDataAsync(symbol, from, to));
+    }
+
+    @Override
+    public CompletableFuture<List<CandlestickData>> getCandlestickDataAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return getDailySeriesAsync(symbol, from, to).thenApply(OhlcvSeries::toCandlesticks);
+    }
+
+    @Override
+    public OhlcvSeries getDailySeries(String symbol, LocalDate from, LocalDate to) {
+        return StockDataService.await(getDailySeriesAsync(symbol, from, to));
+    }
+
+    @Override
+    public CompletableFuture<OhlcvSeries> getDailySeriesAsync(String symbol, LocalDate from, LocalDate to) {
+        if (record) {
+            return recordingSource.getDailySeriesAsync(symbol, from, to).thenApply(series -> {
+                recordSeries(series);
+                return series;
+            });
+        }
+        return replay("daily series " + symbol, () -> loadSeries(symbol, from, to));
+    }
+
+    @Override
+    public List<FMPStockListResponse> getStockList() {
+        try {
+            return Arrays.asList(objectMapper.readValue(getRawStockListResponse(), FMPStockListResponse[].class));
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing replayed stock list", e);
+        }
+    }
+
+    @Override
+    public String getRawStockListResponse() {
+        if (record) {
+            String rawResponse = recordingSource.getRawStockListResponse();
+            writeFixture(fixturesDir.resolve("stock-list.json"), rawResponse);
+            return rawResponse;
+        }
+        return StockDataService.await(replay("stock list", () -> readFixture(fixturesDir.resolve("stock-list.json"))
+                .orElseThrow(() -> new RuntimeException("No stock list fixture in " + fixturesDir))));
+    }
+
+    @Override
+    public String getRawSP500ConstituentsResponse() {
+        if (record) {
+            String rawResponse = recordingSource.getRawSP500ConstituentsResponse();
+            writeFixture(fixturesDir.resolve("sp500_constituent.json"), rawResponse);
+            return rawResponse;
+        }
+        return StockDataService.await(replay("S&P 500 constituents",
+                () -> readFixture(fixturesDir.resolve("sp500_constituent.json"))
+                        .or(() -> readFixture(constituentsFile))
+                        .orElseThrow(() -> new RuntimeException("No S&P 500 constituents fixture in " + fixturesDir
+                                + " or " + constituentsFile))));
+    }
+
+    @Override
+    public List<FMPSP500ConstituentResponse> getSP500Constituents() {
+        try {
+            return Arrays.asList(objectMapper.readValue(getRawSP500ConstituentsResponse(),
+                    FMPSP500ConstituentResponse[].class));
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing replayed S&P 500 constituents", e);
+        }
+    }
+
+    // Runs a replayed call after the configured latency, failing it at the
+    // configured error rate
+    private <T> CompletableFuture<T> replay(String operation, Supplier<T> call) {
+        long delay = latencyMs;
+        if (latencyJitterMs > 0) {
+            delay = Math.max(0, delay + ThreadLocalRandom.current().nextLong(-latencyJitterMs, latencyJitterMs + 1));
+        }
+        Executor delayed = delay > 0 ? CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor)
+                : executor;
+        return CompletableFuture.supplyAsync(() -> {
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                throw new RuntimeException("Injected replay failure for " + operation);
+            }
+            return call.get();
+        }, delayed);
+    }
+
+    private StockPrice loadQuote(String symbol) {
+        String key = symbol.toUpperCase();
+        Optional<FMPQuoteResponse> fixture = quoteFixtures.computeIfAbsent(key,
+                ignored -> readFixture(fixturesDir.resolve("quotes").resolve(key + ".json")).map(raw -> {
+                    try {
+                        FMPQuoteResponse[] quotes = objectMapper.readValue(raw, FMPQuoteResponse[].class);
+                        return quotes.length > 0 ? quotes[0] : null;
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error parsing quote fixture for " + key, e);
+                    }
+                }));
+        if (fixture.isPresent()) {
+            return toStockPrice(fixture.get());
+        }
+        if (!synthesizeMissing) {
+            throw new RuntimeException("No quote fixture for " + key);
+        }
+        return synthesizeQuote(key);
+    }
+
+    private OhlcvSeries loadSeries(String symbol, LocalDate from, LocalDate to) {
+        String key = symbol.toUpperCase();
+        Optional<byte[]> fixture = historyFixtures.computeIfAbsent(key,
+                ignored -> readFixture(fixturesDir.resolve("historical").resolve(key + ".json")).map(String::getBytes));
+        if (fixture.isPresent()) {
+            return FMPHistoricalSeriesParser.parse(key, fixture.get(), from, to);
+        }
+        if (!synthesizeMissing) {
+            throw new RuntimeException("No historical fixture for " + key);
+        }
+        return synthesizeSeries(key, from, to);
+    }
+
+    private static StockPrice toStockPrice(FMPQuoteResponse quote) {
+        StockPrice stockPrice = new StockPrice();
+        stockPrice.setSymbol(quote.getSymbol());
+        stockPrice.setPrice(quote.getPrice());
+        stockPrice.setOpen(quote.getOpen());
+        stockPrice.setHigh(quote.getHigh());
+        stockPrice.setLow(quote.getLow());
+        stockPrice.setPreviousClose(quote.getPreviousClose());
+        stockPrice.setPeRatio(quote.getPe());
+        stockPrice.setMarketCap(quote.getMarketCap());
+        return stockPrice;
+    }
+
+    // Synthetic prices are a smooth deterministic function of the symbol and the
+    // day, so every range and every quote for a symbol agree with each other
+    private static double syntheticClose(String symbol, long epochDay) {
+        int hash = symbol.hashCode();
+        double base = 20 + Math.floorMod(hash, 480);
+        double phase = Math.floorMod(hash >>> 8, 360) * Math.PI / 180;
+        return Math.round(base * (1 + 0.15 * Math.sin(epochDay / 45.0 + phase)
+                + 0.03 * Math.sin(epochDay / 6.0 + 2 * phase)) * 100) / 100.0;
+    }
+
+    private static StockPrice synthesizeQuote(String symbol) {
+        long today = LocalDate.now().toEpochDay();
+        double price = syntheticClose(symbol, today);
+        double previousClose = syntheticClose(symbol, today - 1);
+        StockPrice stockPrice = new StockPrice(symbol, price);
+        stockPrice.setOpen(previousClose);
+        stockPrice.setHigh(Math.max(price, previousClose) * 1.01);
+        stockPrice.setLow(Math.min(price, previousClose) * 0.99);
+        stockPrice.setPreviousClose(previousClose);
+        stockPrice.setPeRatio(15 + Math.floorMod(symbol.hashCode(), 25) * 1.0);
+        stockPrice.setMarketCap((long) (price * 1_000_000_000L));
+        return stockPrice;
+    }
+
+    private static OhlcvSeries synthesizeSeries(String symbol, LocalDate from, LocalDate to) {
+        List<LocalDate> days = from.datesUntil(to.plusDays(1))
+                .filter(day -> day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY)
+                .collect(Collectors.toList());
+        int size = days.size();
+        int[] epochDays = new int[size];
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        long[] volume = new long[size];
+        for (int i = 0; i < size; i++) {
+            long day = days.get(i).toEpochDay();
+            epochDays[i] = (int) day;
+            close[i] = syntheticClose(symbol, day);
+            open[i] = syntheticClose(symbol, day - 1);
+            high[i] = Math.max(open[i], close[i]) * 1.01;
+            low[i] = Math.min(open[i], close[i]) * 0.99;
+            volume[i] = 1_000_000L + Math.floorMod(symbol.hashCode() + day * 7919, 9_000_000L);
+        }
+        return new OhlcvSeries(symbol, epochDays, open, high, low, close, volume);
+    }
+
+    // Writes the quote as an FMP /quote response fixture
+    private void recordQuote(StockPrice price) {
+        if (price.getSymbol() == null || !price.hasPrice()) {
+            return;
+        }
+        FMPQuoteResponse quote = new FMPQuoteResponse();
+        quote.setSymbol(price.getSymbol());
+        quote.setPrice(price.getPrice());
+        quote.setOpen(price.getOpen());
+        quote.setHigh(price.getHigh());
+        quote.setLow(price.getLow());
+        quote.setPreviousClose(price.getPreviousClose());
+        quote.setPe(price.getPeRatio());
+        quote.setMarketCap(price.getMarketCap());
+        String key = price.getSymbol().toUpperCase();
+        try {
+            writeFixture(fixturesDir.resolve("quotes").resolve(key + ".json"),
+                    objectMapper.writeValueAsString(new FMPQuoteResponse[] { quote }));
+            quoteFixtures.remove(key);
+        } catch (IOException e) {
+            log.error("Failed to record quote for {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    // Writes the series as an FMP /historical-price-full response fixture,
+    // newest day first as FMP returns it. Days already in the fixture are kept
+    // and days in both are replaced, so the fixture covers every recorded range.
+    private synchronized void recordSeries(OhlcvSeries series) {
+        String key = series.getSymbol().toUpperCase();
+        Path path = fixturesDir.resolve("historical").resolve(key + ".json");
+        // ISO dates sort chronologically, so this orders the days newest first
+        Map<String, Object> historical = new TreeMap<>(Comparator.reverseOrder());
+        readFixture(path).ifPresent(raw -> {
+            try {
+                for (JsonNode day : objectMapper.readTree(raw).path("historical")) {
+                    historical.put(day.path("date").asText(), day);
+                }
+            } catch (IOException e) {
+                log.warn("Replacing unreadable history fixture for {}: {}", key, e.getMessage());
+            }
+        });
+        for (int i = 0; i < series.size(); i++) {
+            Map<String, Object> day = new LinkedHashMap<>();
+            day.put("date", series.getDate(i).toString());
+            day.put("open", Double.isNaN(series.getOpen(i)) ? null : series.getOpen(i));
+            day.put("high", Double.isNaN(series.getHigh(i)) ? null : series.getHigh(i));
+            day.put("low", Double.isNaN(series.getLow(i)) ? null : series.getLow(i));
+            day.put("close", Double.isNaN(series.getClose(i)) ? null : series.getClose(i));
+            day.put("volume", series.getVolume(i) == OhlcvSeries.MISSING_VOLUME ? null : series.getVolume(i));
+            historical.put(series.getDate(i).toString(), day);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("symbol", series.getSymbol());
+        response.put("historical", new ArrayList<>(historical.values()));
+        try {
+            writeFixture(path, objectMapper.writeValueAsString(response));
+            historyFixtures.remove(key);
+        } catch (IOException e) {
+            log.error("Failed to record history for {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    private Optional<String> readFixture(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readString(path));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading fixture " + path, e);
+        }
+    }
+
+    private void writeFixture(Path path, String content) {
+        if (content == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, content);
+            log.info("Recorded fixture {}", path);
+        } catch (IOException e) {
+            log.error("Failed to record fixture {}: {}", path, e.getMessage(), e);
+        }
+    }
+}
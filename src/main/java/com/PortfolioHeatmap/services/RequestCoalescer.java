@@ -0,0 +1,72 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Single-flight request coalescing. Concurrent calls for the same key share one in-flight upstream
+ * future instead of each issuing their own request; once that future completes, the next call for
+ * the key starts a fresh request. Counts how many calls were issued upstream and how many were
+ * served by joining a request that was already in flight.
+ */
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class RequestCoalescer<K, V> {
+    private final String name;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public RequestCoalescer(String name) {
+        this.name = name;
+    }
+
+    // Returns the in-flight future for the key if there is one, otherwise starts
+    // the loader and shares its future with any caller that arrives before it
+    // completes. Each caller gets its own copy, so one caller cancelling or
+    // completing its future does not affect the others.
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+
+        issued.increment();
+        try {
+            loader.get().whenComplete((value, e) -> {
+                inFlight.remove(key, shared);
+                if (e != null) {
+                    shared.completeExceptionally(e);
+                } else {
+                    shared.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+        return shared.copy();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Number of calls that started an upstream request
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    // Number of calls that joined a request already in flight
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    // Number of keys with a request currently in flight
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,45 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Creates and tracks the RequestCoalescer instances used by the market data providers so their
+ * issued and coalesced call counts can be reported in one place.
+ */
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class RequestCoalescerRegistry {
+    private final Map<String, RequestCoalescer<?, ?>> coalescers = new ConcurrentHashMap<>();
+
+    // Creates a coalescer registered under the given name
+    public <K, V> RequestCoalescer<K, V> create(String name) {
+        RequestCoalescer<K, V> coalescer = new RequestCoalescer<>(name);
+        if (coalescers.putIfAbsent(name, coalescer) != null) {
+            throw new IllegalStateException("A request coalescer named " + name + " already exists");
+        }
+        return coalescer;
+    }
+
+    // Returns issued, coalesced and in-flight counts for every coalescer, plus the
+    // share of calls that were served without an upstream request
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        coalescers.values().stream()
+                .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .forEach(coalescer -> {
+                    long issued = coalescer.getIssuedCount();
+                    long coalesced = coalescer.getCoalescedCount();
+                    long total = issued + coalesced;
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("issued", issued);
+                    entry.put("coalesced", coalesced);
+                    entry.put("inFlight", coalescer.getInFlightCount());
+                    entry.put("savedRatio", total > 0 ? (double) coalesced / total : 0.0);
+                    stats.put(coalescer.getName(), entry);
+                });
+        return stats;
+    }
+}
@@ -0,0 +1,37 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Priority lanes for market data provider requests. When a provider's rate limit is exhausted,
+ * waiting INTERACTIVE requests (user-facing endpoints) are always granted before waiting BACKFILL
+ * requests (history population and scheduled jobs).
+ *
+ * The priority of the current thread defaults to INTERACTIVE and can be changed for the duration
+ * of a call with {@link #callAs(RequestPriority, Supplier)}. Providers read it when a request is
+ * issued, so it must be set on the thread that starts the request.
+ */
+import java.util.function.Supplier;
+
+public enum RequestPriority {
+    INTERACTIVE,
+    BACKFILL;
+
+    // Priority of requests issued from the current thread
+    private static final ThreadLocal<RequestPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    // Returns the priority of requests issued from the current thread
+    public static RequestPriority current() {
+        return CURRENT.get();
+    }
+
+    // Runs the given call with the given priority, restoring the previous
+    // priority afterwards
+    public static <T> T callAs(RequestPriority priority, Supplier<T> call) {
+        RequestPriority previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            return call.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
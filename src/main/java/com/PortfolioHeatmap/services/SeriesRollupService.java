@@ -0,0 +1,110 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Serves price series at daily, weekly or monthly resolution for the history and candlestick
+ * endpoints. Weekly and monthly series are built from per-month rollups: each calendar month
+ * that has ended is rolled up once from the daily series and cached in seriesRollups, so a
+ * five-year weekly chart reads about 260 bars from the cache instead of about 1,260 daily bars.
+ * The current month, and months only partly inside the requested range, are rolled up from the
+ * daily series on every request, so bars follow new daily closes as they land.
+ *
+ * Weeks that straddle two months are merged when the monthly parts are joined (see
+ * OhlcvSeries.rollUp).
+ */
+import com.PortfolioHeatmap.models.BarInterval;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class SeriesRollupService {
+    private final StockDataService stockDataService;
+    private final Cache rollupCache;
+
+    public SeriesRollupService(StockDataServiceFactory stockDataServiceFactory, CacheManager cacheManager) {
+        this.stockDataService = stockDataServiceFactory.getService();
+        this.rollupCache = cacheManager.getCache("seriesRollups");
+    }
+
+    public OhlcvSeries getSeries(String symbol, LocalDate from, LocalDate to, BarInterval interval) {
+        return StockDataService.await(getSeriesAsync(symbol, from, to, interval));
+    }
+
+    // Runs of months without a cached rollup are fetched as one daily range each,
+    // concurrently
+    public CompletableFuture<OhlcvSeries> getSeriesAsync(String symbol, LocalDate from, LocalDate to,
+            BarInterval interval) {
+        if (interval == BarInterval.DAILY) {
+            return stockDataService.getDailySeriesAsync(symbol, from, to);
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate end = to.isAfter(today) ? today : to;
+        if (end.isBefore(from)) {
+            return CompletableFuture.completedFuture(OhlcvSeries.empty(symbol));
+        }
+
+        // Cached rollups and rolled-up fetched months, by month
+        Map<YearMonth, OhlcvSeries> parts = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> fetches = new ArrayList<>();
+        YearMonth runStart = null;
+        YearMonth lastMonth = YearMonth.from(end);
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            OhlcvSeries cached = isCacheable(month, from, end, today)
+                    ? rollupCache.get(rollupKey(symbol, interval, month), OhlcvSeries.class)
+                    : null;
+            if (cached != null) {
+                parts.put(month, cached);
+                if (runStart != null) {
+                    fetches.add(rollUpMonths(symbol, runStart, month.minusMonths(1), from, end, today, interval,
+                            parts));
+                    runStart = null;
+                }
+            } else if (runStart == null) {
+                runStart = month;
+            }
+        }
+        if (runStart != null) {
+            fetches.add(rollUpMonths(symbol, runStart, lastMonth, from, end, today, interval, parts));
+        }
+        return CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> OhlcvSeries.concat(symbol, new TreeMap<>(parts).values()).rollUp(interval));
+    }
+
+    // Fetches the daily series of the months from first to last, within the
+    // range, and rolls each month up on its own, caching the months that can be
+    private CompletableFuture<Void> rollUpMonths(String symbol, YearMonth first, YearMonth last, LocalDate from,
+            LocalDate end, LocalDate today, BarInterval interval, Map<YearMonth, OhlcvSeries> parts) {
+        LocalDate start = first.atDay(1).isBefore(from) ? from : first.atDay(1);
+        LocalDate stop = last.atEndOfMonth().isAfter(end) ? end : last.atEndOfMonth();
+        return stockDataService.getDailySeriesAsync(symbol, start, stop).thenAccept(daily -> {
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                OhlcvSeries rollup = daily.slice(month.atDay(1), month.atEndOfMonth()).rollUp(interval);
+                if (isCacheable(month, from, end, today)) {
+                    rollupCache.put(rollupKey(symbol, interval, month), rollup);
+                }
+                parts.put(month, rollup);
+            }
+        });
+    }
+
+    // A month's rollup is cached once the month has ended and settled, the same
+    // rule the daily month segments use, and only when the range covers all of it
+    private static boolean isCacheable(YearMonth month, LocalDate from, LocalDate end, LocalDate today) {
+        return month.atEndOfMonth().plusDays(1).isBefore(today) && !from.isAfter(month.atDay(1))
+                && !end.isBefore(month.atEndOfMonth());
+    }
+
+    static String rollupKey(String symbol, BarInterval interval, YearMonth month) {
+        return symbol + "-" + interval + "-" + month;
+    }
+}
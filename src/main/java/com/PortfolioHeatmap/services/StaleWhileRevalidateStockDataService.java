@@ -0,0 +1,333 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * Keeps quotes available while the market data provider is slow or down. Every quote fetched is
+ * remembered as the symbol's last known value. A last known value younger than the freshness
+ * window is served as-is; an older one is served immediately, marked stale, while a refresh runs
+ * in the background. Quote calls go through a circuit breaker, and when a fetch fails or the
+ * circuit is open a symbol without a last known value falls back to its latest price_history
+ * close. Each quote carries asOf and stale so clients can show how old it is. History and
+ * listing calls are passed straight to the delegate.
+ */
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
+import com.PortfolioHeatmap.models.FMPStockListResponse;
+import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+public class StaleWhileRevalidateStockDataService implements StockDataService {
+    private static final Logger log = LoggerFactory.getLogger(StaleWhileRevalidateStockDataService.class);
+    // Stored closes are stamped with the US market close of their trading day
+    private static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+    private static final LocalTime MARKET_CLOSE = LocalTime.of(16, 0);
+
+    private final StockDataService delegate;
+    private final PriceHistoryRepository priceHistoryRepository;
+    private final CircuitBreaker circuitBreaker;
+    // Single-flight refreshes so a burst of stale reads triggers one fetch
+    private final RequestCoalescer<String, StockPrice> refreshCoalescer;
+    // Last quote fetched for each symbol, keyed by upper-case symbol
+    private final Cache<String, StockPrice> lastKnown;
+    private final Duration freshFor;
+    private final Clock clock;
+
+    StaleWhileRevalidateStockDataService(StockDataService delegate, PriceHistoryRepository priceHistoryRepository,
+            CircuitBreaker circuitBreaker, RequestCoalescer<String, StockPrice> refreshCoalescer, Duration freshFor,
+            long lastKnownMaxSize, Clock clock) {
+        this.delegate = delegate;
+        this.priceHistoryRepository = priceHistoryRepository;
+        this.circuitBreaker = circuitBreaker;
+        this.refreshCoalescer = refreshCoalescer;
+        this.lastKnown = Caffeine.newBuilder().maximumSize(lastKnownMaxSize).build();
+        this.freshFor = freshFor;
+        this.clock = clock;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public StockPrice getStockPrice(String symbol) {
+        return StockDataService.await(getStockPriceAsync(symbol));
+    }
+
+    @Override
+    public CompletableFuture<StockPrice> getStockPriceAsync(String symbol) {
+        StockPrice known = lastKnown.getIfPresent(symbol.toUpperCase());
+        if (known != null && isFresh(known)) {
+            return CompletableFuture.completedFuture(known);
+        }
+
+        CompletableFuture<StockPrice> refresh = refreshAsync(symbol);
+        if (known != null) {
+            // Serve the last known value now and let the refresh finish in the
+            // background
+            refresh.whenComplete((price, e) -> {
+                if (e != null) {
+                    log.debug("Background refresh of {} failed: {}", symbol, unwrap(e).getMessage());
+                }
+            });
+            return CompletableFuture.completedFuture(asStale(known));
+        }
+        return refresh.exceptionally(e -> {
+            StockPrice fallback = loadLastClose(symbol);
+            if (fallback == null) {
+                throw new CompletionException(unwrap(e));
+            }
+            log.warn("Serving stored close for {} from {}: {}", symbol, fallback.getAsOf(), unwrap(e).getMessage());
+            return fallback;
+        });
+    }
+
+    @Override
+    public List<StockPrice> getBatchStockPrices(List<String> symbols) {
+        return StockDataService.await(getBatchQuotesAsync(symbols)).getPrices();
+    }
+
+    @Override
+    public CompletableFuture<List<StockPrice>> getBatchStockPricesAsync(List<String> symbols) {
+        return getBatchQuotesAsync(symbols).thenApply(BatchQuoteResult::getPrices);
+    }
+
+    // Fresh last known values are served directly and stale ones are served
+    // while a background batch refreshes them. Only symbols with no last known
+    // value wait for the provider, and those that still fail fall back to their
+    // stored close. Symbols served from last known values count as cache hits,
+    // alongside any hits reported by the delegate.
+    @Override
+    public CompletableFuture<BatchQuoteResult> getBatchQuotesAsync(List<String> symbols) {
+        List<String> uniqueSymbols = new ArrayList<>(new LinkedHashSet<>(symbols));
+        Map<String, StockPrice> served = new LinkedHashMap<>();
+        List<String> staleSymbols = new ArrayList<>();
+        List<String> missingSymbols = new ArrayList<>();
+        for (String symbol : uniqueSymbols) {
+            StockPrice known = lastKnown.getIfPresent(symbol.toUpperCase());
+            if (known == null) {
+                missingSymbols.add(symbol);
+            } else if (isFresh(known)) {
+                served.put(symbol, known);
+            } else {
+                served.put(symbol, asStale(known));
+                staleSymbols.add(symbol);
+            }
+        }
+
+        if (!staleSymbols.isEmpty()) {
+            fetchBatchAsync(staleSymbols).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.debug("Background refresh of {} symbols failed: {}", staleSymbols.size(),
+                            unwrap(e).getMessage());
+                }
+            });
+        }
+        List<String> cacheHits = new ArrayList<>(served.keySet());
+        if (missingSymbols.isEmpty()) {
+            BatchQuoteResult result = assemble(uniqueSymbols, served, Map.of());
+            result.setCacheHits(cacheHits);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        return fetchBatchAsync(missingSymbols).handle((result, e) -> {
+            Map<String, StockPrice> fetched = new LinkedHashMap<>();
+            List<String> cacheMisses = new ArrayList<>(missingSymbols);
+            if (result != null) {
+                cacheHits.addAll(result.getCacheHits());
+                cacheMisses.removeAll(result.getCacheHits());
+                result.getPrices().stream()
+                        .filter(price -> price.getSymbol() != null)
+                        .forEach(price -> fetched.put(price.getSymbol().toUpperCase(), price));
+            }
+            Map<String, String> failedSymbols = new LinkedHashMap<>();
+            for (String symbol : missingSymbols) {
+                StockPrice price = fetched.get(symbol.toUpperCase());
+                if (price == null) {
+                    price = loadLastClose(symbol);
+                }
+                if (price != null) {
+                    served.put(symbol, price);
+                } else if (e != null) {
+                    failedSymbols.put(symbol, unwrap(e).getMessage());
+                } else {
+                    failedSymbols.put(symbol,
+                            result.getFailedSymbols().getOrDefault(symbol, "No quote returned by provider"));
+                }
+            }
+            BatchQuoteResult assembled = assemble(uniqueSymbols, served, failedSymbols);
+            assembled.setCacheHits(cacheHits);
+            assembled.setCacheMisses(cacheMisses);
+            return assembled;
+        });
+    }
+
+    @Override
+    public List<HistoricalPrice> getHistoricalPrices(String symbol, LocalDate from, LocalDate to) {
+        return delegate.getHistoricalPrices(symbol, from, to);
+    }
+
+    @Override
+    public CompletableFuture<List<HistoricalPrice>> getHistoricalPricesAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return delegate.getHistoricalPricesAsync(symbol, from, to);
+    }
+
+    @Override
+    public List<CandlestickData> getCandlestickData(String symbol, LocalDate from, LocalDate to) {
+        return delegate.getCandlestickData(symbol, from, to);
+    }
+
+    @Override
+    public CompletableFuture<List<CandlestickData>> getCandlestickDataAsync(String symbol, LocalDate from,
+            LocalDate to) {
+        return delegate.getCandlestickDataAsync(symbol, from, to);
+    }
+
+    @Override
+    public OhlcvSeries getDailySeries(String symbol, LocalDate from, LocalDate to) {
+        return delegate.getDailySeries(symbol, from, to);
+    }
+
+    @Override
+    public CompletableFuture<OhlcvSeries> getDailySeriesAsync(String symbol, LocalDate from, LocalDate to) {
+        return delegate.getDailySeriesAsync(symbol, from, to);
+    }
+
+    @Override
+    public List<FMPStockListResponse> getStockList() {
+        return delegate.getStockList();
+    }
+
+    @Override
+    public String getRawStockListResponse() {
+        return delegate.getRawStockListResponse();
+    }
+
+    @Override
+    public String getRawSP500ConstituentsResponse() {
+        return delegate.getRawSP500ConstituentsResponse();
+    }
+
+    @Override
+    public List<FMPSP500ConstituentResponse> getSP500Constituents() {
+        return delegate.getSP500Constituents();
+    }
+
+    // Fetches one quote through the circuit breaker and remembers it
+    private CompletableFuture<StockPrice> refreshAsync(String symbol) {
+        return refreshCoalescer.execute(symbol.toUpperCase(), () -> {
+            if (!circuitBreaker.tryAcquire()) {
+                return CompletableFuture.failedFuture(
+                        new RuntimeException("Market data circuit open, no fresh quote for " + symbol));
+            }
+            return delegate.getStockPriceAsync(symbol).handle((price, e) -> {
+                if (e != null) {
+                    circuitBreaker.recordFailure();
+                    throw new CompletionException(unwrap(e));
+                }
+                circuitBreaker.recordSuccess();
+                return remember(price);
+            });
+        });
+    }
+
+    // Fetches a batch through the circuit breaker and remembers every quote
+    // returned. A batch that comes back, even partially, counts as a success.
+    private CompletableFuture<BatchQuoteResult> fetchBatchAsync(List<String> symbols) {
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RuntimeException(
+                    "Market data circuit open, no fresh quotes for " + symbols.size() + " symbols"));
+        }
+        return delegate.getBatchQuotesAsync(symbols).handle((result, e) -> {
+            if (e != null) {
+                circuitBreaker.recordFailure();
+                throw new CompletionException(unwrap(e));
+            }
+            circuitBreaker.recordSuccess();
+            result.setPrices(result.getPrices().stream().map(this::remember).collect(Collectors.toList()));
+            return result;
+        });
+    }
+
+    // Keeps a copy, so stamping asOf never touches the instance the delegate's
+    // quote cache holds
+    private StockPrice remember(StockPrice price) {
+        StockPrice known = price.copy();
+        if (known.getAsOf() == null) {
+            known.setAsOf(clock.instant());
+        }
+        if (known.getSymbol() != null) {
+            lastKnown.put(known.getSymbol().toUpperCase(), known);
+        }
+        return known;
+    }
+
+    private boolean isFresh(StockPrice price) {
+        return price.getAsOf() != null && price.getAsOf().plus(freshFor).isAfter(clock.instant());
+    }
+
+    private static StockPrice asStale(StockPrice price) {
+        StockPrice stale = price.copy();
+        stale.setStale(true);
+        return stale;
+    }
+
+    // Builds a stale quote from the latest stored close, or null if there is none
+    private StockPrice loadLastClose(String symbol) {
+        try {
+            return priceHistoryRepository.findTopByStockTickerOrderByDateDesc(symbol.toUpperCase())
+                    .filter(history -> history.getClosingPrice() != null)
+                    .map(history -> toStockPrice(symbol, history))
+                    .orElse(null);
+        } catch (RuntimeException e) {
+            log.error("Failed to load stored close for {}: {}", symbol, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static StockPrice toStockPrice(String symbol, PriceHistory history) {
+        StockPrice price = new StockPrice(symbol.toUpperCase(), history.getClosingPrice());
+        price.setPeRatio(history.getPeRatio());
+        price.setMarketCap(history.getMarketCap());
+        price.setAsOf(history.getDate().atTime(MARKET_CLOSE).atZone(MARKET_ZONE).toInstant());
+        price.setStale(true);
+        return price;
+    }
+
+    private static BatchQuoteResult assemble(List<String> symbols, Map<String, StockPrice> served,
+            Map<String, String> failedSymbols) {
+        List<StockPrice> prices = new ArrayList<>();
+        for (String symbol : symbols) {
+            StockPrice price = served.get(symbol);
+            if (price != null) {
+                prices.add(price);
+            }
+        }
+        return new BatchQuoteResult(prices, new LinkedHashMap<>(failedSymbols));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -8,19 +8,25 @@ package com.PortfolioHeatmap.services;
  * @author [Marvel Bana]
  */
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.time.LocalDate;
 
+import com.PortfolioHeatmap.models.BatchQuoteResult;
 import com.PortfolioHeatmap.models.StockPrice;
 import com.PortfolioHeatmap.models.FMPSP500ConstituentResponse;
 import com.PortfolioHeatmap.models.FMPStockListResponse;
 import com.PortfolioHeatmap.models.HistoricalPrice;
 import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.OhlcvSeries;
 
 public interface StockDataService {
     // Fetches the current stock price for a given symbol.
     StockPrice getStockPrice(String symbol);
 
     // Fetches stock prices for a list of symbols in a batch request.
+    // Lists of any size are accepted; implementations split them into
+    // provider-sized requests. Symbols that fail are left out of the result.
     List<StockPrice> getBatchStockPrices(List<String> symbols);
 
     // Fetches historical price data for a given symbol within the specified date
@@ -34,6 +40,12 @@ public interface StockDataService {
     // data.
     List<CandlestickData> getCandlestickData(String symbol, LocalDate from, LocalDate to);
 
+    // Fetches the daily OHLCV series for a given symbol within the specified date
+    // range, oldest day first. Historical prices and candlestick data are
+    // projections of this series, so one download can serve closes, candles and
+    // price history backfill.
+    OhlcvSeries getDailySeries(String symbol, LocalDate from, LocalDate to);
+
     // Fetches a list of stock symbols available for trading.
     List<FMPStockListResponse> getStockList();
 
@@ -42,4 +54,35 @@ public interface StockDataService {
     String getRawSP500ConstituentsResponse();
 
     List<FMPSP500ConstituentResponse> getSP500Constituents();
+
+    // Asynchronous variants of the methods above. They return immediately and
+    // complete when the provider responds, so callers can start several remote
+    // calls at once and join them instead of waiting on each in turn.
+    CompletableFuture<StockPrice> getStockPriceAsync(String symbol);
+
+    CompletableFuture<List<StockPrice>> getBatchStockPricesAsync(List<String> symbols);
+
+    // Fetches stock prices for a list of symbols of any size, reporting which
+    // symbols could not be quoted alongside the quotes that were fetched.
+    CompletableFuture<BatchQuoteResult> getBatchQuotesAsync(List<String> symbols);
+
+    CompletableFuture<List<HistoricalPrice>> getHistoricalPricesAsync(String symbol, LocalDate from, LocalDate to);
+
+    CompletableFuture<List<CandlestickData>> getCandlestickDataAsync(String symbol, LocalDate from, LocalDate to);
+
+    CompletableFuture<OhlcvSeries> getDailySeriesAsync(String symbol, LocalDate from, LocalDate to);
+
+    // Waits for an async result, rethrowing the provider's own RuntimeException
+    // rather than the CompletionException wrapper so callers keep their existing
+    // error handling and messages.
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
\ No newline at end of file
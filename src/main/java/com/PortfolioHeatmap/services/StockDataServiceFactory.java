@@ -3,36 +3,145 @@ package com.PortfolioHeatmap.services;
 /**
  * A factory class that provides the appropriate StockDataService implementation based on configuration.
  * This class allows the application to switch between different stock data providers (e.g., FMP or Alpha Vantage)
- * at runtime, using a provider property.
+ * at runtime, using a provider property. When failover is enabled, the configured provider is wrapped
+ * in a FailoverStockDataService that hedges slow requests and fails over to the other provider.
+ * Quotes are always served through a StaleWhileRevalidateStockDataService, which falls back to
+ * the last known quote or stored close when the provider is unavailable. Setting the provider to
+ * "replay" serves recorded fixtures instead of calling any provider, for offline load testing.
  * 
  * @author [Marvel Bana]
  */
+import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 @Service
 public class StockDataServiceFactory {
     // The Alpha Vantage stock data service implementation.
     private final AlphaVantageStockDataService alphaService;
     // The FMP stock data service implementation.
     private final FMPStockDataService fmpService;
+    // The offline fixture-backed implementation, used when provider=replay.
+    private final ReplayStockDataService replayService;
+    // Fallback source for quotes while the provider is unavailable.
+    private final PriceHistoryRepository priceHistoryRepository;
+    private final RequestCoalescerRegistry coalescerRegistry;
 
     // The provider to use, loaded from application properties (defaults to "fmp").
     @Value("${stock.data.provider:fmp}")
     private String provider;
 
+    // Failover and hedging settings, see FailoverStockDataService.
+    @Value("${stock.data.failover.enabled:false}")
+    private boolean failoverEnabled;
+    @Value("${stock.data.failover.hedge-percentile:95}")
+    private double hedgePercentile;
+    @Value("${stock.data.failover.hedge-initial-delay-ms:1500}")
+    private long hedgeInitialDelayMs;
+    @Value("${stock.data.failover.hedge-min-delay-ms:200}")
+    private long hedgeMinDelayMs;
+    @Value("${stock.data.failover.failure-threshold:3}")
+    private int failureThreshold;
+    @Value("${stock.data.failover.cooldown-ms:30000}")
+    private long cooldownMs;
+
+    // Stale-while-revalidate and circuit breaker settings for quotes.
+    @Value("${stock.data.quotes.fresh-seconds:60}")
+    private long quoteFreshSeconds;
+    @Value("${stock.data.quotes.last-known-max-size:5000}")
+    private long lastKnownMaxSize;
+    @Value("${stock.data.circuit-breaker.failure-threshold:5}")
+    private int circuitFailureThreshold;
+    @Value("${stock.data.circuit-breaker.open-ms:30000}")
+    private long circuitOpenMs;
+
+    // The composite service and the scheduler for its hedge timers, created only
+    // when failover is enabled.
+    private FailoverStockDataService failoverService;
+    private ScheduledExecutorService hedgeScheduler;
+    // The service handed out by getService().
+    private StaleWhileRevalidateStockDataService quoteService;
+
     // Constructor for dependency injection of the Alpha Vantage and FMP stock data
-    // services.
-    public StockDataServiceFactory(AlphaVantageStockDataService alphaService, FMPStockDataService fmpService) {
+    // services, and the price history used as the quote fallback.
+    public StockDataServiceFactory(AlphaVantageStockDataService alphaService, FMPStockDataService fmpService,
+            ReplayStockDataService replayService, PriceHistoryRepository priceHistoryRepository,
+            RequestCoalescerRegistry coalescerRegistry) {
         this.alphaService = alphaService;
         this.fmpService = fmpService;
+        this.replayService = replayService;
+        this.priceHistoryRepository = priceHistoryRepository;
+        this.coalescerRegistry = coalescerRegistry;
+    }
+
+    // Builds the service chain once the properties have been injected: the
+    // configured provider, wrapped in the failover composite (with the other
+    // provider as secondary) when enabled, and then in the quote fallback layer.
+    // Replay never fails over, so a load test cannot reach a real provider.
+    @PostConstruct
+    void init() {
+        StockDataService providerService = switch (provider.toLowerCase()) {
+            case "fmp" -> fmpService;
+            case "replay" -> replayService;
+            default -> alphaService;
+        };
+        if (failoverEnabled && providerService != replayService) {
+            providerService = createFailoverService();
+        }
+        quoteService = new StaleWhileRevalidateStockDataService(providerService, priceHistoryRepository,
+                new CircuitBreaker("quotes", circuitFailureThreshold, circuitOpenMs, System::nanoTime),
+                coalescerRegistry.create("quotes.refresh"), Duration.ofSeconds(quoteFreshSeconds), lastKnownMaxSize,
+                Clock.systemUTC());
     }
 
-    // Returns the appropriate StockDataService implementation based on the provider
-    // property.
-    // Returns FMPStockDataService if the provider is "fmp", otherwise returns
-    // AlphaVantageStockDataService.
+    private FailoverStockDataService createFailoverService() {
+        hedgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "market-data-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean fmpPrimary = "fmp".equalsIgnoreCase(provider);
+        failoverService = new FailoverStockDataService(
+                fmpPrimary ? MarketDataRateLimiter.FMP : MarketDataRateLimiter.ALPHA_VANTAGE,
+                fmpPrimary ? fmpService : alphaService,
+                fmpPrimary ? MarketDataRateLimiter.ALPHA_VANTAGE : MarketDataRateLimiter.FMP,
+                fmpPrimary ? alphaService : fmpService,
+                hedgeScheduler, hedgePercentile, hedgeInitialDelayMs, hedgeMinDelayMs, failureThreshold, cooldownMs,
+                System::nanoTime);
+        return failoverService;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (hedgeScheduler != null) {
+            hedgeScheduler.shutdownNow();
+        }
+    }
+
+    // Returns the StockDataService used by the controllers: the provider selected
+    // by the provider property (or the failover composite when failover is
+    // enabled), with quotes served through the stale-while-revalidate layer.
     public StockDataService getService() {
-        return "fmp".equalsIgnoreCase(provider) ? fmpService : alphaService;
+        return quoteService;
+    }
+
+    // Per-provider health from the failover composite, or an empty map when
+    // failover is disabled.
+    public Map<String, Map<String, Object>> getProviderHealth() {
+        return failoverService != null ? failoverService.getHealthSnapshot() : Map.of();
+    }
+
+    // State of the circuit breaker in front of quote calls.
+    public Map<String, Object> getQuoteCircuitState() {
+        return quoteService.getCircuitBreaker().snapshot();
     }
-}
\ No newline at end of file
+}
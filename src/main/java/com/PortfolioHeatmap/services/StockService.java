@@ -68,10 +68,9 @@ public class StockService {
     }
 
     /**
-     * Searches stocks by ticker prefix using the latest price history per stock.
-     * Returns ticker, company name, and market cap, sorted by market cap
-     * descending,
-     * limited to 10 results. Uses a subquery to get each stock's latest entry.
+     * Searches stocks by ticker prefix using the latest close denormalised onto
+     * stocks. Returns ticker, company name, and market cap, sorted by market cap
+     * descending, limited to 10 results. Stocks without price history are left out.
      * 
      * @param prefix The ticker prefix to search (e.g., "T")
      * @return List of stock details (ticker, companyName, marketCap)
@@ -79,18 +78,11 @@ public class StockService {
     @Transactional(readOnly = true)
     public List<Map<String, Object>> searchStocksByPrefix(String prefix) {
         logger.info("Searching stocks with ticker prefix: {}", prefix);
-        // Query to get latest price history per stock with prefix
-        String sql = "SELECT s.ticker, s.company_name, ph.market_cap " +
+        // A primary key range scan over stocks; no join with price_history
+        String sql = "SELECT s.ticker, s.company_name, s.latest_market_cap " +
                 "FROM stocks s " +
-                "INNER JOIN price_history ph ON s.ticker = ph.stock_ticker " +
-                "INNER JOIN (" +
-                "    SELECT stock_ticker, MAX(date) as max_date " +
-                "    FROM price_history " +
-                "    WHERE stock_ticker LIKE :prefix " +
-                "    GROUP BY stock_ticker" +
-                ") latest ON ph.stock_ticker = latest.stock_ticker AND ph.date = latest.max_date " +
-                "WHERE s.ticker LIKE :prefix " +
-                "ORDER BY ph.market_cap DESC " +
+                "WHERE s.ticker LIKE :prefix AND s.latest_date IS NOT NULL " +
+                "ORDER BY s.latest_market_cap DESC " +
                 "LIMIT 10";
         Query query = entityManager.createNativeQuery(sql);
         query.setParameter("prefix", prefix + "%");
@@ -0,0 +1,105 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * A token bucket that hands out permits asynchronously. Tokens refill continuously at a fixed rate
+ * up to a burst capacity. A caller that finds the bucket empty gets an incomplete future that is
+ * completed by a scheduler thread once a token becomes available, so no caller thread is blocked
+ * while waiting. Waiting requests are granted strictly by priority, then in arrival order.
+ */
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+    // One queue of waiting requests per priority, indexed by ordinal
+    private final List<Deque<CompletableFuture<Void>>> waiting = new ArrayList<>();
+
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean drainScheduled;
+
+    TokenBucket(int requestsPerMinute, int burst, ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        if (requestsPerMinute <= 0) {
+            throw new IllegalArgumentException("requestsPerMinute must be positive");
+        }
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+        for (int i = 0; i < RequestPriority.values().length; i++) {
+            waiting.add(new ArrayDeque<>());
+        }
+    }
+
+    // Returns a future that completes when a token has been granted to the caller
+    synchronized CompletableFuture<Void> acquire(RequestPriority priority) {
+        refill();
+        if (waitingCount() == 0 && tokens >= 1) {
+            tokens -= 1;
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        waiting.get(priority.ordinal()).addLast(permit);
+        scheduleDrain();
+        return permit;
+    }
+
+    // Number of requests currently waiting for a token
+    synchronized int waitingCount() {
+        int count = 0;
+        for (Deque<CompletableFuture<Void>> queue : waiting) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    // Grants tokens to waiting requests in priority order. Futures are completed
+    // outside the lock because completing them runs the callers' continuations.
+    private void drain() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+            for (Deque<CompletableFuture<Void>> queue : waiting) {
+                while (tokens >= 1 && !queue.isEmpty()) {
+                    CompletableFuture<Void> permit = queue.pollFirst();
+                    if (!permit.isDone()) {
+                        tokens -= 1;
+                        granted.add(permit);
+                    }
+                }
+            }
+            if (waitingCount() > 0) {
+                scheduleDrain();
+            }
+        }
+        granted.forEach(permit -> permit.complete(null));
+    }
+
+    // Schedules a drain for the moment the next token becomes available
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        long delayNanos = (long) Math.ceil(Math.max(0, 1 - tokens) / tokensPerNano);
+        scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+        drainScheduled = true;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,141 @@
+package com.PortfolioHeatmap.services;
+
+/**
+ * The regular trading sessions of the US equity exchanges: weekdays from the opening to the
+ * closing bell in exchange time, except full-day holidays, with an earlier close on half days.
+ * Holidays and half days are configured as lists of dates since they are published a year or
+ * two ahead by the exchange. An error is logged at startup when the configured holidays end
+ * less than HOLIDAY_HORIZON_MONTHS ahead, since every later holiday would be treated as a
+ * trading day.
+ */
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+public class TradingSessionCalendar {
+    private static final Logger log = LoggerFactory.getLogger(TradingSessionCalendar.class);
+
+    // Guards against a misconfigured calendar that never opens
+    private static final int MAX_DAYS_SEARCHED = 30;
+    // How far ahead the configured holidays must reach
+    static final int HOLIDAY_HORIZON_MONTHS = 6;
+
+    private final ZoneId zone;
+    private final LocalTime open;
+    private final LocalTime close;
+    private final LocalTime earlyClose;
+    private final Set<LocalDate> holidays;
+    private final Set<LocalDate> earlyCloses;
+
+    public TradingSessionCalendar(@Value("${stock.data.session.zone:America/New_York}") String zone,
+            @Value("${stock.data.session.open:09:30}") String open,
+            @Value("${stock.data.session.close:16:00}") String close,
+            @Value("${stock.data.session.early-close:13:00}") String earlyClose,
+            @Value("${stock.data.session.holidays:}") String holidays,
+            @Value("${stock.data.session.early-close-days:}") String earlyCloses) {
+        this.zone = ZoneId.of(zone);
+        this.open = LocalTime.parse(open);
+        this.close = LocalTime.parse(close);
+        this.earlyClose = LocalTime.parse(earlyClose);
+        this.holidays = parseDates(holidays);
+        this.earlyCloses = parseDates(earlyCloses);
+        LocalDate horizon = LocalDate.now(this.zone).plusMonths(HOLIDAY_HORIZON_MONTHS);
+        if (!coversHolidaysThrough(horizon)) {
+            log.error("stock.data.session.holidays ends at {}, before {}; add the exchange's next holidays, or "
+                    + "later holidays will be treated as trading days", lastHoliday(), horizon);
+        }
+    }
+
+    // True when the configured holidays reach the date, i.e. the last one is on
+    // or after it
+    public boolean coversHolidaysThrough(LocalDate date) {
+        LocalDate last = lastHoliday();
+        return last != null && !last.isBefore(date);
+    }
+
+    private LocalDate lastHoliday() {
+        return holidays.isEmpty() ? null : Collections.max(holidays);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public boolean isTradingDay(LocalDate date) {
+        return date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY
+                && !holidays.contains(date);
+    }
+
+    // True between the opening and closing bell of a trading day
+    public boolean isOpen(Instant instant) {
+        ZonedDateTime local = instant.atZone(zone);
+        LocalDate date = local.toLocalDate();
+        return isTradingDay(date) && !instant.isBefore(sessionOpen(date)) && instant.isBefore(sessionClose(date));
+    }
+
+    // The first session open after the given instant
+    public Instant nextOpen(Instant instant) {
+        LocalDate date = instant.atZone(zone).toLocalDate();
+        for (int i = 0; i <= MAX_DAYS_SEARCHED; i++) {
+            LocalDate candidate = date.plusDays(i);
+            if (isTradingDay(candidate) && sessionOpen(candidate).isAfter(instant)) {
+                return sessionOpen(candidate);
+            }
+        }
+        throw new IllegalStateException("No trading session within " + MAX_DAYS_SEARCHED + " days of " + instant);
+    }
+
+    // The most recent session close at or before the given instant
+    public Instant previousClose(Instant instant) {
+        LocalDate date = instant.atZone(zone).toLocalDate();
+        for (int i = 0; i <= MAX_DAYS_SEARCHED; i++) {
+            LocalDate candidate = date.minusDays(i);
+            if (isTradingDay(candidate) && !sessionClose(candidate).isAfter(instant)) {
+                return sessionClose(candidate);
+            }
+        }
+        throw new IllegalStateException("No trading session within " + MAX_DAYS_SEARCHED + " days of " + instant);
+    }
+
+    // The trading day of the most recent session that has opened at or before the
+    // given instant; before Monday's open this is the previous Friday
+    public LocalDate currentSession(Instant instant) {
+        LocalDate date = instant.atZone(zone).toLocalDate();
+        for (int i = 0; i <= MAX_DAYS_SEARCHED; i++) {
+            LocalDate candidate = date.minusDays(i);
+            if (isTradingDay(candidate) && !sessionOpen(candidate).isAfter(instant)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No trading session within " + MAX_DAYS_SEARCHED + " days of " + instant);
+    }
+
+    public Instant sessionOpen(LocalDate date) {
+        return date.atTime(open).atZone(zone).toInstant();
+    }
+
+    public Instant sessionClose(LocalDate date) {
+        return date.atTime(earlyCloses.contains(date) ? earlyClose : close).atZone(zone).toInstant();
+    }
+
+    private static Set<LocalDate> parseDates(String dates) {
+        return Arrays.stream(dates.split(","))
+                .map(String::trim)
+                .filter(date -> !date.isEmpty())
+                .map(LocalDate::parse)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
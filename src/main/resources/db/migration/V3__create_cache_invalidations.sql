@@ -0,0 +1,10 @@
+-- Cache invalidations shared between application instances (see JdbcCacheInvalidationTransport)
+CREATE TABLE IF NOT EXISTS cache_invalidations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    origin VARCHAR(64) NOT NULL,
+    kind VARCHAR(16) NOT NULL,
+    cache_name VARCHAR(64) NOT NULL,
+    cache_key VARCHAR(255),
+    created_at TIMESTAMP(3) NOT NULL,
+    INDEX idx_cache_invalidations_created_at (created_at)
+);
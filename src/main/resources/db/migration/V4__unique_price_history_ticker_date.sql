@@ -0,0 +1,15 @@
+-- One price history entry per stock and day, so bulk writes can upsert on the key
+-- (see CustomPriceHistoryRepositoryImpl). Duplicates keep their earliest row.
+-- Runs on every startup (spring.sql.init), so the key is only added when missing.
+DELETE newer FROM price_history newer
+JOIN price_history older
+  ON older.stock_ticker = newer.stock_ticker AND older.date = newer.date AND older.id < newer.id;
+SET @add_unique_key = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE price_history ADD CONSTRAINT uk_price_history_ticker_date UNIQUE (stock_ticker, date)',
+    'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'price_history'
+      AND index_name = 'uk_price_history_ticker_date');
+PREPARE add_unique_key FROM @add_unique_key;
+EXECUTE add_unique_key;
+DEALLOCATE PREPARE add_unique_key;
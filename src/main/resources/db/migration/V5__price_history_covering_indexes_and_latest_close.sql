@@ -0,0 +1,31 @@
+-- Covering index for per-ticker ordered lookups (latest close, close before a date,
+-- PriceSeriesStore loads): the unique key from V4 finds the rows, and closing_price and
+-- market_cap are read from the index without visiting the table.
+-- Runs on every startup (spring.sql.init), so each change is only applied when missing.
+SET @add_covering_index = (SELECT IF(COUNT(*) = 0,
+    'CREATE INDEX idx_price_history_ticker_date_close ON price_history (stock_ticker, date, closing_price, market_cap)',
+    'DO 0')
+    FROM information_schema.statistics
+    WHERE table_schema = DATABASE() AND table_name = 'price_history'
+      AND index_name = 'idx_price_history_ticker_date_close');
+PREPARE add_covering_index FROM @add_covering_index;
+EXECUTE add_covering_index;
+DEALLOCATE PREPARE add_covering_index;
+
+-- Latest stored close per stock, kept current by CustomPriceHistoryRepositoryImpl, so
+-- ticker search reads stocks alone instead of grouping price_history
+SET @add_latest_columns = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE stocks ADD COLUMN latest_date DATE NULL, ADD COLUMN latest_close DOUBLE NULL, ADD COLUMN latest_market_cap BIGINT NULL',
+    'DO 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'stocks' AND column_name = 'latest_date');
+PREPARE add_latest_columns FROM @add_latest_columns;
+EXECUTE add_latest_columns;
+DEALLOCATE PREPARE add_latest_columns;
+
+-- Backfills only stocks that have never been refreshed
+UPDATE stocks s
+JOIN price_history ph ON ph.stock_ticker = s.ticker
+    AND ph.date = (SELECT MAX(p2.date) FROM price_history p2 WHERE p2.stock_ticker = s.ticker)
+SET s.latest_date = ph.date, s.latest_close = ph.closing_price, s.latest_market_cap = ph.market_cap
+WHERE s.latest_date IS NULL;
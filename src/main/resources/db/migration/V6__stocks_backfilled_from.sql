@@ -0,0 +1,12 @@
+-- Earliest date the provider has been asked for each stock's history, kept by
+-- CustomPriceHistoryRepositoryImpl, so backfill does not re-request an older range that came
+-- back empty (for example before an IPO) until price-history.backfill.years is raised.
+-- Runs on every startup (spring.sql.init), so the column is only added when missing.
+SET @add_backfilled_from = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE stocks ADD COLUMN backfilled_from DATE NULL',
+    'DO 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'stocks' AND column_name = 'backfilled_from');
+PREPARE add_backfilled_from FROM @add_backfilled_from;
+EXECUTE add_backfilled_from;
+DEALLOCATE PREPARE add_backfilled_from;
@@ -0,0 +1,113 @@
+package com.PortfolioHeatmap.controllers;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.models.Stock;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
+import com.PortfolioHeatmap.services.PriceHistoryService;
+import com.PortfolioHeatmap.services.SeriesRollupService;
+import com.PortfolioHeatmap.services.StockDataService;
+import com.PortfolioHeatmap.services.StockDataServiceFactory;
+import com.PortfolioHeatmap.services.StockService;
+
+class StockControllerTest {
+    private StockService stockService;
+    private StockDataService stockDataService;
+    private PriceHistoryRepository priceHistoryRepository;
+    private PriceHistoryService priceHistoryService;
+    private StockController stockController;
+
+    @BeforeEach
+    void setUp() {
+        stockService = mock(StockService.class);
+        stockDataService = mock(StockDataService.class);
+        StockDataServiceFactory factory = mock(StockDataServiceFactory.class);
+        when(factory.getService()).thenReturn(stockDataService);
+        priceHistoryRepository = mock(PriceHistoryRepository.class);
+        priceHistoryService = mock(PriceHistoryService.class);
+        stockController = new StockController(stockService, factory, priceHistoryRepository, priceHistoryService,
+                mock(SeriesRollupService.class), 1);
+    }
+
+    @Test
+    void populateAllStoresMarketCapAndPeRatioFromBatchQuotes() {
+        // Arrange: AAPL has no history yet, MSFT is up to date
+        LocalDate today = LocalDate.now();
+        Stock apple = stock("AAPL", null);
+        Stock microsoft = stock("MSFT", today);
+        when(stockService.getAllStocks(Pageable.unpaged())).thenReturn(new PageImpl<>(List.of(apple, microsoft)));
+        when(priceHistoryRepository.findEarliestDates())
+                .thenReturn(List.<Object[]>of(new Object[] { "MSFT", today.minusYears(1) }));
+        StockPrice quote = new StockPrice("AAPL", 241.84);
+        quote.setMarketCap(3_633_000_000_000L);
+        quote.setPeRatio(38.4);
+        when(stockDataService.getBatchQuotesAsync(List.of("AAPL")))
+                .thenReturn(CompletableFuture.completedFuture(new BatchQuoteResult(List.of(quote), Map.of())));
+        when(stockDataService.getDailySeriesAsync(eq("AAPL"), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new OhlcvSeries("AAPL",
+                        new int[] { (int) today.minusDays(1).toEpochDay() }, new double[] { 240.0 },
+                        new double[] { 242.0 }, new double[] { 239.0 }, new double[] { 241.0 },
+                        new long[] { 1_000 })));
+        when(priceHistoryService.upsertAll(anyList()))
+                .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+
+        // Act
+        stockController.populateAllPriceHistories();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PriceHistory>> written = ArgumentCaptor.forClass(List.class);
+        verify(priceHistoryService, times(1)).upsertAll(written.capture());
+        PriceHistory row = written.getValue().get(0);
+        assertEquals("AAPL", row.getStock().getTicker());
+        assertEquals(3_633_000_000_000L, row.getMarketCap());
+        assertEquals(38.4, row.getPeRatio());
+        // MSFT has nothing to download, so it costs neither a series nor a quote
+        verify(stockDataService, never()).getDailySeriesAsync(eq("MSFT"), any(), any());
+        verify(stockDataService, never()).getStockPriceAsync(anyString());
+        // AAPL was asked for the whole window, so it is not asked for it again
+        verify(priceHistoryRepository, times(1)).markBackfilledFrom("AAPL", today.minusYears(1));
+        verify(priceHistoryRepository, never()).markBackfilledFrom(eq("MSFT"), any());
+    }
+
+    @Test
+    void populateAllMakesNoProviderCallsWhenNothingIsMissing() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        when(stockService.getAllStocks(Pageable.unpaged()))
+                .thenReturn(new PageImpl<>(List.of(stock("AAPL", today))));
+        when(priceHistoryRepository.findEarliestDates())
+                .thenReturn(List.<Object[]>of(new Object[] { "AAPL", today.minusYears(1) }));
+
+        // Act
+        stockController.populateAllPriceHistories();
+
+        // Assert
+        verifyNoInteractions(stockDataService);
+    }
+
+    private static Stock stock(String ticker, LocalDate latestDate) {
+        Stock stock = new Stock();
+        stock.setTicker(ticker);
+        stock.setCompanyName(ticker);
+        stock.setLatestDate(latestDate);
+        return stock;
+    }
+}
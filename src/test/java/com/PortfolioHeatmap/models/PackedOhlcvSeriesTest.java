@@ -0,0 +1,94 @@
+package com.PortfolioHeatmap.models;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PackedOhlcvSeriesTest {
+
+    @Test
+    void packsCentPricesLosslesslyInAFractionOfTheHeap() {
+        // Arrange
+        int days = 1260;
+        OhlcvSeries series = syntheticSeries(days, 2);
+
+        // Act
+        PackedOhlcvSeries packed = PackedOhlcvSeries.pack(series, false);
+        OhlcvSeries unpacked = packed.unpack();
+
+        // Assert
+        assertSameRows(series, unpacked);
+        assertTrue(packed.estimatedBytes() * 3 < series.estimatedBytes(),
+                packed.estimatedBytes() + " vs " + series.estimatedBytes());
+    }
+
+    @Test
+    void keepsMissingValuesAndFallsBackToRawDoubles() {
+        // Arrange
+        OhlcvSeries series = new OhlcvSeries("BRK.A", new int[] { 20146, 20147, 20150 },
+                new double[] { Double.NaN, 1.0 / 3, 701_230.5 }, new double[] { 2, Math.PI, 702_000 },
+                new double[] { 0.5, 0.25, Double.NaN }, new double[] { 1.75, 0.3, 701_999.99 },
+                new long[] { 100, OhlcvSeries.MISSING_VOLUME, 2_500_000_000L });
+
+        // Act
+        OhlcvSeries unpacked = PackedOhlcvSeries.pack(series, true).unpack();
+
+        // Assert
+        assertSameRows(series, unpacked);
+        assertEquals("BRK.A", unpacked.getSymbol());
+    }
+
+    @Test
+    void deflatesWhenAsked() {
+        // Arrange
+        OhlcvSeries series = syntheticSeries(1260, 4);
+
+        // Act
+        PackedOhlcvSeries deflated = PackedOhlcvSeries.pack(series, true);
+        PackedOhlcvSeries plain = PackedOhlcvSeries.pack(series, false);
+
+        // Assert
+        assertTrue(deflated.isDeflated());
+        assertTrue(deflated.estimatedBytes() < plain.estimatedBytes());
+        assertSameRows(series, deflated.unpack());
+    }
+
+    // Weekday rows with a slow random walk quoted to the given decimals
+    private static OhlcvSeries syntheticSeries(int days, int decimals) {
+        double scale = Math.pow(10, decimals);
+        int[] epochDays = new int[days];
+        double[] open = new double[days];
+        double[] high = new double[days];
+        double[] low = new double[days];
+        double[] close = new double[days];
+        long[] volume = new long[days];
+        Random random = new Random(42);
+        int day = 18_000;
+        double price = 150;
+        for (int i = 0; i < days; i++) {
+            day += (day % 7 == 1) ? 3 : 1;
+            epochDays[i] = day;
+            price = Math.max(1, price + random.nextGaussian() * 2);
+            open[i] = Math.round(price * scale) / scale;
+            high[i] = Math.round((price + random.nextDouble() * 3) * scale) / scale;
+            low[i] = Math.round((price - random.nextDouble() * 3) * scale) / scale;
+            close[i] = Math.round((price + random.nextGaussian()) * scale) / scale;
+            volume[i] = 40_000_000L + random.nextInt(30_000_000);
+        }
+        return new OhlcvSeries("AAPL", epochDays, open, high, low, close, volume);
+    }
+
+    private static void assertSameRows(OhlcvSeries expected, OhlcvSeries actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getEpochDay(i), actual.getEpochDay(i));
+            assertEquals(expected.getOpen(i), actual.getOpen(i));
+            assertEquals(expected.getHigh(i), actual.getHigh(i));
+            assertEquals(expected.getLow(i), actual.getLow(i));
+            assertEquals(expected.getClose(i), actual.getClose(i));
+            assertEquals(expected.getVolume(i), actual.getVolume(i));
+        }
+    }
+}
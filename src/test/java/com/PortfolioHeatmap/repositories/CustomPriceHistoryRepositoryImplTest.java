@@ -0,0 +1,81 @@
+package com.PortfolioHeatmap.repositories;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.models.Stock;
+
+class CustomPriceHistoryRepositoryImplTest {
+
+    private static List<PriceHistory> appleHistory(int days) {
+        Stock stock = new Stock();
+        stock.setTicker("AAPL");
+        List<PriceHistory> priceHistories = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            PriceHistory priceHistory = new PriceHistory();
+            priceHistory.setStock(stock);
+            priceHistory.setDate(LocalDate.of(2025, 3, 3).plusDays(day));
+            priceHistory.setClosingPrice(238.03 + day);
+            priceHistories.add(priceHistory);
+        }
+        return priceHistories;
+    }
+
+    private static void uniqueKeyCount(JdbcTemplate jdbcTemplate, int count) {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class),
+                eq(CustomPriceHistoryRepositoryImpl.UNIQUE_KEY))).thenReturn(count);
+    }
+
+    @Test
+    void upsertsInMultiRowBatches() {
+        // Arrange
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CustomPriceHistoryRepositoryImpl repository = new CustomPriceHistoryRepositoryImpl(jdbcTemplate, 2);
+        uniqueKeyCount(jdbcTemplate, 1);
+        List<PriceHistory> priceHistories = appleHistory(5);
+
+        // Act
+        int written = repository.upsertAll(priceHistories);
+
+        // Assert
+        assertEquals(5, written);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> arguments = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(4)).update(sql.capture(), arguments.capture());
+        assertEquals(CustomPriceHistoryRepositoryImpl.upsertSql(2), sql.getAllValues().get(0));
+        assertEquals(CustomPriceHistoryRepositoryImpl.upsertSql(1), sql.getAllValues().get(2));
+        assertTrue(sql.getAllValues().get(2).contains("ON DUPLICATE KEY UPDATE"));
+        assertEquals(10, arguments.getAllValues().get(0).length);
+        assertEquals(5, arguments.getAllValues().get(2).length);
+        assertEquals("AAPL", arguments.getAllValues().get(2)[0]);
+        // Then one refresh of the ticker's latest close on stocks
+        assertTrue(sql.getValue().startsWith("UPDATE stocks"));
+        assertArrayEquals(new Object[] { "AAPL" }, arguments.getValue());
+    }
+
+    @Test
+    void refusesUpsertsWithoutTheUniqueKey() {
+        // Arrange
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CustomPriceHistoryRepositoryImpl repository = new CustomPriceHistoryRepositoryImpl(jdbcTemplate, 2);
+        uniqueKeyCount(jdbcTemplate, 0);
+
+        // Act
+        boolean present = repository.checkUniqueKey();
+
+        // Assert
+        assertFalse(present);
+        assertThrows(IllegalStateException.class, () -> repository.upsertAll(appleHistory(1)));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+}
@@ -0,0 +1,78 @@
+package com.PortfolioHeatmap.repositories;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Checks that the hot price history queries are answered from an index rather than by sorting a
+ * ticker's whole history. Runs only against a MySQL database with migrations V4 and V5 applied,
+ * named by EXPLAIN_DB_URL (with EXPLAIN_DB_USERNAME and EXPLAIN_DB_PASSWORD).
+ */
+@EnabledIfEnvironmentVariable(named = "EXPLAIN_DB_URL", matches = ".+")
+class PriceHistoryQueryPlanTest {
+    private static final List<String> INDEX_ACCESS = List.of("const", "eq_ref", "ref", "range");
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getenv("EXPLAIN_DB_URL"),
+                System.getenv("EXPLAIN_DB_USERNAME"), System.getenv("EXPLAIN_DB_PASSWORD"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void latestCloseUsesTheTickerDateIndex() {
+        Map<String, Object> plan = assertIndexRangeScan(
+                "SELECT * FROM price_history WHERE stock_ticker = ? ORDER BY date DESC LIMIT 1", "AAPL");
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void closeBeforeDateUsesTheTickerDateIndex() {
+        Map<String, Object> plan = assertIndexRangeScan("SELECT * FROM price_history WHERE stock_ticker = ? "
+                + "AND date < ? ORDER BY date DESC LIMIT 1", "AAPL", LocalDate.of(2025, 3, 3));
+        assertNoFilesort(plan);
+    }
+
+    @Test
+    void seriesReloadIsCoveredByTheIndex() {
+        Map<String, Object> plan = assertIndexRangeScan("SELECT stock_ticker, date, closing_price FROM price_history "
+                + "WHERE stock_ticker = ? AND closing_price IS NOT NULL ORDER BY date", "AAPL");
+        assertTrue(String.valueOf(plan.get("Extra")).contains("Using index"), plan.toString());
+        assertNoFilesort(plan);
+    }
+
+    // Sorting the few matching stocks by market cap is expected here
+    @Test
+    void tickerSearchScansOnlyMatchingStocks() {
+        assertIndexRangeScan("SELECT s.ticker, s.company_name, s.latest_market_cap FROM stocks s "
+                + "WHERE s.ticker LIKE ? AND s.latest_date IS NOT NULL ORDER BY s.latest_market_cap DESC LIMIT 10",
+                "AA%");
+    }
+
+    // Asserts the query reads its single table through an index range or lookup,
+    // and returns the plan row
+    private Map<String, Object> assertIndexRangeScan(String sql, Object... arguments) {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, arguments);
+        assertEquals(1, plan.size(), plan.toString());
+        Map<String, Object> row = plan.get(0);
+        assertTrue(INDEX_ACCESS.contains(String.valueOf(row.get("type"))), row.toString());
+        assertNotNull(row.get("key"), row.toString());
+        return row;
+    }
+
+    // The index order already matches ORDER BY date
+    private static void assertNoFilesort(Map<String, Object> plan) {
+        assertFalse(String.valueOf(plan.get("Extra")).contains("Using filesort"), plan.toString());
+    }
+}
@@ -0,0 +1,80 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.client.RestTemplate;
+
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.StockPrice;
+
+class AlphaVantageStockDataServiceTest {
+    private RestTemplate restTemplate;
+    private AlphaVantageStockDataService service;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        service = new AlphaVantageStockDataService(restTemplate, new SimpleAsyncTaskExecutor(),
+                new MarketDataRateLimiter(6000, 100, 6000, 100), "demo", 4, true, 100);
+    }
+
+    @Test
+    void requestsFullOutputForLongRangesAndRejectsCompactTruncation() {
+        // Arrange: a compact answer whose history starts a week ago
+        LocalDate today = LocalDate.now();
+        String body = "{\"Meta Data\":{\"4. Output Size\":\"Compact\"},\"Time Series (Daily)\":{\""
+                + today.minusDays(7) + "\":{\"1. open\":\"240.0\",\"2. high\":\"242.0\",\"3. low\":\"239.0\","
+                + "\"4. close\":\"241.0\",\"5. volume\":\"1000\"}}}";
+        when(restTemplate.getForObject(anyString(), eq(String.class))).thenReturn(body);
+
+        // Act
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> service.getDailySeries("AAPL", today.minusYears(1), today));
+        OhlcvSeries recent = service.getDailySeries("AAPL", today.minusDays(10), today);
+
+        // Assert
+        assertTrue(error.getMessage().contains("only from"), error.getMessage());
+        assertEquals(1, recent.size());
+        verify(restTemplate).getForObject(contains("outputsize=full"), eq(String.class));
+        verify(restTemplate).getForObject(contains("outputsize=compact"), eq(String.class));
+    }
+
+    private static String globalQuote(String symbol, double price) {
+        return "{\"Global Quote\":{\"01. symbol\":\"" + symbol + "\",\"02. open\":\"" + price
+                + "\",\"03. high\":\"" + price + "\",\"04. low\":\"" + price + "\",\"05. price\":\"" + price
+                + "\",\"08. previous close\":\"" + price + "\"}}";
+    }
+
+    @Test
+    void onlyAnUnsupportedFunctionTurnsBulkQuotesOff() {
+        // Arrange: throttled once, then told the function does not exist
+        List<String> symbols = List.of("AAPL", "MSFT");
+        when(restTemplate.getForObject(contains("BATCH_STOCK_QUOTES"), eq(String.class))).thenReturn(
+                "{\"Note\":\"Our standard API call frequency is 5 calls per minute.\"}",
+                "{\"Error Message\":\"This API function (BATCH_STOCK_QUOTES) does not exist.\"}");
+        when(restTemplate.getForObject(contains("symbol=AAPL"), eq(String.class)))
+                .thenReturn(globalQuote("AAPL", 241.84));
+        when(restTemplate.getForObject(contains("symbol=MSFT"), eq(String.class)))
+                .thenReturn(globalQuote("MSFT", 396.99));
+
+        // Act
+        List<StockPrice> throttled = service.getBatchStockPrices(symbols);
+        service.getBatchStockPrices(symbols);
+        List<StockPrice> disabled = service.getBatchStockPrices(symbols);
+
+        // Assert: both failed chunks fell back to single quotes, and only the
+        // unsupported function stopped the third call from trying the bulk endpoint
+        assertEquals(2, throttled.size());
+        assertEquals(2, disabled.size());
+        verify(restTemplate, times(2)).getForObject(contains("BATCH_STOCK_QUOTES"), eq(String.class));
+        verify(restTemplate, times(3)).getForObject(contains("symbol=AAPL"), eq(String.class));
+    }
+}
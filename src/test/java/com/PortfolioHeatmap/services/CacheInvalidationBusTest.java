@@ -0,0 +1,70 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.PortfolioHeatmap.config.CacheConfig;
+
+class CacheInvalidationBusTest {
+    private CacheInvalidationBus busA;
+    private CacheManager nodeA;
+    private CacheManager nodeB;
+
+    // Two application instances whose caches share one loopback transport
+    @BeforeEach
+    void setUp() {
+        LoopbackCacheInvalidationTransport transport = new LoopbackCacheInvalidationTransport();
+        busA = new CacheInvalidationBus(transport, "node-a");
+        nodeA = newCacheManager(busA);
+        nodeB = newCacheManager(new CacheInvalidationBus(transport, "node-b"));
+    }
+
+    private static CacheManager newCacheManager(CacheInvalidationBus bus) {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "defaultSpec", "maximumSize=500,expireAfterWrite=5m");
+        return cacheConfig.cacheManager(new MockEnvironment(),
+                new TradingSessionCalendar("America/New_York", "09:30", "16:00", "13:00", "", ""), bus);
+    }
+
+    @Test
+    void evictionOnOneNodeEvictsOnEveryNode() {
+        // Arrange
+        nodeA.getCache("priceHistoryByDate").put("AAPL-2025-02-28", 237.3);
+        nodeB.getCache("priceHistoryByDate").put("AAPL-2025-02-28", 237.3);
+        nodeB.getCache("priceHistoryByDate").put("MSFT-2025-02-28", 396.99);
+        nodeB.getCache("priceHistory").put("AAPL-0-20", "page");
+
+        // Act
+        nodeA.getCache("priceHistoryByDate").evict("AAPL-2025-02-28");
+        nodeA.getCache("priceHistory").clear();
+
+        // Assert
+        assertNull(nodeA.getCache("priceHistoryByDate").get("AAPL-2025-02-28"));
+        assertNull(nodeB.getCache("priceHistoryByDate").get("AAPL-2025-02-28"));
+        assertNotNull(nodeB.getCache("priceHistoryByDate").get("MSFT-2025-02-28"));
+        assertNull(nodeB.getCache("priceHistory").get("AAPL-0-20"));
+        assertEquals(2L, busA.getStats().get("published"));
+        assertEquals(0L, busA.getStats().get("received"));
+    }
+
+    @Test
+    void tickerEvictionReachesKeysOnlyTheOtherNodeHolds() {
+        // Arrange
+        PriceHistoryCacheInvalidator invalidatorA = new PriceHistoryCacheInvalidator(nodeA, busA);
+        nodeB.getCache("priceHistoryByDate").put("AAPL-2025-02-28", 237.3);
+        nodeB.getCache("priceHistoryByDate").put("AMZN-2025-02-28", 208.36);
+
+        // Act
+        int evictedOnA = invalidatorA.evictTicker("AAPL");
+
+        // Assert
+        assertEquals(0, evictedOnA);
+        assertNull(nodeB.getCache("priceHistoryByDate").get("AAPL-2025-02-28"));
+        assertNotNull(nodeB.getCache("priceHistoryByDate").get("AMZN-2025-02-28"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.CacheManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.PortfolioHeatmap.config.CacheConfig;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.PackedOhlcvSeries;
+import com.PortfolioHeatmap.models.StockPrice;
+
+class CacheSnapshotServiceTest {
+    @TempDir
+    Path snapshotDir;
+
+    private static CacheManager newCacheManager() {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "defaultSpec", "maximumSize=500,expireAfterWrite=5m");
+        ReflectionTestUtils.setField(cacheConfig, "intradayTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cacheConfig, "closeSettleMinutes", 5L);
+        return cacheConfig.cacheManager(new MockEnvironment(),
+                new TradingSessionCalendar("America/New_York", "09:30", "16:00", "13:00", "", ""),
+                new CacheInvalidationBus(new LoopbackCacheInvalidationTransport(), "test"));
+    }
+
+    @Test
+    void restoresQuotesAndTodaysSeriesAfterRestart() {
+        // Arrange
+        String file = snapshotDir.resolve("market-data.bin").toString();
+        CacheManager before = newCacheManager();
+        StockPrice quote = new StockPrice("AAPL", 241.84);
+        quote.setMarketCap(3_633_000_000_000L);
+        before.getCache("stockPrice").put("AAPL", quote);
+        OhlcvSeries series = new OhlcvSeries("AAPL", new int[] { 20146, 20147 }, new double[] { 1, 2 },
+                new double[] { 3, 4 }, new double[] { 0.5, 1.5 }, new double[] { 2, 3 }, new long[] { 100, -1 });
+        before.getCache("ohlcvSeries").put("AAPL", new FMPStockDataService.SeriesEntry(LocalDate.now(), series));
+        before.getCache("ohlcvSeries").put("MSFT",
+                new FMPStockDataService.SeriesEntry(LocalDate.now().minusDays(1), series));
+        int written = new CacheSnapshotService(before, file, true).snapshot();
+
+        // Act
+        CacheManager after = newCacheManager();
+        int restored = new CacheSnapshotService(after, file, true).restore();
+
+        // Assert
+        assertEquals(3, written);
+        assertEquals(2, restored);
+        StockPrice restoredQuote = after.getCache("stockPrice").get("AAPL", StockPrice.class);
+        assertEquals(241.84, restoredQuote.getPrice());
+        assertEquals(3_633_000_000_000L, restoredQuote.getMarketCap());
+        assertNull(restoredQuote.getPeRatio());
+        FMPStockDataService.SeriesEntry restoredSeries = after.getCache("ohlcvSeries")
+                .get("AAPL", FMPStockDataService.SeriesEntry.class);
+        assertEquals(2, restoredSeries.series().size());
+        assertEquals(3.0, restoredSeries.series().getClose(1));
+        assertEquals(OhlcvSeries.MISSING_VOLUME, restoredSeries.series().getVolume(1));
+        assertNull(after.getCache("ohlcvSeries").get("MSFT"));
+    }
+
+    @Test
+    void restoresEndedMonthSegmentsDownloadedOnEarlierDays() {
+        // Arrange
+        String file = snapshotDir.resolve("market-data.bin").toString();
+        CacheManager before = newCacheManager();
+        YearMonth lastYear = YearMonth.now().minusYears(1);
+        OhlcvSeries segment = new OhlcvSeries("AAPL", new int[] { (int) lastYear.atDay(2).toEpochDay() },
+                new double[] { 1 }, new double[] { 3 }, new double[] { 0.5 }, new double[] { 2 }, new long[] { 100 });
+        LocalDate lastWeek = LocalDate.now().minusWeeks(1);
+        before.getCache("ohlcvSeries").put(FMPStockDataService.segmentKey("AAPL", lastYear),
+                new FMPStockDataService.SeriesEntry(lastWeek, PackedOhlcvSeries.pack(segment, true),
+                        FMPStockDataService.SeriesEntry.isComplete(lastYear, lastWeek)));
+        new CacheSnapshotService(before, file, true).snapshot();
+
+        // Act
+        CacheManager after = newCacheManager();
+        int restored = new CacheSnapshotService(after, file, true).restore();
+
+        // Assert
+        assertEquals(1, restored);
+        FMPStockDataService.SeriesEntry restoredSegment = after.getCache("ohlcvSeries")
+                .get(FMPStockDataService.segmentKey("AAPL", lastYear), FMPStockDataService.SeriesEntry.class);
+        assertTrue(restoredSegment.complete());
+        assertEquals(2.0, restoredSegment.series().getClose(0));
+    }
+
+    @Test
+    void ignoresFileWithUnknownFormat() throws Exception {
+        // Arrange
+        Path file = snapshotDir.resolve("market-data.bin");
+        Files.writeString(file, "not a snapshot file");
+
+        // Act
+        int restored = new CacheSnapshotService(newCacheManager(), file.toString(), true).restore();
+
+        // Assert
+        assertEquals(0, restored);
+    }
+}
@@ -0,0 +1,86 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.PortfolioHeatmap.config.CacheConfig;
+import com.PortfolioHeatmap.config.CacheSizeEstimator;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+
+class CacheStatsServiceTest {
+    private CacheManager cacheManager;
+    private CacheStatsService cacheStatsService;
+
+    @BeforeEach
+    void setUp() {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "defaultSpec", "maximumSize=500,expireAfterWrite=5m");
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("cache.specs.stockPrice", "maximumSize=2,expireAfterWrite=60s");
+        cacheManager = cacheConfig.cacheManager(environment,
+                new TradingSessionCalendar("America/New_York", "09:30", "16:00", "13:00", "", ""),
+                new CacheInvalidationBus(new LoopbackCacheInvalidationTransport(), "test"));
+        cacheStatsService = new CacheStatsService(cacheManager);
+    }
+
+    @Test
+    void reportsHitRatioAndPerCacheBounds() {
+        // Arrange
+        Cache stockPrice = cacheManager.getCache("stockPrice");
+        stockPrice.put("AAPL", 241.84);
+
+        // Act
+        stockPrice.get("AAPL");
+        stockPrice.get("MSFT");
+        Map<String, Object> stats = cacheStatsService.getStats().get("stockPrice");
+
+        // Assert
+        assertEquals(1L, stats.get("hitCount"));
+        assertEquals(1L, stats.get("missCount"));
+        assertEquals(0.5, stats.get("hitRatio"));
+        assertEquals(2L, stats.get("maximum"));
+        assertEquals(false, stats.get("weighted"));
+    }
+
+    @Test
+    void weighsSeriesCacheInEstimatedBytes() {
+        // Arrange
+        Cache ohlcvSeries = cacheManager.getCache("ohlcvSeries");
+        int days = 1000;
+        OhlcvSeries series = new OhlcvSeries("AAPL", new int[days], new double[days], new double[days],
+                new double[days], new double[days], new long[days]);
+
+        // Act
+        ohlcvSeries.put("AAPL", series);
+        Map<String, Object> stats = cacheStatsService.getStats().get("ohlcvSeries");
+
+        // Assert
+        assertEquals(true, stats.get("weighted"));
+        assertTrue((Long) stats.get("estimatedBytes") >= series.estimatedBytes());
+    }
+
+    @Test
+    void weighsCachedSeriesEntriesByTheirPackedSize() {
+        // Arrange
+        int days = 1000;
+        FMPStockDataService.SeriesEntry entry = new FMPStockDataService.SeriesEntry(LocalDate.now(),
+                new OhlcvSeries("AAPL", new int[days], new double[days], new double[days], new double[days],
+                        new double[days], new long[days]));
+
+        // Act
+        long bytes = CacheSizeEstimator.estimateBytes(entry);
+
+        // Assert
+        assertEquals(entry.estimatedBytes(), bytes);
+        assertTrue(bytes > entry.packed().estimatedBytes());
+    }
+}
@@ -0,0 +1,71 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.PortfolioHeatmap.repositories.PortfolioHoldingRepository;
+
+class CacheWarmupServiceTest {
+    private StockDataService stockDataService;
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+    private PriceSeriesStore priceSeriesStore;
+    private ReferencePriceTable referencePriceTable;
+    private CacheWarmupService cacheWarmupService;
+
+    @BeforeEach
+    void setUp() {
+        stockDataService = mock(StockDataService.class);
+        StockDataServiceFactory factory = mock(StockDataServiceFactory.class);
+        when(factory.getService()).thenReturn(stockDataService);
+        portfolioHoldingRepository = mock(PortfolioHoldingRepository.class);
+        priceSeriesStore = mock(PriceSeriesStore.class);
+        referencePriceTable = mock(ReferencePriceTable.class);
+        cacheWarmupService = new CacheWarmupService(factory, portfolioHoldingRepository, priceSeriesStore,
+                referencePriceTable, new TradingSessionCalendar("America/New_York", "09:30", "16:00", "13:00", "", ""),
+                true, 5_000);
+    }
+
+    @Test
+    void batchesQuotesAndStoredPricesForHeldTickers() {
+        // Arrange
+        List<String> tickers = List.of("AAPL", "MSFT");
+        when(stockDataService.getSP500Constituents()).thenReturn(List.of());
+        when(portfolioHoldingRepository.findDistinctOpenTickers()).thenReturn(tickers);
+        when(stockDataService.getBatchQuotesAsync(tickers)).thenReturn(CompletableFuture.completedFuture(
+                new BatchQuoteResult(List.of(new StockPrice("AAPL", 241.84), new StockPrice("MSFT", 396.99)),
+                        Map.of())));
+
+        // Act
+        cacheWarmupService.warmUp();
+
+        // Assert
+        verify(stockDataService, times(1)).getBatchQuotesAsync(tickers);
+        verify(stockDataService, never()).getStockPrice(anyString());
+        verify(priceSeriesStore, times(1)).load();
+        verify(referencePriceTable, times(1)).rebuild();
+    }
+
+    @Test
+    void becomesReadyEvenWhenWarmupFails() {
+        // Arrange
+        when(stockDataService.getSP500Constituents()).thenThrow(new RuntimeException("provider down"));
+        when(portfolioHoldingRepository.findDistinctOpenTickers()).thenThrow(new RuntimeException("db down"));
+        assertFalse(cacheWarmupService.isReady());
+
+        // Act
+        cacheWarmupService.run(null);
+
+        // Assert
+        assertTrue(cacheWarmupService.isReady());
+    }
+}
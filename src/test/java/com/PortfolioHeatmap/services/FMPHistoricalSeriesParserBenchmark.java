@@ -0,0 +1,127 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.PortfolioHeatmap.models.FMPHistoricalPriceResponse;
+import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Compares allocation and latency of the streaming historical parser against the previous
+ * String + readTree + readValue decoding on a five-year FMP payload. Run with
+ * mvn test -Dtest=FMPHistoricalSeriesParserBenchmark -Dbenchmarks=true
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class FMPHistoricalSeriesParserBenchmark {
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 500;
+    private static final LocalDate FROM = LocalDate.of(2019, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2023, 12, 31);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void streamingParserAllocatesLessThanTreeAndBindParsing() throws Exception {
+        // Arrange
+        byte[] body = fiveYearPayload();
+
+        // Act
+        Result tree = measure(() -> treeAndBind(body).size());
+        Result streaming = measure(() -> FMPHistoricalSeriesParser.parse("AAPL", body, FROM, TO)
+                .toHistoricalPrices().size());
+
+        // Assert
+        System.out.printf("payload: %,d bytes%n", body.length);
+        System.out.printf("readTree + readValue: %,d bytes/op, %,d ns/op%n", tree.bytesPerOp, tree.nanosPerOp);
+        System.out.printf("streaming parser:     %,d bytes/op, %,d ns/op%n", streaming.bytesPerOp,
+                streaming.nanosPerOp);
+        assertTrue(streaming.bytesPerOp < tree.bytesPerOp);
+    }
+
+    // The decoding FMPStockDataService used before the streaming parser
+    private List<HistoricalPrice> treeAndBind(byte[] body) {
+        try {
+            String rawResponse = new String(body, StandardCharsets.UTF_8);
+            JsonNode rootNode = objectMapper.readTree(rawResponse);
+            if (rootNode.has("error")) {
+                throw new RuntimeException("FMP API error: " + rootNode.get("error").asText());
+            }
+            FMPHistoricalPriceResponse response = objectMapper.readValue(rawResponse,
+                    FMPHistoricalPriceResponse.class);
+            return response.getHistorical().stream()
+                    .filter(entry -> entry.getDate() != null && entry.getClose() != 0.0)
+                    .map(entry -> new HistoricalPrice(String.valueOf(entry.getDate()), entry.getClose()))
+                    .filter(hp -> {
+                        LocalDate entryDate = LocalDate.parse(hp.getDate());
+                        return !entryDate.isBefore(FROM) && !entryDate.isAfter(TO);
+                    })
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Result measure(IntSupplier operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += operation.getAsInt();
+        }
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += operation.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        assertTrue(sink > 0);
+        return new Result(allocated / MEASURED_ITERATIONS, elapsed / MEASURED_ITERATIONS);
+    }
+
+    // Builds a response shaped like FMP's, newest day first, with one extra year
+    // outside the requested range
+    private static byte[] fiveYearPayload() {
+        StringBuilder json = new StringBuilder("{\"symbol\":\"AAPL\",\"historical\":[");
+        LocalDate date = TO.plusYears(1);
+        double price = 150.0;
+        boolean first = true;
+        while (!date.isBefore(FROM)) {
+            if (date.getDayOfWeek().getValue() <= 5) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                price += Math.sin(date.toEpochDay()) * 2;
+                json.append("{\"date\":\"").append(date)
+                        .append("\",\"open\":").append(price - 0.5)
+                        .append(",\"high\":").append(price + 1.25)
+                        .append(",\"low\":").append(price - 1.75)
+                        .append(",\"close\":").append(price)
+                        .append(",\"adjClose\":").append(price)
+                        .append(",\"volume\":").append(50_000_000 + date.getDayOfYear() * 1000)
+                        .append(",\"unadjustedVolume\":").append(50_000_000 + date.getDayOfYear() * 1000)
+                        .append(",\"change\":0.5,\"changePercent\":0.33,\"vwap\":").append(price)
+                        .append(",\"label\":\"").append(date).append("\",\"changeOverTime\":0.0033}");
+            }
+            date = date.minusDays(1);
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Result(long bytesPerOp, long nanosPerOp) {
+    }
+}
@@ -0,0 +1,131 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.models.CandlestickData;
+import com.PortfolioHeatmap.models.HistoricalPrice;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+
+class FMPHistoricalSeriesParserTest {
+    private static final String RESPONSE = """
+            {
+              "symbol": "AAPL",
+              "historical": [
+                {"date": "2024-01-05", "open": 181.99, "high": 182.76, "low": 180.17, "close": 181.18,
+                 "adjClose": 181.18, "volume": 62303300, "label": "January 05, 24", "changeOverTime": -0.004},
+                {"date": "2024-01-04", "open": 182.15, "high": 183.09, "low": 180.88, "close": 181.91,
+                 "volume": 7.1983600E7, "extra": {"nested": [1, 2, {"close": 0}]}},
+                {"date": "2024-01-03", "open": 184.22, "high": 185.88, "low": 183.43, "close": 184.25,
+                 "volume": null},
+                {"date": "2024-01-02", "open": null, "high": 188.44, "low": 183.89, "close": 185.64}
+              ]
+            }
+            """;
+
+    @Test
+    void parsesDescendingResponseIntoAscendingColumns() {
+        // Act
+        OhlcvSeries series = FMPHistoricalSeriesParser.parse("AAPL", bytes(RESPONSE),
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+
+        // Assert
+        assertEquals(4, series.size());
+        assertEquals(LocalDate.of(2024, 1, 2), series.getDate(0));
+        assertEquals(LocalDate.of(2024, 1, 5), series.getDate(3));
+        assertTrue(Double.isNaN(series.getOpen(0)));
+        assertEquals(181.91, series.getClose(2));
+        assertEquals(71983600L, series.getVolume(2));
+        assertEquals(OhlcvSeries.MISSING_VOLUME, series.getVolume(1));
+    }
+
+    @Test
+    void projectionsAreNewestFirstAndSkipIncompleteDays() {
+        // Arrange
+        OhlcvSeries series = FMPHistoricalSeriesParser.parse("AAPL", bytes(RESPONSE),
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+
+        // Act
+        List<HistoricalPrice> prices = series.toHistoricalPrices();
+        List<CandlestickData> candlesticks = series.toCandlesticks();
+
+        // Assert
+        assertEquals(4, prices.size());
+        assertEquals("2024-01-05", prices.get(0).getDate());
+        assertEquals(185.64, prices.get(3).getClose());
+        assertEquals(3, candlesticks.size());
+        assertEquals("2024-01-03", candlesticks.get(2).getDate());
+        assertNull(candlesticks.get(2).getVolume());
+    }
+
+    @Test
+    void appliesDateRangeWhileParsing() {
+        // Act
+        OhlcvSeries series = FMPHistoricalSeriesParser.parse("AAPL", bytes(RESPONSE),
+                LocalDate.of(2024, 1, 3), LocalDate.of(2024, 1, 4));
+
+        // Assert
+        assertEquals(2, series.size());
+        assertEquals(LocalDate.of(2024, 1, 3), series.getDate(0));
+        assertEquals(LocalDate.of(2024, 1, 4), series.getDate(1));
+    }
+
+    @Test
+    void chunkedInputGivesSameResultAsWholeBody() {
+        // Arrange
+        byte[] body = bytes(RESPONSE);
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 1, 31);
+        OhlcvSeries expected = FMPHistoricalSeriesParser.parse("AAPL", body, from, to);
+
+        for (int chunkSize = 1; chunkSize <= 17; chunkSize += 4) {
+            // Act
+            FMPHistoricalSeriesParser parser = new FMPHistoricalSeriesParser("AAPL", from, to);
+            for (int i = 0; i < body.length; i += chunkSize) {
+                parser.feed(ByteBuffer.wrap(body, i, Math.min(chunkSize, body.length - i)));
+            }
+            OhlcvSeries series = parser.finish();
+
+            // Assert
+            assertEquals(expected.size(), series.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getEpochDay(i), series.getEpochDay(i));
+                assertEquals(expected.getClose(i), series.getClose(i));
+                assertEquals(expected.getVolume(i), series.getVolume(i));
+            }
+        }
+    }
+
+    @Test
+    void errorFieldFailsTheParse() {
+        // Arrange
+        String response = "{\"Error Message\": \"Invalid API KEY.\"}";
+
+        // Act & Assert
+        RuntimeException e = assertThrows(RuntimeException.class, () -> FMPHistoricalSeriesParser.parse("AAPL",
+                bytes(response), LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+        assertEquals("FMP API error: Invalid API KEY.", e.getMessage());
+    }
+
+    @Test
+    void emptyObjectGivesEmptySeriesAndEmptyBodyFails() {
+        // Act
+        OhlcvSeries series = FMPHistoricalSeriesParser.parse("XYZ", bytes("{}"), LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 1, 31));
+
+        // Assert
+        assertTrue(series.isEmpty());
+        assertThrows(RuntimeException.class, () -> FMPHistoricalSeriesParser.parse("XYZ", bytes("  "),
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
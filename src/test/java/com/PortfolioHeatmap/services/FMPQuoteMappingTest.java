@@ -0,0 +1,32 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.models.FMPQuoteResponse;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class FMPQuoteMappingTest {
+
+    @Test
+    void batchQuotesCarryPeRatioAndMarketCap() throws Exception {
+        // Arrange
+        String body = "[{\"symbol\":\"AAPL\",\"price\":241.84,\"open\":240.0,\"dayHigh\":242.5,\"dayLow\":239.1,"
+                + "\"previousClose\":237.3,\"pe\":38.4,\"marketCap\":3633000000000},"
+                + "{\"symbol\":\"MSFT\",\"price\":396.99,\"pe\":32.0,\"marketCap\":2951000000000}]";
+        FMPQuoteResponse[] quotes = new ObjectMapper().readValue(body, FMPQuoteResponse[].class);
+
+        // Act
+        StockPrice apple = FMPStockDataService.toStockPrice(quotes[0]);
+        StockPrice microsoft = FMPStockDataService.toStockPrice(quotes[1]);
+
+        // Assert
+        assertEquals(241.84, apple.getPrice());
+        assertEquals(242.5, apple.getHigh());
+        assertEquals(38.4, apple.getPeRatio());
+        assertEquals(3_633_000_000_000L, apple.getMarketCap());
+        assertEquals(2_951_000_000_000L, microsoft.getMarketCap());
+    }
+}
@@ -0,0 +1,126 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.StockPrice;
+
+class FailoverStockDataServiceTest {
+    private StockDataService primary;
+    private StockDataService secondary;
+    private ScheduledExecutorService scheduler;
+    private FailoverStockDataService service;
+
+    @BeforeEach
+    void setUp() {
+        primary = mock(StockDataService.class);
+        secondary = mock(StockDataService.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        service = new FailoverStockDataService("fmp", primary, "alphavantage", secondary, scheduler, 95, 50, 10,
+                2, 60_000, System::nanoTime);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void failsOverToSecondaryWhenPrimaryFails() {
+        // Arrange
+        when(primary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("FMP down")));
+        when(secondary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.completedFuture(new StockPrice("aapl", 190.0)));
+
+        // Act
+        StockPrice price = service.getStockPrice("AAPL");
+
+        // Assert
+        assertEquals("AAPL", price.getSymbol());
+        assertEquals(190.0, price.getPrice());
+        assertEquals(1L, service.getHealthSnapshot().get("alphavantage").get("failovers"));
+    }
+
+    @Test
+    void sendsHedgedRequestWhenPrimaryIsSlow() throws Exception {
+        // Arrange
+        CompletableFuture<StockPrice> slowPrimary = new CompletableFuture<>();
+        when(primary.getStockPriceAsync("AAPL")).thenReturn(slowPrimary);
+        when(secondary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.completedFuture(new StockPrice("AAPL", 191.0)));
+
+        // Act
+        StockPrice price = service.getStockPriceAsync("AAPL").get(2, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(191.0, price.getPrice());
+        Map<String, Object> secondaryHealth = service.getHealthSnapshot().get("alphavantage");
+        assertEquals(1L, secondaryHealth.get("hedgesSent"));
+        assertEquals(1L, secondaryHealth.get("hedgesWon"));
+    }
+
+    @Test
+    void invalidQuoteCountsAsFailureAndUnhealthyPrimaryIsSkipped() {
+        // Arrange
+        when(primary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.completedFuture(new StockPrice()));
+        when(secondary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.completedFuture(new StockPrice("AAPL", 192.0)));
+
+        // Act
+        service.getStockPrice("AAPL");
+        service.getStockPrice("AAPL");
+        service.getStockPrice("AAPL");
+
+        // Assert
+        verify(primary, times(2)).getStockPriceAsync("AAPL");
+        verify(secondary, times(3)).getStockPriceAsync("AAPL");
+        assertEquals(false, service.getHealthSnapshot().get("fmp").get("healthy"));
+    }
+
+    @Test
+    void failsWithPrimaryErrorWhenBothProvidersFail() {
+        // Arrange
+        when(primary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("FMP down")));
+        when(secondary.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Alpha down")));
+
+        // Act & Assert
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service.getStockPrice("AAPL"));
+        assertEquals("FMP down", e.getMessage());
+    }
+
+    @Test
+    void reportsInvalidBatchQuotesAsFailedSymbols() {
+        // Arrange: MSFT comes back without a price
+        List<StockPrice> prices = new ArrayList<>(
+                List.of(new StockPrice("aapl", 241.84), new StockPrice("msft", 0.0)));
+        when(primary.getBatchQuotesAsync(List.of("AAPL", "MSFT"))).thenReturn(
+                CompletableFuture.completedFuture(new BatchQuoteResult(prices, new LinkedHashMap<>())));
+
+        // Act
+        BatchQuoteResult result = StockDataService.await(service.getBatchQuotesAsync(List.of("AAPL", "MSFT")));
+
+        // Assert
+        assertEquals(List.of("AAPL"), result.getPrices().stream().map(StockPrice::getSymbol).toList());
+        assertEquals(Map.of("MSFT", "Invalid quote returned"), result.getFailedSymbols());
+        // The delegate's list is left as it was
+        assertEquals(2, prices.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+class MarketHoursExpiryTest {
+    private final TradingSessionCalendar calendar = new TradingSessionCalendar("America/New_York", "09:30",
+            "16:00", "13:00", "2025-04-18,2025-07-04", "2025-07-03");
+
+    private Duration ttlAt(String instant) {
+        Clock clock = Clock.fixed(Instant.parse(instant), ZoneOffset.UTC);
+        return new MarketHoursExpiry(calendar, Duration.ofSeconds(5), Duration.ofMinutes(5), clock).timeToLive();
+    }
+
+    @Test
+    void usesIntradayTtlWhileMarketIsOpen() {
+        // Arrange / Act: Wednesday 2025-03-05 11:00 New York time
+        Duration ttl = ttlAt("2025-03-05T16:00:00Z");
+
+        // Assert
+        assertEquals(Duration.ofSeconds(5), ttl);
+    }
+
+    @Test
+    void keepsIntradayTtlWhileTheCloseSettles() {
+        // Arrange / Act: two minutes after the 16:00 close
+        Duration ttl = ttlAt("2025-03-05T21:02:00Z");
+
+        // Assert
+        assertEquals(Duration.ofSeconds(5), ttl);
+    }
+
+    @Test
+    void cachesUntilNextOpenOvernight() {
+        // Arrange / Act: Wednesday 20:00 New York time, next open Thursday 09:30
+        Duration ttl = ttlAt("2025-03-06T01:00:00Z");
+
+        // Assert
+        assertEquals(Duration.ofHours(13).plusMinutes(30), ttl);
+    }
+
+    @Test
+    void cachesOverWeekendAndHoliday() {
+        // Arrange / Act: Thursday 2025-04-17 after the close; Good Friday is a
+        // holiday so the next open is Monday 2025-04-21 09:30
+        Duration ttl = ttlAt("2025-04-17T21:30:00Z");
+
+        // Assert
+        assertEquals(Instant.parse("2025-04-21T13:30:00Z"), Instant.parse("2025-04-17T21:30:00Z").plus(ttl));
+    }
+
+    @Test
+    void honoursEarlyClose() {
+        // Arrange / Act: 2025-07-03 closes at 13:00, so 14:00 is after hours
+        Instant afterEarlyClose = Instant.parse("2025-07-03T18:00:00Z");
+
+        // Assert
+        assertFalse(calendar.isOpen(afterEarlyClose));
+        assertEquals(Instant.parse("2025-07-07T13:30:00Z"), calendar.nextOpen(afterEarlyClose));
+    }
+
+    @Test
+    void reportsHowFarTheConfiguredHolidaysReach() {
+        // Arrange / Act / Assert: the last configured holiday is 2025-07-04
+        assertTrue(calendar.coversHolidaysThrough(LocalDate.of(2025, 7, 4)));
+        assertFalse(calendar.coversHolidaysThrough(LocalDate.of(2025, 7, 5)));
+        assertFalse(new TradingSessionCalendar("America/New_York", "09:30", "16:00", "13:00", "", "")
+                .coversHolidaysThrough(LocalDate.of(2025, 1, 1)));
+    }
+}
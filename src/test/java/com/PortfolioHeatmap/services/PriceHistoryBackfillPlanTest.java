@@ -0,0 +1,78 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.services.PriceHistoryBackfillPlan.Range;
+
+class PriceHistoryBackfillPlanTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 5);
+    private static final LocalDate WINDOW_START = TODAY.minusYears(1);
+
+    @Test
+    void downloadsTheWholeWindowForATickerWithoutHistory() {
+        // Act
+        List<Range> ranges = PriceHistoryBackfillPlan.ranges(null, null, null, WINDOW_START, TODAY);
+
+        // Assert
+        assertEquals(List.of(new Range(WINDOW_START, TODAY)), ranges);
+    }
+
+    @Test
+    void downloadsOnlyTheDeltaSinceTheWatermark() {
+        // Arrange: history starts on the first trading day of the window
+        LocalDate earliest = LocalDate.of(2024, 3, 6);
+        LocalDate watermark = LocalDate.of(2025, 3, 3);
+
+        // Act
+        List<Range> ranges = PriceHistoryBackfillPlan.ranges(earliest, watermark, null, WINDOW_START, TODAY);
+
+        // Assert
+        assertEquals(List.of(new Range(watermark, TODAY)), ranges);
+    }
+
+    @Test
+    void walksBackOnlyWhenTheWindowIsDeeperThanStoredHistory() {
+        // Arrange
+        LocalDate deeperStart = TODAY.minusYears(5);
+        LocalDate earliest = LocalDate.of(2024, 3, 6);
+
+        // Act
+        List<Range> ranges = PriceHistoryBackfillPlan.ranges(earliest, TODAY, WINDOW_START, deeperStart, TODAY);
+
+        // Assert: only the years before the previous window are new
+        assertEquals(List.of(new Range(deeperStart, WINDOW_START.minusDays(1))), ranges);
+    }
+
+    @Test
+    void downloadsNothingWhenTheWatermarkIsToday() {
+        // Act
+        List<Range> ranges = PriceHistoryBackfillPlan.ranges(LocalDate.of(2024, 3, 6), TODAY, null, WINDOW_START,
+                TODAY);
+
+        // Assert
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    void asksForDaysBeforeARecentListingOnlyOnce() {
+        // Arrange: listed in September, so the window's older days have no prices
+        LocalDate listed = LocalDate.of(2024, 9, 12);
+        LocalDate watermark = LocalDate.of(2025, 3, 4);
+
+        // Act
+        List<Range> firstRun = PriceHistoryBackfillPlan.ranges(listed, watermark, null, WINDOW_START, TODAY);
+        List<Range> laterRun = PriceHistoryBackfillPlan.ranges(listed, watermark, WINDOW_START, WINDOW_START,
+                TODAY);
+
+        // Assert: once the older range has been asked for, only the delta is left
+        assertEquals(List.of(new Range(WINDOW_START, listed.minusDays(1)), new Range(watermark, TODAY)), firstRun);
+        assertTrue(PriceHistoryBackfillPlan.reachesWindowStart(firstRun, WINDOW_START));
+        assertEquals(List.of(new Range(watermark, TODAY)), laterRun);
+        assertFalse(PriceHistoryBackfillPlan.reachesWindowStart(laterRun, WINDOW_START));
+    }
+}
@@ -0,0 +1,41 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+class PriceHistoryCacheInvalidatorTest {
+    private CacheManager cacheManager;
+    private PriceHistoryCacheInvalidator invalidator;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CaffeineCacheManager(PriceHistoryCacheInvalidator.DERIVED_CACHES.toArray(new String[0]));
+        invalidator = new PriceHistoryCacheInvalidator(cacheManager,
+                new CacheInvalidationBus(new LoopbackCacheInvalidationTransport(), "test"));
+    }
+
+    @Test
+    void evictsOnlyTheUpdatedTickersKeys() {
+        // Arrange
+        cacheManager.getCache("priceHistoryByDate").put("AAPL-2025-02-28", 237.3);
+        cacheManager.getCache("priceHistoryByDate").put("AMZN-2025-02-28", 208.36);
+        cacheManager.getCache("priceHistory").put("AAPL-0-20", "page");
+        cacheManager.getCache("priceHistory").put("AAPLX-0-20", "page");
+
+        // Act
+        invalidator.onPriceHistoryUpdated(new PriceHistoryUpdatedEvent("AAPL", Set.of(LocalDate.of(2025, 3, 3))));
+
+        // Assert
+        assertNull(cacheManager.getCache("priceHistoryByDate").get("AAPL-2025-02-28"));
+        assertNull(cacheManager.getCache("priceHistory").get("AAPL-0-20"));
+        assertNotNull(cacheManager.getCache("priceHistoryByDate").get("AMZN-2025-02-28"));
+        assertNotNull(cacheManager.getCache("priceHistory").get("AAPLX-0-20"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.PortfolioHeatmap.models.ClosingPrice;
+
+class PriceSeriesStoreTest {
+    private JdbcTemplate jdbcTemplate;
+    private PriceSeriesStore store;
+    private CacheInvalidationBus otherNode;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        // The store's node and another instance sharing one transport
+        LoopbackCacheInvalidationTransport transport = new LoopbackCacheInvalidationTransport();
+        store = new PriceSeriesStore(jdbcTemplate, new CacheInvalidationBus(transport, "node-a"));
+        otherNode = new CacheInvalidationBus(transport, "node-b");
+        // Streams three AAPL closes and one MSFT close
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn("AAPL", "AAPL", "AAPL", "MSFT");
+        when(rs.getObject(2, LocalDate.class)).thenReturn(LocalDate.of(2025, 2, 27), LocalDate.of(2025, 2, 28),
+                LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 3));
+        when(rs.getDouble(3)).thenReturn(237.3, 241.84, 238.03, 388.49);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int i = 0; i < 4; i++) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void answersLatestFirstAndAsOfLookups() {
+        // Act
+        int rows = store.load();
+
+        // Assert
+        assertEquals(4, rows);
+        assertTrue(store.isLoaded());
+        assertEquals(new ClosingPrice(LocalDate.of(2025, 3, 3), 238.03), store.latest("AAPL").orElseThrow());
+        assertEquals(new ClosingPrice(LocalDate.of(2025, 2, 27), 237.3), store.first("AAPL").orElseThrow());
+        // Saturday resolves to the Friday close
+        assertEquals(241.84, store.onOrBefore("AAPL", LocalDate.of(2025, 3, 1)).orElseThrow().price());
+        assertEquals(241.84, store.before("AAPL", LocalDate.of(2025, 3, 3)).orElseThrow().price());
+        assertTrue(store.before("AAPL", LocalDate.of(2025, 2, 27)).isEmpty());
+        assertEquals(388.49, store.latest("MSFT").orElseThrow().price());
+        assertTrue(store.latest("XYZ").isEmpty());
+    }
+
+    @Test
+    void mergesUpdatedClosesAndReloadsTickersWithoutThem() {
+        // Arrange
+        store.load();
+
+        // Act
+        store.onPriceHistoryUpdated(new PriceHistoryUpdatedEvent("AAPL",
+                Map.of(LocalDate.of(2025, 2, 28), 242.0, LocalDate.of(2025, 3, 4), 235.93)));
+        store.onPriceHistoryUpdated(new PriceHistoryUpdatedEvent("MSFT", Set.of(LocalDate.of(2025, 3, 4))));
+
+        // Assert
+        assertEquals(new ClosingPrice(LocalDate.of(2025, 3, 4), 235.93), store.latest("AAPL").orElseThrow());
+        assertEquals(242.0, store.onOrBefore("AAPL", LocalDate.of(2025, 2, 28)).orElseThrow().price());
+        assertEquals(4, store.size());
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq("MSFT"));
+    }
+
+    @Test
+    void reloadsTickersWrittenByAnotherInstance() {
+        // Arrange
+        store.load();
+
+        // Act
+        otherNode.publishTickerEviction("MSFT", PriceHistoryCacheInvalidator.DERIVED_CACHES);
+        otherNode.publishTickerEviction("AAPL", List.of(PriceHistoryCacheInvalidator.PRICE_HISTORY));
+
+        // Assert
+        verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class), eq("MSFT"));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq("AAPL"));
+    }
+}
@@ -0,0 +1,181 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.models.Stock;
+import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
+import com.PortfolioHeatmap.repositories.StockRepository;
+
+class ReferencePriceTableTest {
+    private PriceHistoryRepository priceHistoryRepository;
+    private MutableClock clock;
+    private ReferencePriceTable table;
+    private CacheInvalidationBus otherNode;
+
+    @BeforeEach
+    void setUp() {
+        priceHistoryRepository = mock(PriceHistoryRepository.class);
+        StockRepository stockRepository = mock(StockRepository.class);
+        when(stockRepository.findAllTickers()).thenReturn(List.of("AAPL"));
+        when(priceHistoryRepository.findLatestBeforeDateForTickers(anyCollection(), any())).thenReturn(List.of());
+        when(priceHistoryRepository.findEarliestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2024-01-02", 185.64)));
+        // Tuesday 2025-03-04, 10:00 in New York
+        clock = new MutableClock(Instant.parse("2025-03-04T15:00:00Z"));
+        // The table's node and another instance sharing one transport
+        LoopbackCacheInvalidationTransport transport = new LoopbackCacheInvalidationTransport();
+        table = new ReferencePriceTable(priceHistoryRepository, stockRepository,
+                new TradingSessionCalendar("America/New_York", "09:30", "16:00", "13:00", "", ""),
+                new CacheInvalidationBus(transport, "node-a"), clock);
+        otherNode = new CacheInvalidationBus(transport, "node-b");
+    }
+
+    @Test
+    void oneDayReferenceIsTheCloseBeforeTheCurrentSession() {
+        // Arrange
+        when(priceHistoryRepository.findLatestBeforeDateForTickers(anyCollection(), eq(LocalDate.of(2025, 3, 4))))
+                .thenReturn(List.of(close("2025-03-03", 235.33)));
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-03", 235.33)));
+
+        // Act
+        ReferencePriceTable.Row row = table.row("AAPL");
+
+        // Assert
+        assertEquals(LocalDate.of(2025, 3, 4), table.getAsOf());
+        assertEquals(235.33, row.referenceClose("1d"));
+        assertEquals(185.64, row.referenceClose("total"));
+        assertTrue(Double.isNaN(row.referenceClose("1y")));
+        assertTrue(Double.isNaN(row.sessionClose()));
+        assertNull(table.row("MSFT"));
+    }
+
+    @Test
+    void rollsForwardWhenTheNextSessionOpens() {
+        // Arrange
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-03", 235.33)));
+        table.row("AAPL");
+        when(priceHistoryRepository.findLatestBeforeDateForTickers(anyCollection(), eq(LocalDate.of(2025, 3, 5))))
+                .thenReturn(List.of(close("2025-03-04", 235.93)));
+
+        // Act
+        clock.advance(Duration.ofDays(1));
+        ReferencePriceTable.Row row = table.row("AAPL");
+
+        // Assert
+        assertEquals(LocalDate.of(2025, 3, 5), table.getAsOf());
+        assertEquals(235.93, row.referenceClose("1d"));
+    }
+
+    @Test
+    void rebuildBeforeTheOpenPreparesTheComingSession() {
+        // Arrange: Wednesday 2025-03-05, 09:00 in New York
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-04", 235.93)));
+        when(priceHistoryRepository.findLatestBeforeDateForTickers(anyCollection(), eq(LocalDate.of(2025, 3, 5))))
+                .thenReturn(List.of(close("2025-03-04", 235.93)));
+        clock.advance(Duration.ofHours(23));
+
+        // Act
+        table.rebuild();
+        LocalDate beforeOpen = table.getAsOf();
+        clock.advance(Duration.ofMinutes(30));
+        ReferencePriceTable.Row row = table.row("AAPL");
+
+        // Assert: the prepared rows are swapped in at the open without another load
+        assertNull(beforeOpen);
+        assertEquals(LocalDate.of(2025, 3, 5), table.getAsOf());
+        assertEquals(235.93, row.referenceClose("1d"));
+        verify(priceHistoryRepository, times(1)).findEarliestForTickers(anyCollection());
+    }
+
+    @Test
+    void reloadsATickerAfterItsHistoryIsWritten() {
+        // Arrange
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-03", 235.33)));
+        table.row("AAPL");
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-04", 235.93)));
+
+        // Act
+        double beforeEvent = table.row("AAPL").sessionClose();
+        table.onPriceHistoryUpdated(new PriceHistoryUpdatedEvent("AAPL", Set.of(LocalDate.of(2025, 3, 4))));
+        double afterEvent = table.row("AAPL").sessionClose();
+
+        // Assert
+        assertTrue(Double.isNaN(beforeEvent));
+        assertEquals(235.93, afterEvent);
+        verify(priceHistoryRepository, times(2)).findEarliestForTickers(anyCollection());
+    }
+
+    @Test
+    void reloadsATickerWrittenByAnotherInstance() {
+        // Arrange
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-03", 235.33)));
+        table.row("AAPL");
+        when(priceHistoryRepository.findLatestForTickers(anyCollection()))
+                .thenReturn(List.of(close("2025-03-04", 235.93)));
+
+        // Act
+        otherNode.publishTickerEviction("AAPL", List.of(PriceHistoryCacheInvalidator.PRICE_HISTORY));
+        ReferencePriceTable.Row row = table.row("AAPL");
+
+        // Assert
+        assertEquals(235.93, row.sessionClose());
+    }
+
+    private static PriceHistory close(String date, double price) {
+        Stock stock = new Stock();
+        stock.setTicker("AAPL");
+        PriceHistory priceHistory = new PriceHistory();
+        priceHistory.setStock(stock);
+        priceHistory.setDate(LocalDate.parse(date));
+        priceHistory.setClosingPrice(price);
+        return priceHistory;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
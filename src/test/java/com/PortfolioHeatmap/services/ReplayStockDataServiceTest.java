@@ -0,0 +1,140 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+import com.PortfolioHeatmap.models.StockPrice;
+
+class ReplayStockDataServiceTest {
+    @TempDir
+    Path fixturesDir;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ReplayStockDataService service(double errorRate, boolean synthesizeMissing) {
+        return new ReplayStockDataService(mock(FMPStockDataService.class), executor, fixturesDir.toString(),
+                fixturesDir.resolve("missing.json").toString(), 0, 0, errorRate, synthesizeMissing, false);
+    }
+
+    @Test
+    void servesQuotesAndHistoryFromFixtures() throws Exception {
+        // Arrange
+        Files.createDirectories(fixturesDir.resolve("quotes"));
+        Files.writeString(fixturesDir.resolve("quotes/AAPL.json"),
+                "[{\"symbol\":\"AAPL\",\"price\":241.84,\"previousClose\":237.3,\"marketCap\":3633000000000}]");
+        Files.createDirectories(fixturesDir.resolve("historical"));
+        Files.writeString(fixturesDir.resolve("historical/AAPL.json"),
+                "{\"symbol\":\"AAPL\",\"historical\":[{\"date\":\"2025-02-28\",\"close\":241.84},"
+                        + "{\"date\":\"2025-02-27\",\"close\":237.3}]}");
+        ReplayStockDataService service = service(0, false);
+
+        // Act
+        StockPrice price = service.getStockPrice("aapl");
+        OhlcvSeries series = service.getDailySeries("AAPL", LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28));
+
+        // Assert
+        assertEquals(241.84, price.getPrice());
+        assertEquals(237.3, price.getPreviousClose());
+        assertEquals(2, series.size());
+        assertEquals(LocalDate.of(2025, 2, 27), series.getDate(0));
+    }
+
+    @Test
+    void synthesizesDeterministicDataForMissingFixtures() {
+        // Arrange
+        ReplayStockDataService service = service(0, true);
+        LocalDate from = LocalDate.of(2025, 3, 3);
+        LocalDate to = LocalDate.of(2025, 3, 9);
+
+        // Act
+        OhlcvSeries first = service.getDailySeries("MSFT", from, to);
+        OhlcvSeries second = service.getDailySeries("MSFT", from, to);
+
+        // Assert
+        assertEquals(5, first.size());
+        assertEquals(first.getClose(4), second.getClose(4));
+        assertTrue(first.getClose(0) > 0);
+    }
+
+    @Test
+    void reportsMissingFixturesAsFailedSymbols() throws Exception {
+        // Arrange
+        Files.createDirectories(fixturesDir.resolve("quotes"));
+        Files.writeString(fixturesDir.resolve("quotes/AAPL.json"), "[{\"symbol\":\"AAPL\",\"price\":241.84}]");
+        ReplayStockDataService service = service(0, false);
+
+        // Act
+        BatchQuoteResult result = StockDataService.await(service.getBatchQuotesAsync(List.of("AAPL", "MSFT")));
+
+        // Assert
+        assertEquals(1, result.getPrices().size());
+        assertTrue(result.getFailedSymbols().containsKey("MSFT"));
+    }
+
+    @Test
+    void injectsErrorsAtConfiguredRate() {
+        // Arrange
+        ReplayStockDataService service = service(1.0, true);
+
+        // Act & Assert
+        RuntimeException error = assertThrows(RuntimeException.class, () -> service.getStockPrice("AAPL"));
+        assertTrue(error.getMessage().contains("Injected replay failure"));
+    }
+
+    @Test
+    void recordingAShortRangeKeepsTheDaysOfALongerOne() {
+        // Arrange: FMP answers with a deterministic close per weekday
+        FMPStockDataService fmp = mock(FMPStockDataService.class);
+        when(fmp.getDailySeriesAsync(eq("AAPL"), any(), any())).thenAnswer(invocation -> {
+            LocalDate from = invocation.getArgument(1);
+            LocalDate to = invocation.getArgument(2);
+            int[] days = from.datesUntil(to.plusDays(1))
+                    .filter(day -> day.getDayOfWeek().getValue() <= 5)
+                    .mapToInt(day -> (int) day.toEpochDay()).toArray();
+            double[] close = Arrays.stream(days).mapToDouble(day -> day / 100.0).toArray();
+            long[] volume = new long[days.length];
+            return CompletableFuture.completedFuture(new OhlcvSeries("AAPL", days, close, close, close, close, volume));
+        });
+        ReplayStockDataService recorder = new ReplayStockDataService(fmp, executor, fixturesDir.toString(),
+                fixturesDir.resolve("missing.json").toString(), 0, 0, 0, false, true);
+        LocalDate to = LocalDate.of(2025, 2, 28);
+        OhlcvSeries year = recorder.getDailySeries("AAPL", to.minusYears(1), to);
+        recorder.getDailySeries("AAPL", to.minusMonths(1), to.plusDays(3));
+
+        // Act
+        OhlcvSeries replayed = service(0, false).getDailySeries("AAPL", to.minusYears(1), to.plusDays(3));
+
+        // Assert: the year is still there, plus the newer Monday
+        assertEquals(year.size() + 1, replayed.size());
+        assertEquals(year.getDate(0), replayed.getDate(0));
+        assertEquals(LocalDate.of(2025, 3, 3), replayed.getDate(replayed.size() - 1));
+        assertEquals(year.getClose(0), replayed.getClose(0));
+    }
+}
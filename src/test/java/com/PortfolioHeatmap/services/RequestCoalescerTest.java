@@ -0,0 +1,72 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+
+    @Test
+    void concurrentCallsForSameKeyShareOneRequest() {
+        // Arrange
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>("test");
+        CompletableFuture<Integer> upstream = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        CompletableFuture<Integer> first = coalescer.execute("AAPL", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<Integer> second = coalescer.execute("AAPL", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        upstream.complete(42);
+
+        // Assert
+        assertEquals(1, calls.get());
+        assertEquals(42, first.join());
+        assertEquals(42, second.join());
+        assertEquals(1, coalescer.getIssuedCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    void completedRequestIsNotReused() {
+        // Arrange
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>("test");
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        coalescer.execute("AAPL", () -> CompletableFuture.completedFuture(calls.incrementAndGet())).join();
+        int result = coalescer.execute("AAPL", () -> CompletableFuture.completedFuture(calls.incrementAndGet()))
+                .join();
+
+        // Assert
+        assertEquals(2, result);
+        assertEquals(2, coalescer.getIssuedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void failureIsSharedAndKeyIsReleased() {
+        // Arrange
+        RequestCoalescer<String, Integer> coalescer = new RequestCoalescer<>("test");
+        CompletableFuture<Integer> upstream = new CompletableFuture<>();
+
+        // Act
+        CompletableFuture<Integer> first = coalescer.execute("AAPL", () -> upstream);
+        CompletableFuture<Integer> second = coalescer.execute("AAPL", () -> upstream);
+        upstream.completeExceptionally(new RuntimeException("boom"));
+
+        // Assert
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+}
@@ -0,0 +1,108 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import com.PortfolioHeatmap.models.BarInterval;
+import com.PortfolioHeatmap.models.OhlcvSeries;
+
+class SeriesRollupServiceTest {
+    private StockDataService stockDataService;
+    private SeriesRollupService seriesRollupService;
+
+    @BeforeEach
+    void setUp() {
+        stockDataService = mock(StockDataService.class);
+        StockDataServiceFactory factory = mock(StockDataServiceFactory.class);
+        when(factory.getService()).thenReturn(stockDataService);
+        seriesRollupService = new SeriesRollupService(factory, new CaffeineCacheManager("seriesRollups"));
+        // Every weekday has a bar closing at its day of month, with a volume of 100
+        when(stockDataService.getDailySeriesAsync(eq("AAPL"), any(), any())).thenAnswer(invocation -> {
+            LocalDate from = invocation.getArgument(1);
+            LocalDate to = invocation.getArgument(2);
+            return CompletableFuture.completedFuture(weekdays("AAPL", from, to));
+        });
+    }
+
+    @Test
+    void rollsUpWeeksAcrossMonthBoundaries() {
+        // Arrange: Monday 2025-03-24 to Friday 2025-04-04, two full weeks
+        LocalDate from = LocalDate.of(2025, 3, 24);
+        LocalDate to = LocalDate.of(2025, 4, 4);
+
+        // Act
+        OhlcvSeries weekly = seriesRollupService.getSeries("AAPL", from, to, BarInterval.WEEKLY);
+
+        // Assert
+        assertEquals(2, weekly.size());
+        assertEquals(LocalDate.of(2025, 3, 28), weekly.getDate(0));
+        assertEquals(24.0, weekly.getOpen(0));
+        assertEquals(28.0, weekly.getClose(0));
+        // The second week starts in March and ends in April
+        assertEquals(LocalDate.of(2025, 4, 4), weekly.getDate(1));
+        assertEquals(31.0, weekly.getOpen(1));
+        assertEquals(31.5, weekly.getHigh(1));
+        assertEquals(0.5, weekly.getLow(1));
+        assertEquals(4.0, weekly.getClose(1));
+        assertEquals(500L, weekly.getVolume(1));
+    }
+
+    @Test
+    void servesEndedMonthsFromCachedRollups() {
+        // Arrange
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusYears(5);
+        OhlcvSeries first = seriesRollupService.getSeries("AAPL", from, to, BarInterval.WEEKLY);
+        clearInvocations(stockDataService);
+
+        // Act
+        OhlcvSeries second = seriesRollupService.getSeries("AAPL", from, to, BarInterval.WEEKLY);
+
+        // Assert
+        assertEquals(BarInterval.WEEKLY, BarInterval.forRange(from, to));
+        assertEquals(first.size(), second.size());
+        assertTrue(second.size() <= 262, "bars: " + second.size());
+        assertEquals(first.getClose(first.size() - 1), second.getClose(second.size() - 1));
+        // Only the partial first month and the recent, unsettled months are read
+        // from the daily series again
+        verify(stockDataService, atMost(3)).getDailySeriesAsync(eq("AAPL"), any(), any());
+        verify(stockDataService).getDailySeriesAsync("AAPL", from, from.withDayOfMonth(from.lengthOfMonth()));
+    }
+
+    private static OhlcvSeries weekdays(String symbol, LocalDate from, LocalDate to) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                days.add(day);
+            }
+        }
+        int size = days.size();
+        int[] epochDays = new int[size];
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        long[] volume = new long[size];
+        for (int i = 0; i < size; i++) {
+            int dayOfMonth = days.get(i).getDayOfMonth();
+            epochDays[i] = (int) days.get(i).toEpochDay();
+            open[i] = dayOfMonth;
+            high[i] = dayOfMonth + 0.5;
+            low[i] = dayOfMonth - 0.5;
+            close[i] = dayOfMonth;
+            volume[i] = 100;
+        }
+        return new OhlcvSeries(symbol, epochDays, open, high, low, close, volume);
+    }
+}
@@ -0,0 +1,176 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.PortfolioHeatmap.models.BatchQuoteResult;
+import com.PortfolioHeatmap.models.PriceHistory;
+import com.PortfolioHeatmap.models.StockPrice;
+import com.PortfolioHeatmap.repositories.PriceHistoryRepository;
+
+class StaleWhileRevalidateStockDataServiceTest {
+    private StockDataService delegate;
+    private PriceHistoryRepository priceHistoryRepository;
+    private MutableClock clock;
+    private CircuitBreaker circuitBreaker;
+    private StaleWhileRevalidateStockDataService service;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(StockDataService.class);
+        priceHistoryRepository = mock(PriceHistoryRepository.class);
+        clock = new MutableClock(Instant.parse("2025-03-03T15:00:00Z"));
+        circuitBreaker = new CircuitBreaker("quotes", 2, 60_000, System::nanoTime);
+        service = new StaleWhileRevalidateStockDataService(delegate, priceHistoryRepository, circuitBreaker,
+                new RequestCoalescer<>("test"), Duration.ofSeconds(60), 100, clock);
+    }
+
+    @Test
+    void fallsBackToStoredCloseWhenProviderFails() {
+        // Arrange
+        when(delegate.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("timeout")));
+        PriceHistory history = new PriceHistory();
+        history.setDate(LocalDate.of(2025, 2, 28));
+        history.setClosingPrice(241.84);
+        when(priceHistoryRepository.findTopByStockTickerOrderByDateDesc("AAPL")).thenReturn(Optional.of(history));
+
+        // Act
+        StockPrice price = service.getStockPrice("AAPL");
+
+        // Assert
+        assertEquals(241.84, price.getPrice());
+        assertTrue(price.isStale());
+        assertEquals(Instant.parse("2025-02-28T21:00:00Z"), price.getAsOf());
+    }
+
+    @Test
+    void remembersACopyWithoutStampingTheDelegatesQuote() {
+        // Arrange
+        StockPrice cached = new StockPrice("AAPL", 240.0);
+        when(delegate.getStockPriceAsync("AAPL")).thenReturn(CompletableFuture.completedFuture(cached));
+
+        // Act
+        StockPrice price = service.getStockPrice("AAPL");
+
+        // Assert
+        assertNotSame(cached, price);
+        assertNull(cached.getAsOf());
+        assertEquals(clock.instant(), price.getAsOf());
+    }
+
+    @Test
+    void servesStaleValueImmediatelyAndRefreshesInBackground() {
+        // Arrange
+        when(delegate.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.completedFuture(new StockPrice("AAPL", 240.0)));
+        service.getStockPrice("AAPL");
+        clock.advance(Duration.ofMinutes(5));
+        CompletableFuture<StockPrice> slowRefresh = new CompletableFuture<>();
+        when(delegate.getStockPriceAsync("AAPL")).thenReturn(slowRefresh);
+
+        // Act
+        StockPrice stale = service.getStockPrice("AAPL");
+        slowRefresh.complete(new StockPrice("AAPL", 245.0));
+        StockPrice fresh = service.getStockPrice("AAPL");
+
+        // Assert
+        assertEquals(240.0, stale.getPrice());
+        assertTrue(stale.isStale());
+        assertEquals(245.0, fresh.getPrice());
+        assertFalse(fresh.isStale());
+        verify(delegate, times(2)).getStockPriceAsync("AAPL");
+    }
+
+    @Test
+    void batchReportsCacheHitsAndFetchesOnlyMisses() {
+        // Arrange
+        when(delegate.getStockPriceAsync("AAPL"))
+                .thenReturn(CompletableFuture.completedFuture(new StockPrice("AAPL", 240.0)));
+        service.getStockPrice("AAPL");
+        BatchQuoteResult delegateResult = new BatchQuoteResult(
+                new ArrayList<>(List.of(new StockPrice("MSFT", 400.0), new StockPrice("NVDA", 120.0))),
+                new LinkedHashMap<>());
+        delegateResult.setCacheHits(List.of("MSFT"));
+        delegateResult.setCacheMisses(List.of("NVDA"));
+        when(delegate.getBatchQuotesAsync(List.of("MSFT", "NVDA")))
+                .thenReturn(CompletableFuture.completedFuture(delegateResult));
+
+        // Act
+        BatchQuoteResult result = service.getBatchQuotesAsync(List.of("AAPL", "MSFT", "NVDA")).join();
+
+        // Assert
+        verify(delegate).getBatchQuotesAsync(List.of("MSFT", "NVDA"));
+        assertEquals(3, result.getPrices().size());
+        assertEquals(List.of("AAPL", "MSFT"), result.getCacheHits());
+        assertEquals(List.of("NVDA"), result.getCacheMisses());
+    }
+
+    @Test
+    void openCircuitServesBatchWithoutCallingProvider() {
+        // Arrange
+        when(delegate.getBatchQuotesAsync(anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("FMP down")));
+        PriceHistory history = new PriceHistory();
+        history.setDate(LocalDate.of(2025, 2, 28));
+        history.setClosingPrice(400.0);
+        when(priceHistoryRepository.findTopByStockTickerOrderByDateDesc("MSFT")).thenReturn(Optional.of(history));
+        when(priceHistoryRepository.findTopByStockTickerOrderByDateDesc("XYZ")).thenReturn(Optional.empty());
+        service.getBatchQuotesAsync(List.of("MSFT")).join();
+        service.getBatchQuotesAsync(List.of("MSFT")).join();
+
+        // Act
+        BatchQuoteResult result = service.getBatchQuotesAsync(List.of("MSFT", "XYZ")).join();
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        verify(delegate, times(2)).getBatchQuotesAsync(anyList());
+        assertEquals(1, result.getPrices().size());
+        assertTrue(result.getPrices().get(0).isStale());
+        assertEquals(Map.of("XYZ", "Market data circuit open, no fresh quotes for 2 symbols"),
+                result.getFailedSymbols());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.PortfolioHeatmap.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class TokenBucketTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testGrantsBurstImmediatelyThenQueues() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(60, 2, scheduler, System::nanoTime);
+
+        // Act
+        CompletableFuture<Void> first = bucket.acquire(RequestPriority.INTERACTIVE);
+        CompletableFuture<Void> second = bucket.acquire(RequestPriority.INTERACTIVE);
+        CompletableFuture<Void> third = bucket.acquire(RequestPriority.INTERACTIVE);
+
+        // Assert
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(1, bucket.waitingCount());
+    }
+
+    @Test
+    void testWaitingRequestIsGrantedWhenTokenRefills() throws Exception {
+        // Arrange: 6000 per minute refills one token every 10ms
+        TokenBucket bucket = new TokenBucket(6000, 1, scheduler, System::nanoTime);
+        bucket.acquire(RequestPriority.INTERACTIVE);
+
+        // Act
+        CompletableFuture<Void> waiting = bucket.acquire(RequestPriority.INTERACTIVE);
+
+        // Assert
+        waiting.get(1, TimeUnit.SECONDS);
+        assertEquals(0, bucket.waitingCount());
+    }
+
+    @Test
+    void testInteractiveRequestsAreGrantedBeforeBackfill() throws Exception {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(6000, 1, scheduler, System::nanoTime);
+        bucket.acquire(RequestPriority.INTERACTIVE);
+        List<RequestPriority> grantOrder = new CopyOnWriteArrayList<>();
+
+        // Act: backfill queues first, interactive arrives later
+        CompletableFuture<Void> backfill = bucket.acquire(RequestPriority.BACKFILL)
+                .thenRun(() -> grantOrder.add(RequestPriority.BACKFILL));
+        CompletableFuture<Void> interactive = bucket.acquire(RequestPriority.INTERACTIVE)
+                .thenRun(() -> grantOrder.add(RequestPriority.INTERACTIVE));
+        CompletableFuture.allOf(backfill, interactive).get(1, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of(RequestPriority.INTERACTIVE, RequestPriority.BACKFILL), grantOrder);
+    }
+}